@@ -0,0 +1,120 @@
+package com.openclassrooms.tourguide.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import gpsUtil.GpsUtil;
+import gpsUtil.location.Attraction;
+import gpsUtil.location.Location;
+import rewardCentral.RewardCentral;
+
+import com.openclassrooms.tourguide.geo.AttractionIndex;
+import com.openclassrooms.tourguide.geo.NearbyAttraction;
+import com.openclassrooms.tourguide.service.RewardsService;
+
+/**
+ * Distance entre une position et tout le catalogue : formule d'origine ({@link RewardsService#getDistance})
+ * contre le calcul par lot de l'index, et filtre "à moins de r milles" attraction par attraction contre
+ * {@link AttractionIndex#forEachWithin}, et recherche des attractions les plus proches
+ * ({@link AttractionIndex#nearest}, indépendante du rayon).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DistanceBenchmark {
+    private static final int LOCATIONS = 1024;
+
+    @Param({ "26", "1000", "10000" })
+    public int catalogueSize;
+
+    @Param({ "10", "200" })
+    public double radiusMiles;
+
+    private RewardsService rewardsService;
+    private List<Attraction> attractions;
+    private AttractionIndex index;
+    private Location[] locations;
+    private double[] distances;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        rewardsService = new RewardsService(new GpsUtil(), new RewardCentral());
+        SplittableRandom random = new SplittableRandom(42);
+        attractions = new ArrayList<>(catalogueSize);
+        for (int i = 0; i < catalogueSize; i++) {
+            attractions.add(new Attraction("attraction" + i, "city", "state",
+                    random.nextDouble(-85, 85), random.nextDouble(-180, 180)));
+        }
+        index = new AttractionIndex(attractions);
+        locations = new Location[LOCATIONS];
+        for (int i = 0; i < LOCATIONS; i++) {
+            locations[i] = new Location(random.nextDouble(-85, 85), random.nextDouble(-180, 180));
+        }
+        distances = new double[catalogueSize];
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        rewardsService.stop();
+    }
+
+    @Benchmark
+    public void distancesWithFormula(Blackhole blackhole) {
+        Location location = nextLocation();
+        for (Attraction attraction : attractions) {
+            blackhole.consume(rewardsService.getDistance(attraction, location));
+        }
+    }
+
+    @Benchmark
+    public double[] distancesWithIndexBatch() {
+        index.distancesFrom(nextLocation(), distances);
+        return distances;
+    }
+
+    @Benchmark
+    public void withinRadiusWithFormula(Blackhole blackhole) {
+        Location location = nextLocation();
+        for (Attraction attraction : attractions) {
+            if (!(rewardsService.getDistance(attraction, location) > radiusMiles)) {
+                blackhole.consume(attraction);
+            }
+        }
+    }
+
+    @Benchmark
+    public void withinRadiusWithIndex(Blackhole blackhole) {
+        index.forEachWithin(nextLocation(), radiusMiles, blackhole::consume);
+    }
+
+    @Benchmark
+    public List<NearbyAttraction> nearestWithIndex() {
+        return index.nearest(nextLocation(), 5);
+    }
+
+    private Location nextLocation() {
+        next = (next + 1) & (LOCATIONS - 1);
+        return locations[next];
+    }
+}
@@ -0,0 +1,100 @@
+package com.openclassrooms.tourguide.benchmark;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+
+import gpsUtil.GpsUtil;
+import gpsUtil.location.Attraction;
+import gpsUtil.location.Location;
+import gpsUtil.location.VisitedLocation;
+import rewardCentral.RewardCentral;
+import tripPricer.Provider;
+import tripPricer.TripPricer;
+
+import com.openclassrooms.tourguide.user.User;
+
+/**
+ * Bouchons sans latence des bibliothèques externes : les benchmarks mesurent le code de TourGuide, pas les
+ * pauses aléatoires de gpsUtil, RewardCentral et TripPricer.
+ */
+final class LatencyFreeLibraries {
+
+    private LatencyFreeLibraries() {
+    }
+
+    /**
+     * Catalogue synthétique de {@code size} attractions, reproductible pour une même graine.
+     */
+    static List<Attraction> attractions(int size, long seed) {
+        SplittableRandom random = new SplittableRandom(seed);
+        List<Attraction> attractions = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            attractions.add(new Attraction("attraction" + i, "city", "state",
+                    random.nextDouble(-85, 85), random.nextDouble(-180, 180)));
+        }
+        return attractions;
+    }
+
+    static User user(int index) {
+        return new User(new UUID(0, index), "internalUser" + index, "000", "internalUser" + index + "@tourGuide.com");
+    }
+
+    static Location randomLocation() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        return new Location(random.nextDouble(-85, 85), random.nextDouble(-180, 180));
+    }
+
+    /**
+     * gpsUtil renvoyant immédiatement une position aléatoire, et toujours la même liste d'attractions
+     * (contrairement à la bibliothèque, qui recrée les attractions à chaque appel).
+     */
+    static final class InstantGpsUtil extends GpsUtil {
+        private final List<Attraction> attractions;
+
+        InstantGpsUtil(List<Attraction> attractions) {
+            this.attractions = attractions;
+        }
+
+        @Override
+        public VisitedLocation getUserLocation(UUID userId) {
+            return new VisitedLocation(userId, randomLocation(), new Date());
+        }
+
+        @Override
+        public List<Attraction> getAttractions() {
+            return attractions;
+        }
+    }
+
+    /**
+     * RewardCentral renvoyant immédiatement un nombre de points déterministe.
+     */
+    static final class InstantRewardCentral extends RewardCentral {
+
+        @Override
+        public int getAttractionRewardPoints(UUID attractionId, UUID userId) {
+            return 1 + Math.floorMod(attractionId.hashCode() ^ userId.hashCode(), 1000);
+        }
+    }
+
+    /**
+     * TripPricer renvoyant immédiatement cinq offres.
+     */
+    static final class InstantTripPricer extends TripPricer {
+
+        @Override
+        public List<Provider> getPrice(String apiKey, UUID attractionId, int adults, int children, int nightsStay,
+                                       int rewardsPoints) {
+            List<Provider> providers = new ArrayList<>(5);
+            for (int i = 0; i < 5; i++) {
+                providers.add(new Provider(UUID.randomUUID(), "provider" + i,
+                        Math.max(0, 100.0 * (adults + children) * nightsStay - rewardsPoints + i)));
+            }
+            return providers;
+        }
+    }
+}
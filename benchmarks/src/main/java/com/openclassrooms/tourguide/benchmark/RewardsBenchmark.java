@@ -0,0 +1,91 @@
+package com.openclassrooms.tourguide.benchmark;
+
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import gpsUtil.location.Attraction;
+import gpsUtil.location.Location;
+import gpsUtil.location.VisitedLocation;
+
+import com.openclassrooms.tourguide.service.RewardsService;
+import com.openclassrooms.tourguide.user.User;
+
+/**
+ * Passe de récompenses d'un utilisateur ({@link RewardsService#calculateRewards}) avec des bibliothèques sans latence.
+ * <p>
+ * {@code newUser} évalue un historique complet de 30 positions, dont une sur trois sur une attraction, pour un
+ * utilisateur jamais vu (points absents du cache) ; {@code nothingNew} mesure le coût fixe d'une passe sans
+ * nouvelle position.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RewardsBenchmark {
+    private static final int HISTORY_SIZE = 30;
+
+    @Param({ "26", "1000" })
+    public int catalogueSize;
+
+    private RewardsService rewardsService;
+    private VisitedLocation[] history;
+    private User rewardedUser;
+    private int nextUser;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        List<Attraction> attractions = LatencyFreeLibraries.attractions(catalogueSize, 42);
+        rewardsService = new RewardsService(new LatencyFreeLibraries.InstantGpsUtil(attractions),
+                new LatencyFreeLibraries.InstantRewardCentral());
+        history = new VisitedLocation[HISTORY_SIZE];
+        for (int i = 0; i < HISTORY_SIZE; i++) {
+            Location location = i % 3 == 0
+                    ? attractions.get(i % attractions.size())
+                    : LatencyFreeLibraries.randomLocation();
+            history[i] = new VisitedLocation(null, location, new Date());
+        }
+        rewardedUser = LatencyFreeLibraries.user(-1);
+        for (VisitedLocation visitedLocation : history) {
+            rewardedUser.addToVisitedLocations(visitedLocation);
+        }
+        rewardsService.calculateRewards(rewardedUser).join();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        rewardsService.stop();
+    }
+
+    @Benchmark
+    public User newUser() {
+        User user = LatencyFreeLibraries.user(nextUser++);
+        for (VisitedLocation visitedLocation : history) {
+            user.addToVisitedLocations(visitedLocation);
+        }
+        rewardsService.calculateRewards(user).join();
+        return user;
+    }
+
+    @Benchmark
+    public User nothingNew() {
+        rewardsService.calculateRewards(rewardedUser).join();
+        return rewardedUser;
+    }
+}
@@ -0,0 +1,82 @@
+package com.openclassrooms.tourguide.benchmark;
+
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import gpsUtil.location.Attraction;
+import gpsUtil.location.VisitedLocation;
+import tripPricer.Provider;
+
+import com.openclassrooms.tourguide.dto.NearByAttractionDto;
+import com.openclassrooms.tourguide.execution.ExecutionSettings;
+import com.openclassrooms.tourguide.helper.InternalTestHelper;
+import com.openclassrooms.tourguide.service.RewardsService;
+import com.openclassrooms.tourguide.service.TourGuideService;
+import com.openclassrooms.tourguide.user.User;
+
+/**
+ * Requêtes unitaires de {@link TourGuideService} : attractions proches (points déjà en cache après le premier appel)
+ * et offres de voyage.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TourGuideServiceBenchmark {
+
+    @Param({ "26", "1000" })
+    public int catalogueSize;
+
+    private RewardsService rewardsService;
+    private TourGuideService tourGuideService;
+    private User user;
+    private VisitedLocation visitedLocation;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        List<Attraction> attractions = LatencyFreeLibraries.attractions(catalogueSize, 42);
+        LatencyFreeLibraries.InstantGpsUtil gpsUtil = new LatencyFreeLibraries.InstantGpsUtil(attractions);
+        rewardsService = new RewardsService(gpsUtil, new LatencyFreeLibraries.InstantRewardCentral());
+        InternalTestHelper.setInternalUserNumber(0);
+        tourGuideService = new TourGuideService(gpsUtil, rewardsService, new LatencyFreeLibraries.InstantTripPricer(),
+                ExecutionSettings.DEFAULT);
+        tourGuideService.tracker.stopTracking();
+
+        user = LatencyFreeLibraries.user(0);
+        visitedLocation = new VisitedLocation(user.getUserId(), LatencyFreeLibraries.randomLocation(), new Date());
+        user.addToVisitedLocations(visitedLocation);
+        tourGuideService.addUser(user);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        tourGuideService.stop();
+    }
+
+    @Benchmark
+    public List<NearByAttractionDto> getNearByAttractions() {
+        return tourGuideService.getNearByAttractions(visitedLocation, user);
+    }
+
+    @Benchmark
+    public List<Provider> getTripDeals() {
+        return tourGuideService.getTripDeals(user);
+    }
+}
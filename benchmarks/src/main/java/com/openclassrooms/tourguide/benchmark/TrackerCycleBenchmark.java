@@ -0,0 +1,77 @@
+package com.openclassrooms.tourguide.benchmark;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import gpsUtil.location.Attraction;
+
+import com.openclassrooms.tourguide.execution.ExecutionSettings;
+import com.openclassrooms.tourguide.helper.InternalTestHelper;
+import com.openclassrooms.tourguide.service.RewardsService;
+import com.openclassrooms.tourguide.service.TourGuideService;
+import com.openclassrooms.tourguide.tracker.TrackingPipeline;
+
+/**
+ * Passage complet du suivi (position, puis récompenses) sur tous les utilisateurs, via le même
+ * {@link TrackingPipeline} que le Tracker, avec des bibliothèques sans latence : mesure le débit propre
+ * à TourGuide (ordonnancement, exécuteurs, historique, passe de récompenses).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TrackerCycleBenchmark {
+
+    @Param({ "1000", "10000" })
+    public int userCount;
+
+    @Param({ "platform", "virtual" })
+    public String executionMode;
+
+    private TourGuideService tourGuideService;
+    private TrackingPipeline pipeline;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        List<Attraction> attractions = LatencyFreeLibraries.attractions(26, 42);
+        LatencyFreeLibraries.InstantGpsUtil gpsUtil = new LatencyFreeLibraries.InstantGpsUtil(attractions);
+        ExecutionSettings executionSettings = ExecutionSettings.of(executionMode, 100, 100);
+        RewardsService rewardsService = new RewardsService(gpsUtil, new LatencyFreeLibraries.InstantRewardCentral(),
+                executionSettings);
+        InternalTestHelper.setInternalUserNumber(0);
+        tourGuideService = new TourGuideService(gpsUtil, rewardsService, new LatencyFreeLibraries.InstantTripPricer(),
+                executionSettings);
+        tourGuideService.tracker.stopTracking();
+        for (int i = 0; i < userCount; i++) {
+            tourGuideService.addUser(LatencyFreeLibraries.user(i));
+        }
+        pipeline = new TrackingPipeline(tourGuideService, 1000, Duration.ofMinutes(2), Duration.ofMinutes(1));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        tourGuideService.stop();
+    }
+
+    @Benchmark
+    public TrackingPipeline.CycleReport trackAllUsers() throws InterruptedException {
+        return pipeline.run(tourGuideService.userIterator(), userCount);
+    }
+}
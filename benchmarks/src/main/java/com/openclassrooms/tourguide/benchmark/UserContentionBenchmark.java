@@ -0,0 +1,88 @@
+package com.openclassrooms.tourguide.benchmark;
+
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import gpsUtil.location.Attraction;
+import gpsUtil.location.VisitedLocation;
+
+import com.openclassrooms.tourguide.user.User;
+import com.openclassrooms.tourguide.user.UserReward;
+
+/**
+ * Accès concurrents à un même {@link User} : plusieurs écrivains (Tracker, requêtes) et un lecteur (couche REST)
+ * sur l'historique des positions, puis sur les récompenses (essentiellement des doublons, comme en production).
+ */
+@State(Scope.Group)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class UserContentionBenchmark {
+    private static final int LOCATIONS = 1024;
+
+    private User user;
+    private VisitedLocation[] locations;
+    private UserReward[] rewards;
+    private int nextLocation;
+    private int nextReward;
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        user = LatencyFreeLibraries.user(0);
+        locations = new VisitedLocation[LOCATIONS];
+        for (int i = 0; i < LOCATIONS; i++) {
+            locations[i] = new VisitedLocation(user.getUserId(), LatencyFreeLibraries.randomLocation(), new Date());
+        }
+        List<Attraction> attractions = LatencyFreeLibraries.attractions(26, 42);
+        rewards = new UserReward[attractions.size()];
+        for (int i = 0; i < rewards.length; i++) {
+            rewards[i] = new UserReward(locations[i], attractions.get(i), i);
+        }
+    }
+
+    @Benchmark
+    @Group("visitedLocations")
+    @GroupThreads(3)
+    public void addToVisitedLocations() {
+        // Compteur partagé non synchronisé : seule compte la répartition des positions, pas leur ordre exact.
+        user.addToVisitedLocations(locations[nextLocation++ & (LOCATIONS - 1)]);
+    }
+
+    @Benchmark
+    @Group("visitedLocations")
+    @GroupThreads(1)
+    public List<VisitedLocation> getVisitedLocations() {
+        return user.getVisitedLocations();
+    }
+
+    @Benchmark
+    @Group("userRewards")
+    @GroupThreads(3)
+    public void addUserReward() {
+        user.addUserReward(rewards[Math.floorMod(nextReward++, rewards.length)]);
+    }
+
+    @Benchmark
+    @Group("userRewards")
+    @GroupThreads(1)
+    public List<UserReward> getUserRewards() {
+        return user.getUserRewards();
+    }
+}
@@ -1,23 +1,34 @@
 package com.openclassrooms.tourguide;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.Date;
+import java.util.Iterator;
 import java.util.List;
 import java.util.stream.Collectors;
 import java.util.concurrent.CompletableFuture;
 
+import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 import org.springframework.web.server.ResponseStatusException;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 
 import gpsUtil.location.Attraction;
 import gpsUtil.location.VisitedLocation;
 
+import com.openclassrooms.tourguide.ingest.LocationFix;
+import com.openclassrooms.tourguide.ingest.LocationFixReader;
+import com.openclassrooms.tourguide.ingest.LocationIngestionService;
+import com.openclassrooms.tourguide.ingest.LocationIngestionService.IngestionReport;
 import com.openclassrooms.tourguide.service.TourGuideService;
+import com.openclassrooms.tourguide.service.TourGuideService.UserPage;
 import com.openclassrooms.tourguide.user.User;
 import com.openclassrooms.tourguide.user.UserReward;
 import com.openclassrooms.tourguide.dto.NearByAttractionDto;
+import com.openclassrooms.tourguide.dto.UserPageDto;
 
 import tripPricer.Provider;
 
@@ -25,9 +36,11 @@ import tripPricer.Provider;
 public class TourGuideController {
 
     private final TourGuideService tourGuideService;
+    private final LocationIngestionService locationIngestionService;
 
-    public TourGuideController(TourGuideService tourGuideService) {
+    public TourGuideController(TourGuideService tourGuideService, LocationIngestionService locationIngestionService) {
         this.tourGuideService = tourGuideService;
+        this.locationIngestionService = locationIngestionService;
     }
 
     @RequestMapping("/")
@@ -54,17 +67,52 @@ public class TourGuideController {
             .thenApply(visitedLocation -> tourGuideService.getNearByAttractions(visitedLocation, user));
     }
     
+    /**
+     * Retourne les récompenses déjà obtenues par l'utilisateur, sans lancer de calcul : une évaluation déjà en cours
+     * est attendue si elle tient dans le délai.
+     */
     @RequestMapping("/getRewards") 
-    public List<UserReward> getRewards(@RequestParam String userName) {
-        return tourGuideService.getUserRewards(getUser(userName));
+    public CompletableFuture<List<UserReward>> getRewards(@RequestParam String userName) {
+        return tourGuideService.getUserRewardsAsync(getUser(userName));
     }
        
     @RequestMapping("/getTripDeals")
-    public List<Provider> getTripDeals(@RequestParam String userName) {
-        // Calcule les offres de voyage en fonction des préférences de l'utilisateur et de ses points de récompense cumulés.
-        return tourGuideService.getTripDeals(getUser(userName));
+    public CompletableFuture<List<Provider>> getTripDeals(@RequestParam String userName) {
+        // Calcule les offres de voyage en fonction des préférences de l'utilisateur et de ses points de récompense cumulés,
+        // sans occuper de thread Tomcat pendant l'appel à TripPricer.
+        return tourGuideService.getTripDealsAsync(getUser(userName));
     }
     
+    /**
+     * Positions envoyées par les clients, en tableau JSON lu en flux (voir {@link LocationFixReader}).
+     */
+    @PostMapping(value = "/ingestLocations", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public IngestionReport ingestJsonLocations(InputStream body) throws IOException {
+        return ingest(() -> LocationFixReader.json(body));
+    }
+
+    /**
+     * Positions envoyées par les clients, en enregistrements binaires compacts (voir {@link LocationFixReader}).
+     */
+    @PostMapping(value = "/ingestLocations", consumes = MediaType.APPLICATION_OCTET_STREAM_VALUE)
+    public IngestionReport ingestBinaryLocations(InputStream body) throws IOException {
+        return ingest(() -> LocationFixReader.binary(body));
+    }
+
+    private IngestionReport ingest(FixSource fixes) throws IOException {
+        try {
+            return locationIngestionService.ingest(fixes.open());
+        } catch (IllegalArgumentException e) {
+            // Flux mal formé : les positions lues avant l'erreur ont été ajoutées.
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage(), e);
+        }
+    }
+
+    @FunctionalInterface
+    private interface FixSource {
+        Iterator<LocationFix> open() throws IOException;
+    }
+
     private User getUser(String userName) {
         User user = tourGuideService.getUser(userName);
         if (user == null) {
@@ -82,13 +130,27 @@ public class TourGuideController {
     @RequestMapping("/getAllUsersBasic")
     public List<String> getAllUsersBasic() {
         // Limitation volontaire à 10 utilisateurs pour éviter de surcharger le frontend lors du chargement de la liste,
-        // car le système peut contenir des milliers d'utilisateurs en mémoire.
-        return tourGuideService.getAllUsers().stream()
-                .limit(10)
+        // car le système peut contenir des milliers d'utilisateurs en mémoire : seule la première page est lue.
+        return tourGuideService.getUsers(null, 10).users().stream()
                 .map(User::getUserName)
                 .collect(Collectors.toList());
     }
 
+    /**
+     * Noms des utilisateurs page par page : la réponse contient le jeton de la page suivante
+     * ({@code nextCursor}, absent sur la dernière page), à renvoyer tel quel dans {@code cursor}.
+     */
+    @RequestMapping("/getUsers")
+    public UserPageDto getUsers(@RequestParam(required = false) String cursor,
+                                @RequestParam(defaultValue = "100") int limit) {
+        try {
+            UserPage page = tourGuideService.getUsers(cursor, limit);
+            return new UserPageDto(page.users().stream().map(User::getUserName).toList(), page.nextCursor());
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage(), e);
+        }
+    }
+
     /**
      * Endpoint de test/démo : force un utilisateur à visiter la première attraction pour générer des récompenses.
      */
@@ -96,12 +158,13 @@ public class TourGuideController {
     public void triggerVisit(@RequestParam String userName) {
         User user = getUser(userName);
         // On téléporte l'utilisateur sur la première attraction
-        Attraction attraction = tourGuideService.getGpsUtil().getAttractions().get(0);
-        user.addToVisitedLocations(new VisitedLocation(user.getUserId(), attraction, new Date()));
+        Attraction attraction = tourGuideService.getRewardsService().getAttractions().get(0);
+        tourGuideService.addVisitedLocations(user, List.of(new VisitedLocation(user.getUserId(), attraction, new Date())))
+                .join();
         
         // Force manuellement le calcul des récompenses immédiatement pour permettre de tester 
         // le flux complet sans attendre le déplacement GPS réel ou le cycle du Tracker.
-        tourGuideService.getRewardsService().calculateRewards(user);
+        tourGuideService.getRewardsService().requestEvaluation(user);
     }
    
 }
\ No newline at end of file
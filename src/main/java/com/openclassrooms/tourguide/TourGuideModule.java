@@ -1,11 +1,46 @@
 package com.openclassrooms.tourguide;
 
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.convert.DurationStyle;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
 
 import gpsUtil.GpsUtil;
+import gpsUtil.location.Attraction;
 import rewardCentral.RewardCentral;
-import com.openclassrooms.tourguide.service.RewardsService;
+import tripPricer.TripPricer;
+import com.openclassrooms.tourguide.client.LocationSource;
+import com.openclassrooms.tourguide.client.PricingSource;
+import com.openclassrooms.tourguide.client.RewardSource;
+import com.openclassrooms.tourguide.cluster.ClusterMembership;
+import com.openclassrooms.tourguide.cluster.FileMembership;
+import com.openclassrooms.tourguide.cluster.UserPartition;
+import com.openclassrooms.tourguide.execution.ExecutionSettings;
+import com.openclassrooms.tourguide.execution.RequestDeadlines;
+import com.openclassrooms.tourguide.helper.InternalTestHelper;
+import com.openclassrooms.tourguide.helper.InternalUserSettings;
+import com.openclassrooms.tourguide.metrics.MeteredSources;
+import com.openclassrooms.tourguide.service.RewardQueueSettings;
+import com.openclassrooms.tourguide.service.TourGuideService;
+import com.openclassrooms.tourguide.simulation.CallProfile;
+import com.openclassrooms.tourguide.simulation.LatencyProfile;
+import com.openclassrooms.tourguide.simulation.LocationSimulator;
+import com.openclassrooms.tourguide.simulation.PricingSimulator;
+import com.openclassrooms.tourguide.simulation.RewardSimulator;
+import com.openclassrooms.tourguide.store.InMemoryUserRepository;
+import com.openclassrooms.tourguide.store.JournaledUserRepository;
+import com.openclassrooms.tourguide.store.MappedUserRepository;
+import com.openclassrooms.tourguide.store.UserRepository;
+import com.openclassrooms.tourguide.tracker.TrackerLifecycle;
+import com.openclassrooms.tourguide.tracker.TrackerSettings;
 
 @Configuration
 public class TourGuideModule {
@@ -16,8 +51,29 @@ public class TourGuideModule {
 	}
 	
 	@Bean
-	public RewardsService getRewardsService() {
-		return new RewardsService(getGpsUtil(), getRewardCentral());
+	public ExecutionSettings getExecutionSettings(
+			@Value("${tourguide.execution.mode:platform}") String mode,
+			@Value("${tourguide.execution.gps-util-concurrency:100}") int gpsUtilConcurrency,
+			@Value("${tourguide.execution.reward-central-concurrency:100}") int rewardCentralConcurrency,
+			@Value("${tourguide.execution.trip-pricer-concurrency:50}") int tripPricerConcurrency,
+			@Value("${tourguide.execution.user-shards:0}") int userShards) {
+		return ExecutionSettings.of(mode, gpsUtilConcurrency, rewardCentralConcurrency, tripPricerConcurrency, userShards);
+	}
+	
+	@Bean
+	public RequestDeadlines getRequestDeadlines(Environment environment) {
+		return new RequestDeadlines(
+				DurationStyle.detectAndParse(environment.getProperty("tourguide.requests.trip-deals-timeout", "2s")),
+				DurationStyle.detectAndParse(environment.getProperty("tourguide.requests.trip-deals-hedge-delay", "300ms")),
+				DurationStyle.detectAndParse(environment.getProperty("tourguide.requests.rewards-timeout", "2s")));
+	}
+	
+	@Bean
+	public RewardQueueSettings getRewardQueueSettings(Environment environment) {
+		return new RewardQueueSettings(
+				environment.getProperty("tourguide.rewards.queue.capacity", Integer.class, 10_000),
+				environment.getProperty("tourguide.rewards.queue.workers", Integer.class, 100),
+				DurationStyle.detectAndParse(environment.getProperty("tourguide.rewards.queue.coalesce-window", "20ms")));
 	}
 	
 	@Bean
@@ -25,4 +81,167 @@ public class TourGuideModule {
 		return new RewardCentral();
 	}
 	
+	/*
+	 * Sources des données externes : les bibliothèques de libs/ par défaut, ou des simulateurs locaux
+	 * reproductibles (tourguide.simulation.enabled=true) pour les tests de charge. Chaque appel est chronométré.
+	 */
+	
+	@Bean
+	public LocationSource getLocationSource(Environment environment) {
+		return MeteredSources.locationSource(createLocationSource(environment));
+	}
+	
+	@Bean
+	public RewardSource getRewardSource(Environment environment, LocationSource locationSource) {
+		return MeteredSources.rewardSource(createRewardSource(environment, locationSource));
+	}
+	
+	@Bean
+	public PricingSource getPricingSource(Environment environment) {
+		return MeteredSources.pricingSource(createPricingSource(environment));
+	}
+	
+	/*
+	 * Stockage des utilisateurs : en mémoire par défaut, dans des fichiers projetés en mémoire
+	 * (tourguide.store.path), ou en mémoire avec journal et instantanés (tourguide.journal.path),
+	 * pour conserver utilisateurs, positions et récompenses d'un démarrage à l'autre.
+	 */
+	
+	@Bean
+	public UserRepository getUserRepository(Environment environment, LocationSource locationSource) throws IOException {
+		String storePath = environment.getProperty("tourguide.store.path", "");
+		if (!storePath.isBlank()) {
+			// Enregistrements de taille fixe : chaque attraction du catalogue doit pouvoir y être récompensée.
+			int attractionCount = locationSource.getAttractions().size();
+			if (attractionCount > MappedUserRepository.MAX_REWARDS_PER_USER) {
+				throw new IllegalArgumentException("tourguide.store.path holds at most "
+						+ MappedUserRepository.MAX_REWARDS_PER_USER + " rewards per user, but the catalogue has "
+						+ attractionCount + " attractions; use tourguide.journal.path instead");
+			}
+			return MappedUserRepository.open(Path.of(storePath),
+					environment.getProperty("tourguide.store.capacity", Integer.class, 1_000_000),
+					attractionResolver(locationSource));
+		}
+		String journalPath = environment.getProperty("tourguide.journal.path", "");
+		if (!journalPath.isBlank()) {
+			return JournaledUserRepository.open(Path.of(journalPath),
+					DurationStyle.detectAndParse(environment.getProperty("tourguide.journal.commit-interval", "10ms")),
+					DurationStyle.detectAndParse(environment.getProperty("tourguide.journal.snapshot-interval", "5m")),
+					attractionResolver(locationSource));
+		}
+		return new InMemoryUserRepository(InternalTestHelper.getInternalUserNumber());
+	}
+	
+	/*
+	 * Tracker lancé avec le contexte, après un délai puis une montée en charge progressive,
+	 * et arrêté en laissant finir les suivis en cours.
+	 */
+	
+	@Bean
+	public TrackerSettings getTrackerSettings(Environment environment) {
+		return new TrackerSettings(
+				DurationStyle.detectAndParse(environment.getProperty("tourguide.tracker.start-delay", "30s")),
+				DurationStyle.detectAndParse(environment.getProperty("tourguide.tracker.warm-up", "2m")),
+				environment.getProperty("tourguide.tracker.warm-up-concurrency", Integer.class, 50),
+				environment.getProperty("tourguide.tracker.max-concurrency", Integer.class, 1000),
+				DurationStyle.detectAndParse(environment.getProperty("tourguide.tracker.drain-timeout", "20s")));
+	}
+	
+	@Bean
+	public TrackerLifecycle getTrackerLifecycle(TourGuideService tourGuideService) {
+		return new TrackerLifecycle(tourGuideService.tracker);
+	}
+	
+	/*
+	 * Suivi partagé entre plusieurs instances : chaque nœud ne suit que les utilisateurs que l'anneau
+	 * de hachage cohérent lui attribue. Membres : aucun autre (none) ou fichiers de battement
+	 * dans un répertoire commun (file).
+	 */
+	
+	@Bean
+	public ClusterMembership getClusterMembership(Environment environment) throws IOException {
+		String membership = environment.getProperty("tourguide.cluster.membership", "none");
+		if (membership.equals("none")) {
+			return ClusterMembership.standalone();
+		}
+		if (!membership.equals("file")) {
+			throw new IllegalArgumentException("Unknown cluster membership: " + membership);
+		}
+		// Un répertoire vide serait le répertoire courant, propre à chaque nœud : aucun ne verrait les autres.
+		String directory = environment.getProperty("tourguide.cluster.directory", "");
+		if (directory.isBlank()) {
+			throw new IllegalArgumentException("tourguide.cluster.directory is required when tourguide.cluster.membership=file");
+		}
+		return new FileMembership(Path.of(directory),
+				environment.getProperty("tourguide.cluster.node-id", "node-" + ProcessHandle.current().pid()),
+				DurationStyle.detectAndParse(environment.getProperty("tourguide.cluster.heartbeat", "2s")),
+				DurationStyle.detectAndParse(environment.getProperty("tourguide.cluster.node-timeout", "10s")));
+	}
+	
+	@Bean
+	public UserPartition getUserPartition(ClusterMembership clusterMembership) {
+		return new UserPartition(clusterMembership);
+	}
+	
+	@Bean
+	public InternalUserSettings getInternalUserSettings(Environment environment) {
+		String fixture = environment.getProperty("tourguide.internal-users.fixture", "");
+		return new InternalUserSettings(environment.getProperty("tourguide.internal-users.seed", Long.class, 42L),
+				fixture.isBlank() ? null : Path.of(fixture));
+	}
+	
+	private LocationSource createLocationSource(Environment environment) {
+		if (!isSimulationEnabled(environment)) {
+			return LocationSource.from(getGpsUtil());
+		}
+		long seed = simulationSeed(environment);
+		int attractionCount = environment.getProperty("tourguide.simulation.attractions", Integer.class, 0);
+		// Sans taille de catalogue, les simulateurs reprennent les attractions de gpsUtil.
+		List<Attraction> attractions = attractionCount > 0
+				? LocationSimulator.syntheticAttractions(attractionCount, seed)
+				: getGpsUtil().getAttractions();
+		return new LocationSimulator(seed, callProfile(environment, "gps", "uniform:30ms..100ms", 1000), attractions);
+	}
+	
+	private RewardSource createRewardSource(Environment environment, LocationSource locationSource) {
+		if (!isSimulationEnabled(environment)) {
+			return RewardSource.from(getRewardCentral());
+		}
+		return new RewardSimulator(simulationSeed(environment),
+				callProfile(environment, "rewards", "uniform:1ms..1000ms", 0), locationSource.getAttractions());
+	}
+	
+	private PricingSource createPricingSource(Environment environment) {
+		if (!isSimulationEnabled(environment)) {
+			return PricingSource.from(new TripPricer());
+		}
+		return new PricingSimulator(simulationSeed(environment),
+				callProfile(environment, "pricing", "uniform:1ms..50ms", 0));
+	}
+	
+	private Function<String, Attraction> attractionResolver(LocationSource locationSource) {
+		// Les récompenses relues retrouvent leur attraction par son nom, stable d'un appel à l'autre.
+		Map<String, Attraction> attractionsByName = locationSource.getAttractions().stream()
+				.collect(Collectors.toMap(attraction -> attraction.attractionName, Function.identity(),
+						(first, second) -> first));
+		return attractionsByName::get;
+	}
+	
+	private boolean isSimulationEnabled(Environment environment) {
+		return environment.getProperty("tourguide.simulation.enabled", Boolean.class, false);
+	}
+	
+	private long simulationSeed(Environment environment) {
+		return environment.getProperty("tourguide.simulation.seed", Long.class, 42L);
+	}
+	
+	private CallProfile callProfile(Environment environment, String source, String defaultLatency,
+			int defaultMaxCallsPerSecond) {
+		String prefix = "tourguide.simulation." + source + ".";
+		return new CallProfile(
+				LatencyProfile.parse(environment.getProperty(prefix + "latency", defaultLatency)),
+				environment.getProperty(prefix + "error-rate", Double.class, 0.0),
+				environment.getProperty(prefix + "max-calls-per-second", Integer.class, defaultMaxCallsPerSecond));
+	}
+	
 }
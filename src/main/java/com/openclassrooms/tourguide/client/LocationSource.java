@@ -0,0 +1,35 @@
+package com.openclassrooms.tourguide.client;
+
+import java.util.List;
+import java.util.UUID;
+
+import gpsUtil.GpsUtil;
+import gpsUtil.location.Attraction;
+import gpsUtil.location.VisitedLocation;
+
+/**
+ * Source des positions des utilisateurs et du catalogue d'attractions.
+ * <p>
+ * En production, il s'agit de gpsUtil ({@link #from(GpsUtil)}) ; les simulateurs du paquet
+ * {@code simulation} permettent de la remplacer pour les tests de charge.
+ */
+public interface LocationSource {
+
+    VisitedLocation getUserLocation(UUID userId);
+
+    List<Attraction> getAttractions();
+
+    static LocationSource from(GpsUtil gpsUtil) {
+        return new LocationSource() {
+            @Override
+            public VisitedLocation getUserLocation(UUID userId) {
+                return gpsUtil.getUserLocation(userId);
+            }
+
+            @Override
+            public List<Attraction> getAttractions() {
+                return gpsUtil.getAttractions();
+            }
+        };
+    }
+}
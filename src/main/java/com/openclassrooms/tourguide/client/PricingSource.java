@@ -0,0 +1,21 @@
+package com.openclassrooms.tourguide.client;
+
+import java.util.List;
+import java.util.UUID;
+
+import tripPricer.Provider;
+import tripPricer.TripPricer;
+
+/**
+ * Source des offres de voyage (TripPricer en production).
+ */
+@FunctionalInterface
+public interface PricingSource {
+
+    List<Provider> getPrice(String apiKey, UUID attractionId, int adults, int children, int nightsStay,
+                            int rewardsPoints);
+
+    static PricingSource from(TripPricer tripPricer) {
+        return tripPricer::getPrice;
+    }
+}
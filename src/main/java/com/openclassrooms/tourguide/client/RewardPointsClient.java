@@ -0,0 +1,65 @@
+package com.openclassrooms.tourguide.client;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.stream.Collectors;
+
+import com.github.benmanes.caffeine.cache.AsyncLoadingCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+/**
+ * Couche d'accès à la source des points de récompense (RewardCentral en production).
+ * <p>
+ * Chaque appel à {@link RewardSource#getAttractionRewardPoints} est lent : les résultats sont donc mis en cache
+ * par couple (attraction, utilisateur), avec expiration et taille bornée. Les demandes concurrentes pour un même
+ * couple partagent le même appel en cours, et l'API par lot lance tous les appels manquants en parallèle.
+ */
+public class RewardPointsClient {
+    private static final Duration DEFAULT_TIME_TO_LIVE = Duration.ofMinutes(30);
+    private static final long DEFAULT_MAXIMUM_SIZE = 1_000_000;
+
+    private final AsyncLoadingCache<RewardPointsKey, Integer> cache;
+
+    public RewardPointsClient(RewardSource rewardSource, Executor executor) {
+        this(rewardSource, executor, DEFAULT_TIME_TO_LIVE, DEFAULT_MAXIMUM_SIZE);
+    }
+
+    /**
+     * @param executor exécuteur sur lequel sont lancés les appels (bloquants) à la source.
+     * @param timeToLive durée de validité d'un résultat en cache.
+     * @param maximumSize nombre maximal de couples (attraction, utilisateur) conservés.
+     */
+    public RewardPointsClient(RewardSource rewardSource, Executor executor, Duration timeToLive, long maximumSize) {
+        // Seuls les appels à la source passent par l'exécuteur fourni ; la maintenance du cache reste sur celui de Caffeine.
+        this.cache = Caffeine.newBuilder()
+                .expireAfterWrite(timeToLive)
+                .maximumSize(maximumSize)
+                .buildAsync((key, cacheExecutor) -> CompletableFuture.supplyAsync(
+                        () -> rewardSource.getAttractionRewardPoints(key.attractionId(), key.userId()), executor));
+    }
+
+    public CompletableFuture<Integer> getRewardPoints(UUID attractionId, UUID userId) {
+        return cache.get(new RewardPointsKey(attractionId, userId));
+    }
+
+    /**
+     * Résout les points de plusieurs attractions pour un même utilisateur en un seul aller-retour concurrent.
+     *
+     * @return les points indexés par identifiant d'attraction.
+     */
+    public CompletableFuture<Map<UUID, Integer>> getRewardPoints(Collection<UUID> attractionIds, UUID userId) {
+        List<RewardPointsKey> keys = attractionIds.stream()
+                .map(attractionId -> new RewardPointsKey(attractionId, userId))
+                .toList();
+        return cache.getAll(keys).thenApply(points -> points.entrySet().stream()
+                .collect(Collectors.toMap(entry -> entry.getKey().attractionId(), Map.Entry::getValue)));
+    }
+
+    private record RewardPointsKey(UUID attractionId, UUID userId) {
+    }
+}
@@ -0,0 +1,18 @@
+package com.openclassrooms.tourguide.client;
+
+import java.util.UUID;
+
+import rewardCentral.RewardCentral;
+
+/**
+ * Source des points de récompense d'une attraction pour un utilisateur (RewardCentral en production).
+ */
+@FunctionalInterface
+public interface RewardSource {
+
+    int getAttractionRewardPoints(UUID attractionId, UUID userId);
+
+    static RewardSource from(RewardCentral rewardCentral) {
+        return rewardCentral::getAttractionRewardPoints;
+    }
+}
@@ -0,0 +1,147 @@
+package com.openclassrooms.tourguide.client;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import io.micrometer.core.instrument.Counter;
+
+import com.github.benmanes.caffeine.cache.AsyncLoadingCache;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import com.openclassrooms.tourguide.metrics.TourGuideMetrics;
+
+import tripPricer.Provider;
+
+/**
+ * Couche d'accès à la source des offres de voyage (TripPricer en production).
+ * <p>
+ * Les offres ne dépendent que de l'utilisateur, de ses préférences (adultes, enfants, durée) et de son total de
+ * points : elles sont mises en cache sur ces cinq valeurs, avec expiration et taille bornée (LRU). Une préférence
+ * ou un total de points modifié donne une nouvelle clé, et l'entrée précédente de l'utilisateur est invalidée.
+ * <p>
+ * Passé le délai de rafraîchissement, l'offre en cache est encore servie pendant qu'un nouvel appel est lancé
+ * en arrière-plan ; les demandes concurrentes pour une même clé partagent le même appel en cours.
+ * <p>
+ * Un appel encore en cours après le délai de doublement est doublé d'un second appel identique : le premier
+ * résultat obtenu est retenu, ce qui coupe la traîne des appels lents au prix de quelques appels supplémentaires.
+ */
+public class TripDealsClient {
+    private static final Duration DEFAULT_TIME_TO_LIVE = Duration.ofMinutes(10);
+    private static final Duration DEFAULT_REFRESH_AFTER = Duration.ofMinutes(1);
+    private static final long DEFAULT_MAXIMUM_SIZE = 100_000;
+
+    private final AsyncLoadingCache<TripDealsKey, List<Provider>> cache;
+    // Dernière clé demandée par utilisateur : permet d'invalider son entrée quand ses paramètres changent.
+    private final Cache<UUID, TripDealsKey> currentKeys;
+    private final PricingSource pricingSource;
+    private final String apiKey;
+    private final Executor executor;
+    private final Duration hedgeDelay;
+    private final Counter hedgedCalls = Counter.builder(TourGuideMetrics.HEDGED_CALLS)
+            .description("Second calls launched because the first one was still running after the hedge delay")
+            .tag("source", "tripPricer")
+            .register(TourGuideMetrics.registry());
+
+    public TripDealsClient(PricingSource pricingSource, String apiKey, Executor executor) {
+        this(pricingSource, apiKey, executor, Duration.ZERO);
+    }
+
+    /**
+     * @param hedgeDelay âge à partir duquel un appel en cours est doublé ({@code ZERO} : jamais).
+     */
+    public TripDealsClient(PricingSource pricingSource, String apiKey, Executor executor, Duration hedgeDelay) {
+        this(pricingSource, apiKey, executor, hedgeDelay, DEFAULT_TIME_TO_LIVE, DEFAULT_REFRESH_AFTER,
+                DEFAULT_MAXIMUM_SIZE);
+    }
+
+    /**
+     * @param executor exécuteur sur lequel sont lancés les appels (bloquants) à la source.
+     * @param hedgeDelay âge à partir duquel un appel en cours est doublé ({@code ZERO} : jamais).
+     * @param timeToLive durée au-delà de laquelle une offre n'est plus servie.
+     * @param refreshAfter âge à partir duquel une offre servie est rafraîchie en arrière-plan.
+     * @param maximumSize nombre maximal d'entrées conservées (les moins récemment utilisées sont évincées).
+     */
+    public TripDealsClient(PricingSource pricingSource, String apiKey, Executor executor, Duration hedgeDelay,
+                           Duration timeToLive, Duration refreshAfter, long maximumSize) {
+        this.pricingSource = pricingSource;
+        this.apiKey = apiKey;
+        this.executor = executor;
+        this.hedgeDelay = hedgeDelay;
+        this.cache = Caffeine.newBuilder()
+                .expireAfterWrite(timeToLive)
+                .refreshAfterWrite(refreshAfter)
+                .maximumSize(maximumSize)
+                .buildAsync((key, cacheExecutor) -> price(key));
+        this.currentKeys = Caffeine.newBuilder()
+                .expireAfterAccess(timeToLive)
+                .maximumSize(maximumSize)
+                .build();
+    }
+
+    public CompletableFuture<List<Provider>> getTripDeals(UUID userId, int adults, int children, int nightsStay,
+                                                          int rewardPoints) {
+        TripDealsKey key = new TripDealsKey(userId, adults, children, nightsStay, rewardPoints);
+        TripDealsKey previous = currentKeys.asMap().put(userId, key);
+        if (previous != null && !previous.equals(key)) {
+            cache.synchronous().invalidate(previous);
+        }
+        return cache.get(key);
+    }
+
+    /**
+     * Oublie les offres en cache de l'utilisateur.
+     */
+    public void invalidate(UUID userId) {
+        TripDealsKey previous = currentKeys.asMap().remove(userId);
+        if (previous != null) {
+            cache.synchronous().invalidate(previous);
+        }
+    }
+
+    private CompletableFuture<List<Provider>> price(TripDealsKey key) {
+        if (hedgeDelay.isZero()) {
+            return CompletableFuture.supplyAsync(() -> callSource(key), executor);
+        }
+        CompletableFuture<List<Provider>> result = new CompletableFuture<>();
+        // Appels lancés et pas encore terminés : le résultat n'échoue que si tous ont échoué.
+        AtomicInteger pendingCalls = new AtomicInteger(1);
+        CompletableFuture.supplyAsync(() -> callSource(key), executor)
+                .whenComplete((deals, error) -> completeAttempt(result, pendingCalls, deals, error));
+        CompletableFuture.delayedExecutor(hedgeDelay.toNanos(), TimeUnit.NANOSECONDS, executor).execute(() -> {
+            if (result.isDone()) {
+                return;
+            }
+            pendingCalls.incrementAndGet();
+            hedgedCalls.increment();
+            try {
+                completeAttempt(result, pendingCalls, callSource(key), null);
+            } catch (RuntimeException e) {
+                completeAttempt(result, pendingCalls, null, e);
+            }
+        });
+        return result;
+    }
+
+    private List<Provider> callSource(TripDealsKey key) {
+        return List.copyOf(pricingSource.getPrice(apiKey, key.userId(), key.adults(), key.children(), key.nightsStay(),
+                key.rewardPoints()));
+    }
+
+    private static void completeAttempt(CompletableFuture<List<Provider>> result, AtomicInteger pendingCalls,
+                                        List<Provider> deals, Throwable error) {
+        if (error == null) {
+            result.complete(deals);
+        } else if (pendingCalls.decrementAndGet() == 0) {
+            result.completeExceptionally(error);
+        }
+    }
+
+    private record TripDealsKey(UUID userId, int adults, int children, int nightsStay, int rewardPoints) {
+    }
+}
@@ -0,0 +1,50 @@
+package com.openclassrooms.tourguide.cluster;
+
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * Liste des nœuds TourGuide actifs, dont le nœud local.
+ * <p>
+ * Les implémentations préviennent leurs abonnés à chaque arrivée ou départ d'un nœud ;
+ * {@link #close()} retire le nœud local de la liste.
+ */
+public interface ClusterMembership extends AutoCloseable {
+
+    String localNodeId();
+
+    /**
+     * @return les nœuds actifs, nœud local compris.
+     */
+    Set<String> members();
+
+    /**
+     * Abonne le listener aux changements de la liste ; il reçoit la nouvelle liste complète.
+     */
+    void onChange(Consumer<Set<String>> listener);
+
+    @Override
+    default void close() {
+    }
+
+    /**
+     * Nœud seul : il possède tous les utilisateurs (fonctionnement historique).
+     */
+    static ClusterMembership standalone() {
+        return new ClusterMembership() {
+            @Override
+            public String localNodeId() {
+                return "standalone";
+            }
+
+            @Override
+            public Set<String> members() {
+                return Set.of(localNodeId());
+            }
+
+            @Override
+            public void onChange(Consumer<Set<String>> listener) {
+            }
+        };
+    }
+}
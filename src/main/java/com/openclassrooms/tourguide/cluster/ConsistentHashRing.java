@@ -0,0 +1,61 @@
+package com.openclassrooms.tourguide.cluster;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.UUID;
+
+/**
+ * Anneau de hachage cohérent : chaque nœud y occupe plusieurs points (nœuds virtuels), et un utilisateur
+ * appartient au premier nœud rencontré après le hash de son identifiant.
+ * <p>
+ * À l'arrivée ou au départ d'un nœud, seuls les utilisateurs des arcs concernés changent de propriétaire
+ * (environ 1/N d'entre eux), et les nœuds virtuels lissent la répartition entre nœuds.
+ */
+public final class ConsistentHashRing {
+    public static final int DEFAULT_VIRTUAL_NODES = 128;
+
+    private final TreeMap<Long, String> ring = new TreeMap<>();
+
+    public ConsistentHashRing(Collection<String> nodes) {
+        this(nodes, DEFAULT_VIRTUAL_NODES);
+    }
+
+    public ConsistentHashRing(Collection<String> nodes, int virtualNodes) {
+        if (nodes.isEmpty()) {
+            throw new IllegalArgumentException("A ring needs at least one node");
+        }
+        for (String node : nodes) {
+            for (int i = 0; i < virtualNodes; i++) {
+                // Collision de deux points : l'ordre des nœuds ne doit pas décider, le plus petit nom l'emporte.
+                ring.merge(hash(node + "#" + i), node, (first, second) -> first.compareTo(second) <= 0 ? first : second);
+            }
+        }
+    }
+
+    public String ownerOf(UUID userId) {
+        Map.Entry<Long, String> owner = ring.ceilingEntry(mix(userId.getMostSignificantBits() ^ userId.getLeastSignificantBits()));
+        return owner != null ? owner.getValue() : ring.firstEntry().getValue();
+    }
+
+    // FNV-1a 64 bits puis brassage : stable d'une JVM à l'autre, contrairement à String.hashCode() étendu.
+    private static long hash(String key) {
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : key.getBytes(StandardCharsets.UTF_8)) {
+            hash ^= b;
+            hash *= 0x100000001b3L;
+        }
+        return mix(hash);
+    }
+
+    // Finaliseur de MurmurHash3 : répartit uniformément des clés proches.
+    private static long mix(long key) {
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        key *= 0xc4ceb9fe1a85ec53L;
+        key ^= key >>> 33;
+        return key;
+    }
+}
@@ -0,0 +1,135 @@
+package com.openclassrooms.tourguide.cluster;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Liste des nœuds tenue dans un répertoire partagé, pour faire tourner plusieurs instances sur une même machine
+ * (ou sur un système de fichiers commun).
+ * <p>
+ * Chaque nœud y entretient un fichier {@code <nodeId>.node} dont il met à jour la date de modification
+ * à chaque battement ; un nœud dont le fichier n'a pas été touché depuis {@code nodeTimeout} est considéré
+ * comme parti (arrêt brutal compris). Un arrêt normal supprime le fichier.
+ */
+public class FileMembership implements ClusterMembership {
+    private static final Logger logger = LoggerFactory.getLogger(FileMembership.class);
+    private static final String SUFFIX = ".node";
+
+    private final Path directory;
+    private final String nodeId;
+    private final Path heartbeatFile;
+    private final long nodeTimeoutMillis;
+    private final List<Consumer<Set<String>>> listeners = new CopyOnWriteArrayList<>();
+    private final ScheduledExecutorService heartbeats;
+    private volatile Set<String> members;
+
+    /**
+     * Rejoint le groupe : le fichier du nœud est créé et la liste lue avant le retour.
+     */
+    public FileMembership(Path directory, String nodeId, Duration heartbeatInterval, Duration nodeTimeout)
+            throws IOException {
+        if (nodeTimeout.compareTo(heartbeatInterval) <= 0) {
+            throw new IllegalArgumentException("Node timeout must be longer than the heartbeat interval");
+        }
+        this.directory = Files.createDirectories(directory);
+        this.nodeId = nodeId;
+        this.heartbeatFile = directory.resolve(nodeId + SUFFIX);
+        this.nodeTimeoutMillis = nodeTimeout.toMillis();
+        Files.write(heartbeatFile, new byte[0]);
+        this.members = readMembers();
+        this.heartbeats = Executors.newSingleThreadScheduledExecutor(
+                Thread.ofPlatform().name("cluster-heartbeat").daemon().factory());
+        heartbeats.scheduleWithFixedDelay(this::heartbeat, heartbeatInterval.toMillis(), heartbeatInterval.toMillis(),
+                TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public String localNodeId() {
+        return nodeId;
+    }
+
+    @Override
+    public Set<String> members() {
+        return members;
+    }
+
+    @Override
+    public void onChange(Consumer<Set<String>> listener) {
+        listeners.add(listener);
+    }
+
+    @Override
+    public void close() {
+        heartbeats.shutdownNow();
+        try {
+            Files.deleteIfExists(heartbeatFile);
+        } catch (IOException e) {
+            // Le fichier expirera de lui-même après nodeTimeout.
+            logger.warn("Could not remove cluster heartbeat file {}", heartbeatFile, e);
+        }
+    }
+
+    private void heartbeat() {
+        try {
+            Files.setLastModifiedTime(heartbeatFile, FileTime.fromMillis(System.currentTimeMillis()));
+        } catch (NoSuchFileException e) {
+            // Fichier supprimé de l'extérieur : le nœud se réannonce.
+            rewrite();
+        } catch (IOException e) {
+            logger.warn("Cluster heartbeat failed", e);
+        }
+        try {
+            Set<String> current = readMembers();
+            if (!current.equals(members)) {
+                members = current;
+                listeners.forEach(listener -> listener.accept(current));
+            }
+        } catch (IOException e) {
+            logger.warn("Could not read cluster members from {}", directory, e);
+        }
+    }
+
+    private void rewrite() {
+        try {
+            Files.write(heartbeatFile, new byte[0]);
+        } catch (IOException e) {
+            logger.warn("Cluster heartbeat failed", e);
+        }
+    }
+
+    private Set<String> readMembers() throws IOException {
+        long now = System.currentTimeMillis();
+        Set<String> alive = new HashSet<>();
+        // Le nœud local se compte toujours, même si sa propre écriture a échoué.
+        alive.add(nodeId);
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*" + SUFFIX)) {
+            for (Path file : files) {
+                try {
+                    if (now - Files.getLastModifiedTime(file).toMillis() <= nodeTimeoutMillis) {
+                        String name = file.getFileName().toString();
+                        alive.add(name.substring(0, name.length() - SUFFIX.length()));
+                    }
+                } catch (NoSuchFileException e) {
+                    // Nœud parti pendant le parcours.
+                }
+            }
+        }
+        return Set.copyOf(alive);
+    }
+}
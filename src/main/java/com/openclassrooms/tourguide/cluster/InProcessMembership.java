@@ -0,0 +1,71 @@
+package com.openclassrooms.tourguide.cluster;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+/**
+ * Membre d'un groupe de nœuds partagé dans la même JVM : sert à tester la répartition et le rééquilibrage
+ * sans processus séparés.
+ */
+public class InProcessMembership implements ClusterMembership {
+    private final Group group;
+    private final String nodeId;
+    private final List<Consumer<Set<String>>> listeners = new CopyOnWriteArrayList<>();
+
+    private InProcessMembership(Group group, String nodeId) {
+        this.group = group;
+        this.nodeId = nodeId;
+    }
+
+    @Override
+    public String localNodeId() {
+        return nodeId;
+    }
+
+    @Override
+    public Set<String> members() {
+        return group.members();
+    }
+
+    @Override
+    public void onChange(Consumer<Set<String>> listener) {
+        listeners.add(listener);
+    }
+
+    @Override
+    public void close() {
+        group.leave(this);
+    }
+
+    /**
+     * Ensemble des nœuds d'une JVM ; chaque arrivée ou départ est annoncé à tous les membres restants.
+     */
+    public static class Group {
+        private final List<InProcessMembership> nodes = new CopyOnWriteArrayList<>();
+
+        public synchronized InProcessMembership join(String nodeId) {
+            InProcessMembership node = new InProcessMembership(this, nodeId);
+            nodes.add(node);
+            announce();
+            return node;
+        }
+
+        synchronized void leave(InProcessMembership node) {
+            if (nodes.remove(node)) {
+                announce();
+            }
+        }
+
+        Set<String> members() {
+            return nodes.stream().map(InProcessMembership::localNodeId).collect(Collectors.toUnmodifiableSet());
+        }
+
+        private void announce() {
+            Set<String> members = members();
+            nodes.forEach(node -> node.listeners.forEach(listener -> listener.accept(members)));
+        }
+    }
+}
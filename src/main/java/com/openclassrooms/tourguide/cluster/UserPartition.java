@@ -0,0 +1,71 @@
+package com.openclassrooms.tourguide.cluster;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+import io.micrometer.core.instrument.Gauge;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.openclassrooms.tourguide.metrics.TourGuideMetrics;
+
+/**
+ * Part des utilisateurs suivis par ce nœud : ceux que l'anneau des membres actifs lui attribue.
+ * L'anneau est reconstruit à chaque changement de la liste des membres (rééquilibrage).
+ */
+public class UserPartition implements AutoCloseable {
+    private final Logger logger = LoggerFactory.getLogger(UserPartition.class);
+    private final ClusterMembership membership;
+    // Null tant que le nœud est seul : tout lui appartient, sans passer par l'anneau.
+    private volatile ConsistentHashRing ring;
+    private volatile int memberCount;
+    private final Gauge members;
+
+    public UserPartition(ClusterMembership membership) {
+        this.membership = membership;
+        rebalance(membership.members());
+        membership.onChange(this::rebalance);
+        this.members = Gauge.builder(TourGuideMetrics.CLUSTER_MEMBERS, this, UserPartition::getMemberCount)
+                .description("TourGuide nodes sharing the tracking of users")
+                .register(TourGuideMetrics.registry());
+    }
+
+    /**
+     * Nœud seul : tous les utilisateurs sont locaux.
+     */
+    public static UserPartition standalone() {
+        return new UserPartition(ClusterMembership.standalone());
+    }
+
+    public boolean isLocal(UUID userId) {
+        ConsistentHashRing current = ring;
+        return current == null || membership.localNodeId().equals(current.ownerOf(userId));
+    }
+
+    public int getMemberCount() {
+        return memberCount;
+    }
+
+    public ClusterMembership getMembership() {
+        return membership;
+    }
+
+    /**
+     * Retire la jauge du nombre de membres ; la liste des membres reste à fermer par son propriétaire.
+     */
+    @Override
+    public void close() {
+        TourGuideMetrics.remove(List.of(members));
+    }
+
+    private synchronized void rebalance(Set<String> members) {
+        // Le nœud local fait partie de l'anneau même si la liste reçue ne le contient pas encore.
+        Set<String> nodes = new HashSet<>(members);
+        nodes.add(membership.localNodeId());
+        ring = nodes.size() == 1 ? null : new ConsistentHashRing(nodes);
+        memberCount = nodes.size();
+        logger.info("Tracking partitioned across {} node(s): {}", nodes.size(), nodes);
+    }
+}
@@ -0,0 +1,8 @@
+package com.openclassrooms.tourguide.dto;
+
+import java.util.List;
+
+// Réponse de l'endpoint 'getUsers' : une page de noms d'utilisateurs et le jeton opaque de la page suivante
+// (null sur la dernière page), que le client renvoie tel quel pour continuer le parcours.
+public record UserPageDto(List<String> userNames, String nextCursor) {
+}
@@ -0,0 +1,11 @@
+package com.openclassrooms.tourguide.execution;
+
+/**
+ * Modèle d'exécution des appels bloquants vers les bibliothèques externes (gpsUtil, RewardCentral).
+ */
+public enum ExecutionMode {
+    /** Pool fixe de threads plateforme : la taille du pool borne la concurrence. */
+    PLATFORM,
+    /** Un thread virtuel (Java 21) par tâche, la concurrence étant bornée par un sémaphore. */
+    VIRTUAL
+}
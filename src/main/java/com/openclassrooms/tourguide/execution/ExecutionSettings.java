@@ -0,0 +1,71 @@
+package com.openclassrooms.tourguide.execution;
+
+import java.util.Locale;
+
+/**
+ * Paramètres d'exécution partagés par les services : mode choisi, concurrence maximale
+ * autorisée vers chaque bibliothèque externe et nombre de shards d'utilisateurs.
+ */
+public record ExecutionSettings(ExecutionMode mode, int gpsUtilConcurrency, int rewardCentralConcurrency,
+                                int tripPricerConcurrency, int userShards) {
+
+    private static final int DEFAULT_TRIP_PRICER_CONCURRENCY = 50;
+    // Un shard par cœur : chaque thread d'écriture a le sien.
+    private static final int DEFAULT_USER_SHARDS = Runtime.getRuntime().availableProcessors();
+
+    // Valeurs historiques : deux pools fixes de 100 threads (et un pool plus petit pour TripPricer).
+    public static final ExecutionSettings DEFAULT = new ExecutionSettings(ExecutionMode.PLATFORM, 100, 100);
+
+    public ExecutionSettings {
+        if (gpsUtilConcurrency <= 0 || rewardCentralConcurrency <= 0 || tripPricerConcurrency <= 0) {
+            throw new IllegalArgumentException("Concurrency limits must be positive");
+        }
+        if (userShards <= 0) {
+            throw new IllegalArgumentException("User shard count must be positive");
+        }
+    }
+
+    public ExecutionSettings(ExecutionMode mode, int gpsUtilConcurrency, int rewardCentralConcurrency) {
+        this(mode, gpsUtilConcurrency, rewardCentralConcurrency, DEFAULT_TRIP_PRICER_CONCURRENCY);
+    }
+
+    public ExecutionSettings(ExecutionMode mode, int gpsUtilConcurrency, int rewardCentralConcurrency,
+                             int tripPricerConcurrency) {
+        this(mode, gpsUtilConcurrency, rewardCentralConcurrency, tripPricerConcurrency, DEFAULT_USER_SHARDS);
+    }
+
+    public static ExecutionSettings of(String mode, int gpsUtilConcurrency, int rewardCentralConcurrency) {
+        return of(mode, gpsUtilConcurrency, rewardCentralConcurrency, DEFAULT_TRIP_PRICER_CONCURRENCY);
+    }
+
+    public static ExecutionSettings of(String mode, int gpsUtilConcurrency, int rewardCentralConcurrency,
+                                       int tripPricerConcurrency) {
+        return of(mode, gpsUtilConcurrency, rewardCentralConcurrency, tripPricerConcurrency, 0);
+    }
+
+    /**
+     * @param userShards nombre de shards d'utilisateurs, {@code 0} pour un par cœur.
+     */
+    public static ExecutionSettings of(String mode, int gpsUtilConcurrency, int rewardCentralConcurrency,
+                                       int tripPricerConcurrency, int userShards) {
+        return new ExecutionSettings(ExecutionMode.valueOf(mode.trim().toUpperCase(Locale.ROOT)),
+                gpsUtilConcurrency, rewardCentralConcurrency, tripPricerConcurrency,
+                userShards == 0 ? DEFAULT_USER_SHARDS : userShards);
+    }
+
+    public ExternalCallExecutor newGpsUtilExecutor() {
+        return ExternalCallExecutor.create(mode, "gpsUtil", gpsUtilConcurrency);
+    }
+
+    public ExternalCallExecutor newRewardCentralExecutor() {
+        return ExternalCallExecutor.create(mode, "rewardCentral", rewardCentralConcurrency);
+    }
+
+    public ExternalCallExecutor newTripPricerExecutor() {
+        return ExternalCallExecutor.create(mode, "tripPricer", tripPricerConcurrency);
+    }
+
+    public UserShards newUserShards() {
+        return new UserShards(userShards);
+    }
+}
@@ -0,0 +1,137 @@
+package com.openclassrooms.tourguide.execution;
+
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import io.micrometer.core.instrument.Gauge;
+
+import com.openclassrooms.tourguide.metrics.TourGuideMetrics;
+
+/**
+ * Exécuteur dédié aux appels vers une bibliothèque externe.
+ * <p>
+ * En mode {@link ExecutionMode#PLATFORM}, c'est un pool fixe dont la taille borne la concurrence.
+ * En mode {@link ExecutionMode#VIRTUAL}, chaque tâche obtient son propre thread virtuel et un sémaphore
+ * limite le nombre d'appels simultanés : une tâche en attente de permis ne coûte presque rien, ce qui
+ * supprime le plafond imposé par la taille du pool sans submerger la bibliothèque appelée.
+ * Le travail de calcul qui encadre ces appels passe par {@link #ungated()} : il n'occupe aucun permis.
+ */
+public class ExternalCallExecutor extends AbstractExecutorService {
+    private final ExecutorService delegate;
+    // Null en mode PLATFORM : la taille du pool suffit à borner la concurrence.
+    private final Semaphore permits;
+    private final int maxConcurrency;
+    // Jauges publiées par create(), retirées à l'arrêt.
+    private volatile List<Gauge> gauges = List.of();
+
+    private ExternalCallExecutor(ExecutorService delegate, Semaphore permits, int maxConcurrency) {
+        this.delegate = delegate;
+        this.permits = permits;
+        this.maxConcurrency = maxConcurrency;
+    }
+
+    /**
+     * Crée l'exécuteur et publie ses jauges de saturation sous le nom donné.
+     */
+    public static ExternalCallExecutor create(ExecutionMode mode, String name, int maxConcurrency) {
+        ExternalCallExecutor executor;
+        if (mode == ExecutionMode.VIRTUAL) {
+            executor = new ExternalCallExecutor(
+                    Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name(name + "-virtual-", 0).factory()),
+                    new Semaphore(maxConcurrency), maxConcurrency);
+        } else {
+            executor = new ExternalCallExecutor(Executors.newFixedThreadPool(maxConcurrency), null, maxConcurrency);
+        }
+        executor.gauges = TourGuideMetrics.monitorExecutor(executor, name);
+        return executor;
+    }
+
+    /**
+     * Nombre d'appels en cours d'exécution.
+     */
+    public int getActiveCount() {
+        if (permits == null) {
+            return ((ThreadPoolExecutor) delegate).getActiveCount();
+        }
+        return maxConcurrency - permits.availablePermits();
+    }
+
+    /**
+     * Nombre de tâches en attente d'un thread (mode PLATFORM) ou d'un permis (mode VIRTUAL).
+     */
+    public int getQueuedTaskCount() {
+        if (permits == null) {
+            return ((ThreadPoolExecutor) delegate).getQueue().size();
+        }
+        return permits.getQueueLength();
+    }
+
+    public int getMaxConcurrency() {
+        return maxConcurrency;
+    }
+
+    /**
+     * Exécuteur sans limite de concurrence, sur les mêmes threads, pour les tâches qui n'appellent pas la
+     * bibliothèque externe (ex. calcul CPU préparant ses appels). En mode VIRTUAL, elles ne consomment
+     * aucun permis et n'attendent pas derrière les appels en cours ; en mode PLATFORM, la taille du pool
+     * reste la seule borne, comme auparavant.
+     */
+    public Executor ungated() {
+        return delegate::execute;
+    }
+
+    @Override
+    public void execute(Runnable task) {
+        if (permits == null) {
+            delegate.execute(task);
+            return;
+        }
+        delegate.execute(() -> {
+            try {
+                permits.acquire();
+            } catch (InterruptedException e) {
+                // Arrêt en cours : la tâche est abandonnée, comme une tâche encore en file d'un pool fixe.
+                Thread.currentThread().interrupt();
+                return;
+            }
+            try {
+                task.run();
+            } finally {
+                permits.release();
+            }
+        });
+    }
+
+    @Override
+    public void shutdown() {
+        delegate.shutdown();
+        TourGuideMetrics.remove(gauges);
+    }
+
+    @Override
+    public List<Runnable> shutdownNow() {
+        TourGuideMetrics.remove(gauges);
+        return delegate.shutdownNow();
+    }
+
+    @Override
+    public boolean isShutdown() {
+        return delegate.isShutdown();
+    }
+
+    @Override
+    public boolean isTerminated() {
+        return delegate.isTerminated();
+    }
+
+    @Override
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        return delegate.awaitTermination(timeout, unit);
+    }
+}
@@ -0,0 +1,26 @@
+package com.openclassrooms.tourguide.execution;
+
+import java.time.Duration;
+
+/**
+ * Délais de réponse des endpoints asynchrones : passé ce délai, la réponse se rabat sur les données déjà connues.
+ *
+ * @param tripDeals délai maximal de calcul des offres de voyage.
+ * @param tripDealsHedgeDelay âge à partir duquel un appel à TripPricer encore en cours est doublé d'un second
+ *                            appel, le premier terminé l'emportant ({@code ZERO} : jamais).
+ * @param rewards délai maximal de mise à jour des récompenses.
+ */
+public record RequestDeadlines(Duration tripDeals, Duration tripDealsHedgeDelay, Duration rewards) {
+
+    public static final RequestDeadlines DEFAULT = new RequestDeadlines(Duration.ofSeconds(2), Duration.ofMillis(300),
+            Duration.ofSeconds(2));
+
+    public RequestDeadlines {
+        if (tripDeals.isNegative() || tripDeals.isZero() || rewards.isNegative() || rewards.isZero()) {
+            throw new IllegalArgumentException("Request deadlines must be positive");
+        }
+        if (tripDealsHedgeDelay.isNegative()) {
+            throw new IllegalArgumentException("Hedge delay must not be negative");
+        }
+    }
+}
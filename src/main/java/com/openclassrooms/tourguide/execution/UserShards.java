@@ -0,0 +1,82 @@
+package com.openclassrooms.tourguide.execution;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import io.micrometer.core.instrument.Gauge;
+
+import com.openclassrooms.tourguide.metrics.TourGuideMetrics;
+import com.openclassrooms.tourguide.user.User;
+
+/**
+ * Répartition des utilisateurs en shards selon le hash de leur identifiant, chaque shard ayant son propre thread.
+ * <p>
+ * Toutes les écritures d'un utilisateur (positions, récompenses) passent par le thread de son shard : un seul
+ * écrivain par utilisateur, donc aucune contention sur ses verrous, et des utilisateurs répartis sur autant de
+ * threads que de cœurs. Les lectures restent directes et sans verrou.
+ */
+public class UserShards {
+    private final ThreadPoolExecutor[] shards;
+    private final List<Gauge> gauges = new ArrayList<>();
+
+    public UserShards(int shardCount) {
+        if (shardCount <= 0) {
+            throw new IllegalArgumentException("Shard count must be positive");
+        }
+        shards = new ThreadPoolExecutor[shardCount];
+        for (int i = 0; i < shardCount; i++) {
+            String name = "user-shard-" + i;
+            // Thread créé à la première écriture : un shard jamais sollicité ne coûte rien.
+            shards[i] = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(),
+                    task -> {
+                        Thread thread = new Thread(task, name);
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+            gauges.add(Gauge.builder(TourGuideMetrics.USER_SHARD_QUEUED, shards[i], shard -> shard.getQueue().size())
+                    .description("User writes waiting for their shard thread")
+                    .tag("shard", String.valueOf(i))
+                    .register(TourGuideMetrics.registry()));
+        }
+    }
+
+    public int shardCount() {
+        return shards.length;
+    }
+
+    public int shardOf(UUID userId) {
+        return Math.floorMod(userId.hashCode(), shards.length);
+    }
+
+    /**
+     * Thread propriétaire des écritures de l'utilisateur, à passer aux étapes {@code *Async} des futurs.
+     */
+    public Executor executorFor(User user) {
+        return shards[shardOf(user.getUserId())];
+    }
+
+    public CompletableFuture<Void> run(User user, Runnable write) {
+        return CompletableFuture.runAsync(write, executorFor(user));
+    }
+
+    public <T> CompletableFuture<T> supply(User user, Supplier<T> write) {
+        return CompletableFuture.supplyAsync(write, executorFor(user));
+    }
+
+    /**
+     * Les écritures déjà en file sont appliquées (elles sont brèves) : un appelant qui les attend n'est jamais bloqué.
+     */
+    public void shutdown() {
+        for (ThreadPoolExecutor shard : shards) {
+            shard.shutdown();
+        }
+        TourGuideMetrics.remove(gauges);
+    }
+}
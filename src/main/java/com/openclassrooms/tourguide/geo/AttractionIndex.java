@@ -0,0 +1,386 @@
+package com.openclassrooms.tourguide.geo;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.IntConsumer;
+
+import gpsUtil.location.Attraction;
+import gpsUtil.location.Location;
+
+/**
+ * Index spatial des attractions, construit une seule fois à partir du catalogue.
+ * <p>
+ * Chaque attraction est projetée sur la sphère unité (coordonnées cartésiennes x, y, z) et rangée
+ * dans un k-d tree implicite (stocké dans des tableaux, sans objets nœuds). Sur la sphère, la corde
+ * entre deux points croît avec la distance orthodromique : une recherche par rayon se ramène donc à une
+ * recherche euclidienne en 3D, sans cas particulier pour les pôles ou l'antiméridien.
+ * <p>
+ * Les coordonnées cartésiennes tiennent lieu de trigonométrie précalculée : le produit scalaire de deux vecteurs
+ * unitaires vaut exactement sin(lat1).sin(lat2) + cos(lat1).cos(lat2).cos(lon1 - lon2), le terme de la loi des
+ * cosinus de {@code RewardsService.getDistance}. Un test "à moins de r milles" se réduit donc à une comparaison
+ * de ce produit avec cos(r), sans aucun appel trigonométrique par attraction.
+ * <p>
+ * {@link #forEachCandidate} ne fait qu'élaguer (avec une petite marge) ; {@link #forEachWithin} applique en plus
+ * le test exact. La recherche des K plus proches voisins renvoie directement les distances, calculées une seule
+ * fois par attraction retenue.
+ */
+public class AttractionIndex {
+    // Même conversion que RewardsService.getDistance : 1 degré d'arc = 60 milles nautiques.
+    private static final double STATUTE_MILES_PER_DEGREE = 60 * 1.15077945;
+    private static final double STATUTE_MILES_PER_RADIAN = Math.toDegrees(1) * STATUTE_MILES_PER_DEGREE;
+    // Marge relative sur la corde pour ne jamais écarter une attraction à cause d'un arrondi.
+    private static final double CHORD_SLACK = 1e-9;
+    // Tolérance du test exact, à la mesure de la précision de acos au voisinage de 1 dans la formule d'origine.
+    private static final double COS_SLACK = 1e-12;
+
+    private final Attraction[] attractions;
+    private final double[] xs;
+    private final double[] ys;
+    private final double[] zs;
+
+    public AttractionIndex(List<Attraction> attractions) {
+        int size = attractions.size();
+        this.attractions = attractions.toArray(new Attraction[0]);
+        this.xs = new double[size];
+        this.ys = new double[size];
+        this.zs = new double[size];
+        for (int i = 0; i < size; i++) {
+            Attraction attraction = this.attractions[i];
+            double lat = Math.toRadians(attraction.latitude);
+            double lon = Math.toRadians(attraction.longitude);
+            xs[i] = Math.cos(lat) * Math.cos(lon);
+            ys[i] = Math.cos(lat) * Math.sin(lon);
+            zs[i] = Math.sin(lat);
+        }
+        build(0, size, 0);
+    }
+
+    public int size() {
+        return attractions.length;
+    }
+
+    /**
+     * Transmet au consommateur chaque attraction susceptible de se trouver à moins de {@code radiusMiles}
+     * de la position donnée. Seules les branches de l'arbre qui intersectent le rayon sont parcourues.
+     *
+     * @return le nombre d'attractions examinées, mesure du coût de la recherche indépendante de la machine.
+     */
+    public int forEachCandidate(Location location, double radiusMiles, Consumer<Attraction> consumer) {
+        if (radiusMiles < 0) {
+            // Aucune distance n'est négative ; l'angle, élevé au carré plus bas, retrouverait un rayon positif.
+            return 0;
+        }
+        double angle = Math.toRadians(radiusMiles / STATUTE_MILES_PER_DEGREE);
+        if (angle >= Math.PI) {
+            // Le rayon couvre toute la sphère : inutile de parcourir l'arbre.
+            for (Attraction attraction : attractions) {
+                consumer.accept(attraction);
+            }
+            return attractions.length;
+        }
+        double chord = 2 * Math.sin(angle / 2) * (1 + CHORD_SLACK) + CHORD_SLACK;
+        double lat = Math.toRadians(location.latitude);
+        double lon = Math.toRadians(location.longitude);
+        double x = Math.cos(lat) * Math.cos(lon);
+        double y = Math.cos(lat) * Math.sin(lon);
+        double z = Math.sin(lat);
+        return collectWithin(0, attractions.length, 0, x, y, z, chord * chord,
+                index -> consumer.accept(attractions[index]));
+    }
+
+    /**
+     * Transmet au consommateur chaque attraction située à au plus {@code radiusMiles} de la position donnée,
+     * au sens de {@code RewardsService.getDistance}. L'arbre écarte d'abord les branches hors de portée ; les
+     * attractions restantes sont départagées par comparaison de cosinus.
+     *
+     * @return le nombre d'attractions examinées, comme {@link #forEachCandidate}.
+     */
+    public int forEachWithin(Location location, double radiusMiles, Consumer<Attraction> consumer) {
+        if (radiusMiles < 0) {
+            return 0;
+        }
+        double angle = Math.toRadians(radiusMiles / STATUTE_MILES_PER_DEGREE);
+        if (angle >= Math.PI) {
+            return forEachCandidate(location, radiusMiles, consumer);
+        }
+        double minCos = Math.cos(angle) - COS_SLACK;
+        double lat = Math.toRadians(location.latitude);
+        double lon = Math.toRadians(location.longitude);
+        double x = Math.cos(lat) * Math.cos(lon);
+        double y = Math.cos(lat) * Math.sin(lon);
+        double z = Math.sin(lat);
+        double chord = 2 * Math.sin(angle / 2) * (1 + CHORD_SLACK) + CHORD_SLACK;
+        return collectWithin(0, attractions.length, 0, x, y, z, chord * chord, index -> {
+            if (x * xs[index] + y * ys[index] + z * zs[index] >= minCos) {
+                consumer.accept(attractions[index]);
+            }
+        });
+    }
+
+    /**
+     * Calcule en un seul passage la distance (en milles) entre la position et chaque attraction de l'index.
+     * La boucle ne lit que des tableaux primitifs contigus, ce qui la rend propice à la vectorisation par le JIT.
+     *
+     * @param distances tableau de destination, d'au moins {@link #size()} éléments : {@code distances[i]}
+     *                  correspond à {@link #attraction(int) attraction(i)}.
+     */
+    public void distancesFrom(Location location, double[] distances) {
+        double lat = Math.toRadians(location.latitude);
+        double lon = Math.toRadians(location.longitude);
+        double x = Math.cos(lat) * Math.cos(lon);
+        double y = Math.cos(lat) * Math.sin(lon);
+        double z = Math.sin(lat);
+        for (int i = 0; i < xs.length; i++) {
+            double cos = x * xs[i] + y * ys[i] + z * zs[i];
+            distances[i] = Math.acos(Math.max(-1, Math.min(1, cos))) * STATUTE_MILES_PER_RADIAN;
+        }
+    }
+
+    /**
+     * Attraction rangée à la position {@code i} de l'index (ordre interne, celui de {@link #distancesFrom}).
+     */
+    public Attraction attraction(int i) {
+        return attractions[i];
+    }
+
+    /**
+     * Renvoie les {@code k} attractions les plus proches de la position, triées par distance croissante.
+     * Le parcours conserve les meilleurs candidats dans un tas borné à {@code k} éléments et abandonne
+     * toute branche plus éloignée que le pire candidat retenu.
+     */
+    public List<NearbyAttraction> nearest(Location location, int k) {
+        int limit = Math.min(k, attractions.length);
+        if (limit <= 0) {
+            return List.of();
+        }
+        BoundedMaxHeap heap = new BoundedMaxHeap(limit);
+        searchNearest(location, heap);
+
+        // Le tas est vidé du plus éloigné au plus proche : on remplit la liste à l'envers.
+        NearbyAttraction[] sorted = new NearbyAttraction[heap.size];
+        for (int i = sorted.length - 1; i >= 0; i--) {
+            double chord2 = heap.peekKey();
+            int index = heap.poll();
+            sorted[i] = new NearbyAttraction(attractions[index], chordToMiles(Math.sqrt(chord2)));
+        }
+        return Arrays.asList(sorted);
+    }
+
+    /**
+     * Nombre d'attractions examinées par {@link #nearest} pour la même requête : mesure du coût de la recherche
+     * indépendante de la machine.
+     */
+    public int nearestCost(Location location, int k) {
+        int limit = Math.min(k, attractions.length);
+        return limit <= 0 ? 0 : searchNearest(location, new BoundedMaxHeap(limit));
+    }
+
+    private int searchNearest(Location location, BoundedMaxHeap heap) {
+        double lat = Math.toRadians(location.latitude);
+        double lon = Math.toRadians(location.longitude);
+        return searchNearest(0, attractions.length, 0,
+                Math.cos(lat) * Math.cos(lon), Math.cos(lat) * Math.sin(lon), Math.sin(lat), heap);
+    }
+
+    private int searchNearest(int lo, int hi, int axis, double x, double y, double z, BoundedMaxHeap heap) {
+        if (lo >= hi) {
+            return 0;
+        }
+        int mid = (lo + hi) >>> 1;
+        double dx = xs[mid] - x;
+        double dy = ys[mid] - y;
+        double dz = zs[mid] - z;
+        heap.offer(mid, dx * dx + dy * dy + dz * dz);
+
+        double delta = axis == 0 ? dx : axis == 1 ? dy : dz;
+        int nextAxis = axis == 2 ? 0 : axis + 1;
+        int examined = 1;
+        // On descend d'abord du côté de la requête, puis de l'autre côté seulement s'il peut encore améliorer le tas.
+        if (delta >= 0) {
+            examined += searchNearest(lo, mid, nextAxis, x, y, z, heap);
+            if (!heap.isFull() || delta * delta < heap.peekKey()) {
+                examined += searchNearest(mid + 1, hi, nextAxis, x, y, z, heap);
+            }
+        } else {
+            examined += searchNearest(mid + 1, hi, nextAxis, x, y, z, heap);
+            if (!heap.isFull() || delta * delta < heap.peekKey()) {
+                examined += searchNearest(lo, mid, nextAxis, x, y, z, heap);
+            }
+        }
+        return examined;
+    }
+
+    private static double chordToMiles(double chord) {
+        return 2 * Math.asin(Math.min(1, chord / 2)) * STATUTE_MILES_PER_RADIAN;
+    }
+
+    private int collectWithin(int lo, int hi, int axis, double x, double y, double z, double maxChord2,
+                              IntConsumer consumer) {
+        int examined = 0;
+        while (lo < hi) {
+            examined++;
+            int mid = (lo + hi) >>> 1;
+            double dx = xs[mid] - x;
+            double dy = ys[mid] - y;
+            double dz = zs[mid] - z;
+            if (dx * dx + dy * dy + dz * dz <= maxChord2) {
+                consumer.accept(mid);
+            }
+            // Écart signé entre le plan de coupe du nœud et la requête sur l'axe courant.
+            double delta = axis == 0 ? dx : axis == 1 ? dy : dz;
+            int nextAxis = axis == 2 ? 0 : axis + 1;
+            boolean farSideReachable = delta * delta <= maxChord2;
+            if (delta >= 0) {
+                // La requête est du côté gauche (valeurs <= plan) : le côté droit n'est visité que s'il est à portée.
+                if (farSideReachable) {
+                    examined += collectWithin(mid + 1, hi, nextAxis, x, y, z, maxChord2, consumer);
+                }
+                hi = mid;
+            } else {
+                if (farSideReachable) {
+                    examined += collectWithin(lo, mid, nextAxis, x, y, z, maxChord2, consumer);
+                }
+                lo = mid + 1;
+            }
+            axis = nextAxis;
+        }
+        return examined;
+    }
+
+    /**
+     * Range récursivement la plage [lo, hi) : la médiane sur l'axe courant est placée au milieu,
+     * les valeurs inférieures à gauche et les valeurs supérieures à droite.
+     */
+    private void build(int lo, int hi, int axis) {
+        if (hi - lo <= 1) {
+            return;
+        }
+        int mid = (lo + hi) >>> 1;
+        select(lo, hi - 1, mid, axis);
+        int nextAxis = axis == 2 ? 0 : axis + 1;
+        build(lo, mid, nextAxis);
+        build(mid + 1, hi, nextAxis);
+    }
+
+    // Quickselect (Hoare) : place en position k l'élément de rang k sur l'axe donné.
+    private void select(int left, int right, int k, int axis) {
+        while (left < right) {
+            double pivot = coordinate(axis, (left + right) >>> 1);
+            int i = left;
+            int j = right;
+            while (i <= j) {
+                while (coordinate(axis, i) < pivot) {
+                    i++;
+                }
+                while (coordinate(axis, j) > pivot) {
+                    j--;
+                }
+                if (i <= j) {
+                    swap(i++, j--);
+                }
+            }
+            if (k <= j) {
+                right = j;
+            } else if (k >= i) {
+                left = i;
+            } else {
+                return;
+            }
+        }
+    }
+
+    private double coordinate(int axis, int i) {
+        return axis == 0 ? xs[i] : axis == 1 ? ys[i] : zs[i];
+    }
+
+    private void swap(int i, int j) {
+        Attraction attraction = attractions[i];
+        attractions[i] = attractions[j];
+        attractions[j] = attraction;
+        double tmp = xs[i];
+        xs[i] = xs[j];
+        xs[j] = tmp;
+        tmp = ys[i];
+        ys[i] = ys[j];
+        ys[j] = tmp;
+        tmp = zs[i];
+        zs[i] = zs[j];
+        zs[j] = tmp;
+    }
+
+    /**
+     * Tas max de taille fixe sur des tableaux primitifs (index d'attraction, corde au carré) :
+     * aucune allocation pendant le parcours de l'arbre.
+     */
+    private static final class BoundedMaxHeap {
+        private final int[] indexes;
+        private final double[] keys;
+        private int size;
+
+        BoundedMaxHeap(int capacity) {
+            this.indexes = new int[capacity];
+            this.keys = new double[capacity];
+        }
+
+        boolean isFull() {
+            return size == keys.length;
+        }
+
+        double peekKey() {
+            return keys[0];
+        }
+
+        void offer(int index, double key) {
+            if (!isFull()) {
+                int i = size++;
+                while (i > 0) {
+                    int parent = (i - 1) >>> 1;
+                    if (keys[parent] >= key) {
+                        break;
+                    }
+                    keys[i] = keys[parent];
+                    indexes[i] = indexes[parent];
+                    i = parent;
+                }
+                keys[i] = key;
+                indexes[i] = index;
+            } else if (key < keys[0]) {
+                siftDown(index, key);
+            }
+        }
+
+        int poll() {
+            int top = indexes[0];
+            size--;
+            if (size > 0) {
+                int lastIndex = indexes[size];
+                double lastKey = keys[size];
+                siftDown(lastIndex, lastKey);
+            }
+            return top;
+        }
+
+        // Remplace la racine par (index, key) et la fait descendre à sa place.
+        private void siftDown(int index, double key) {
+            int i = 0;
+            while (true) {
+                int child = 2 * i + 1;
+                if (child >= size) {
+                    break;
+                }
+                if (child + 1 < size && keys[child + 1] > keys[child]) {
+                    child++;
+                }
+                if (keys[child] <= key) {
+                    break;
+                }
+                keys[i] = keys[child];
+                indexes[i] = indexes[child];
+                i = child;
+            }
+            keys[i] = key;
+            indexes[i] = index;
+        }
+    }
+}
@@ -0,0 +1,7 @@
+package com.openclassrooms.tourguide.geo;
+
+import gpsUtil.location.Attraction;
+
+// Résultat d'une recherche des plus proches voisins : la distance est calculée une seule fois par l'index.
+public record NearbyAttraction(Attraction attraction, double distanceInMiles) {
+}
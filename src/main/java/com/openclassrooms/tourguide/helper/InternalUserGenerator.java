@@ -0,0 +1,106 @@
+package com.openclassrooms.tourguide.helper;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import gpsUtil.location.Location;
+import gpsUtil.location.VisitedLocation;
+import com.openclassrooms.tourguide.store.UserRepository;
+import com.openclassrooms.tourguide.store.UserSnapshotFile;
+import com.openclassrooms.tourguide.user.User;
+
+/**
+ * Création des utilisateurs internes de test, en parallèle et de façon reproductible.
+ * <p>
+ * Les utilisateurs sont générés par lots : chaque lot a son propre {@link SplittableRandom}, dérivé de la graine
+ * dans l'ordre des lots, si bien que le résultat ne dépend ni du nombre de threads ni de leur ordonnancement.
+ */
+public final class InternalUserGenerator {
+	private static final Logger logger = LoggerFactory.getLogger(InternalUserGenerator.class);
+	private static final int CHUNK_SIZE = 4096;
+	private static final int LOCATIONS_PER_USER = 3;
+	private static final double MAX_LATITUDE = 85.05112878;
+	private static final long DAY_MILLIS = TimeUnit.DAYS.toMillis(1);
+
+	private InternalUserGenerator() {
+	}
+
+	/**
+	 * Génère {@code count} utilisateurs ({@code internalUser0} à {@code internalUser<count-1>}), chacun avec trois
+	 * positions aléatoires datées des 30 derniers jours.
+	 */
+	public static List<User> generate(int count, long seed) {
+		User[] users = new User[count];
+		int chunks = (count + CHUNK_SIZE - 1) / CHUNK_SIZE;
+		SplittableRandom root = new SplittableRandom(seed);
+		SplittableRandom[] randoms = new SplittableRandom[chunks];
+		for (int chunk = 0; chunk < chunks; chunk++) {
+			randoms[chunk] = root.split();
+		}
+		// Une seule lecture de l'horloge pour tous les horodatages.
+		long now = System.currentTimeMillis();
+		IntStream.range(0, chunks).parallel().forEach(chunk -> {
+			SplittableRandom random = randoms[chunk];
+			int end = Math.min(count, (chunk + 1) * CHUNK_SIZE);
+			for (int i = chunk * CHUNK_SIZE; i < end; i++) {
+				users[i] = generateUser(i, random, now);
+			}
+		});
+		return Arrays.asList(users);
+	}
+
+	/**
+	 * Remplit le stockage avec les utilisateurs internes : relus depuis le fichier pré-généré s'il a été écrit pour
+	 * le même nombre d'utilisateurs et la même graine, sinon générés, puis écrits dans ce fichier pour les démarrages
+	 * suivants. Les utilisateurs sont ajoutés dans l'ordre de leur numéro, qui est celui des pages de {@code /getUsers}.
+	 */
+	public static void populate(UserRepository repository, int count, InternalUserSettings settings) {
+		long start = System.nanoTime();
+		try {
+			if (settings.fixture() != null && Files.exists(settings.fixture())) {
+				UserSnapshotFile.Header header = UserSnapshotFile.readHeader(settings.fixture());
+				if (header.userCount() == count && header.seed() == settings.seed()) {
+					int loaded = UserSnapshotFile.read(settings.fixture(), attractionName -> null,
+							(user, locationSequence) -> repository.add(user));
+					logger.debug("Loaded {} internal test users from {} in {} ms.", loaded, settings.fixture(),
+							TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+					return;
+				}
+				logger.info("Internal users fixture {} holds {} users from seed {}, expected {} from seed {}: regenerating",
+						settings.fixture(), header.userCount(), header.seed(), count, settings.seed());
+			}
+			List<User> users = generate(count, settings.seed());
+			users.forEach(repository::add);
+			if (settings.fixture() != null) {
+				UserSnapshotFile.write(settings.fixture(), users.iterator(), settings.seed());
+			}
+		} catch (IOException e) {
+			throw new IllegalStateException("Cannot use internal users fixture " + settings.fixture(), e);
+		}
+		logger.debug("Created {} internal test users in {} ms.", count,
+				TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+	}
+
+	private static User generateUser(int index, SplittableRandom random, long now) {
+		String userName = "internalUser" + index;
+		// UUID de version 4, tiré du générateur du lot pour rester reproductible.
+		UUID userId = new UUID((random.nextLong() & ~0xF000L) | 0x4000L,
+				(random.nextLong() & 0x3FFFFFFFFFFFFFFFL) | 0x8000000000000000L);
+		User user = new User(userId, userName, "000", userName + "@tourGuide.com");
+		for (int i = 0; i < LOCATIONS_PER_USER; i++) {
+			Location location = new Location(random.nextDouble(-MAX_LATITUDE, MAX_LATITUDE), random.nextDouble(-180, 180));
+			user.addToVisitedLocations(new VisitedLocation(userId, location, new Date(now - random.nextInt(30) * DAY_MILLIS)));
+		}
+		return user;
+	}
+}
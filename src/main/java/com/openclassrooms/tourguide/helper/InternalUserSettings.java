@@ -0,0 +1,14 @@
+package com.openclassrooms.tourguide.helper;
+
+import java.nio.file.Path;
+
+/**
+ * Génération des utilisateurs internes de test : graine (même graine => mêmes utilisateurs)
+ * et fichier de jeu d'utilisateurs pré-générés, relu s'il a été écrit pour la même graine et le même nombre
+ * d'utilisateurs, réécrit sinon ({@code null} : aucun).
+ */
+public record InternalUserSettings(long seed, Path fixture) {
+
+	public static final InternalUserSettings DEFAULT = new InternalUserSettings(42, null);
+
+}
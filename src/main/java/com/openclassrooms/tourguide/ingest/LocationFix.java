@@ -0,0 +1,13 @@
+package com.openclassrooms.tourguide.ingest;
+
+/**
+ * Position envoyée par un client (application mobile) pour l'un de ses utilisateurs.
+ *
+ * @param timeVisited date de la position, en millisecondes epoch.
+ */
+public record LocationFix(String userName, double latitude, double longitude, long timeVisited) {
+
+    public boolean isValid() {
+        return userName != null && latitude >= -90 && latitude <= 90 && longitude >= -180 && longitude <= 180;
+    }
+}
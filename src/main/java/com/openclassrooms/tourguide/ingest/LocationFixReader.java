@@ -0,0 +1,130 @@
+package com.openclassrooms.tourguide.ingest;
+
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+
+/**
+ * Lecture en flux des positions envoyées par lot : chaque position est décodée à la demande, sans charger
+ * le lot entier en mémoire.
+ * <p>
+ * Formats acceptés :
+ * <ul>
+ *   <li>JSON : tableau d'objets {@code {"userName": "...", "latitude": 0.0, "longitude": 0.0, "timeVisited": 0}},
+ *   {@code timeVisited} (millisecondes epoch) étant facultatif (date de réception par défaut) ;</li>
+ *   <li>binaire : suite d'enregistrements {@code [userName (DataOutput.writeUTF)][latitude double]
+ *   [longitude double][timeVisited long]}, gros-boutiste, jusqu'à la fin du flux.</li>
+ * </ul>
+ * Une entrée mal formée lève {@link IllegalArgumentException} ; les positions déjà lues restent valables.
+ */
+public final class LocationFixReader {
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    private LocationFixReader() {
+    }
+
+    public static Iterator<LocationFix> json(InputStream input) throws IOException {
+        JsonParser parser = JSON_FACTORY.createParser(input);
+        JsonToken first;
+        try {
+            first = parser.nextToken();
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Malformed JSON locations: " + e.getOriginalMessage(), e);
+        }
+        if (first != JsonToken.START_ARRAY) {
+            throw new IllegalArgumentException("Expected a JSON array of locations");
+        }
+        long receivedAt = System.currentTimeMillis();
+        return new FixIterator() {
+            @Override
+            LocationFix readNext() throws IOException {
+                JsonToken token = parser.nextToken();
+                if (token == JsonToken.END_ARRAY || token == null) {
+                    return null;
+                }
+                if (token != JsonToken.START_OBJECT) {
+                    throw new IllegalArgumentException("Expected a location object, got " + token);
+                }
+                String userName = null;
+                double latitude = Double.NaN;
+                double longitude = Double.NaN;
+                long timeVisited = receivedAt;
+                while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                    String field = parser.currentName();
+                    parser.nextToken();
+                    switch (field) {
+                        case "userName" -> userName = parser.getValueAsString();
+                        case "latitude" -> latitude = parser.getValueAsDouble(Double.NaN);
+                        case "longitude" -> longitude = parser.getValueAsDouble(Double.NaN);
+                        case "timeVisited" -> timeVisited = parser.getValueAsLong(receivedAt);
+                        // Champ inconnu : ignoré, objets et tableaux imbriqués compris.
+                        default -> parser.skipChildren();
+                    }
+                }
+                return new LocationFix(userName, latitude, longitude, timeVisited);
+            }
+        };
+    }
+
+    public static Iterator<LocationFix> binary(InputStream input) {
+        DataInputStream data = new DataInputStream(input);
+        return new FixIterator() {
+            @Override
+            LocationFix readNext() throws IOException {
+                String userName;
+                try {
+                    userName = data.readUTF();
+                } catch (EOFException e) {
+                    return null;
+                }
+                try {
+                    return new LocationFix(userName, data.readDouble(), data.readDouble(), data.readLong());
+                } catch (EOFException e) {
+                    throw new IllegalArgumentException("Truncated location record for " + userName, e);
+                }
+            }
+        };
+    }
+
+    private abstract static class FixIterator implements Iterator<LocationFix> {
+        private LocationFix next;
+        private boolean finished;
+
+        // null en fin de flux.
+        abstract LocationFix readNext() throws IOException;
+
+        @Override
+        public boolean hasNext() {
+            if (next == null && !finished) {
+                try {
+                    next = readNext();
+                } catch (JsonProcessingException e) {
+                    throw new IllegalArgumentException("Malformed JSON location: " + e.getOriginalMessage(), e);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                finished = next == null;
+            }
+            return next != null;
+        }
+
+        @Override
+        public LocationFix next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            LocationFix fix = next;
+            next = null;
+            return fix;
+        }
+    }
+}
@@ -0,0 +1,128 @@
+package com.openclassrooms.tourguide.ingest;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+import io.micrometer.core.instrument.Counter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+
+import gpsUtil.location.Location;
+import gpsUtil.location.VisitedLocation;
+
+import com.openclassrooms.tourguide.metrics.TourGuideMetrics;
+import com.openclassrooms.tourguide.service.RewardsService;
+import com.openclassrooms.tourguide.service.TourGuideService;
+import com.openclassrooms.tourguide.user.User;
+
+/**
+ * Intégration des positions envoyées par les clients, en complément du suivi par le Tracker.
+ * <p>
+ * Le flux est traité par micro-lots : les positions d'un lot sont regroupées par utilisateur (dans leur ordre
+ * d'arrivée), chaque utilisateur est mis à jour par le thread de son shard (les shards travaillant en parallèle),
+ * puis l'évaluation de ses récompenses est demandée une seule fois par lot, sans attendre son résultat.
+ */
+@Service
+public class LocationIngestionService {
+    private static final int BATCH_SIZE = 4096;
+
+    private final Logger logger = LoggerFactory.getLogger(LocationIngestionService.class);
+    private final TourGuideService tourGuideService;
+    private final RewardsService rewardsService;
+    private final Counter acceptedFixes = fixCounter("accepted");
+    private final Counter rejectedFixes = fixCounter("rejected");
+
+    public LocationIngestionService(TourGuideService tourGuideService, RewardsService rewardsService) {
+        this.tourGuideService = tourGuideService;
+        this.rewardsService = rewardsService;
+    }
+
+    /**
+     * Ajoute les positions à l'historique de leurs utilisateurs, au fil de la lecture du flux.
+     * Si le flux est interrompu par une entrée mal formée, les positions lues avant elle sont tout de même ajoutées.
+     *
+     * @return le bilan : positions ajoutées, positions invalides, positions d'utilisateurs inconnus.
+     */
+    public IngestionReport ingest(Iterator<LocationFix> fixes) {
+        int invalid = 0;
+        int valid = 0;
+        int accepted = 0;
+        List<LocationFix> batch = new ArrayList<>(BATCH_SIZE);
+        try {
+            while (fixes.hasNext()) {
+                LocationFix fix = fixes.next();
+                if (!fix.isValid()) {
+                    invalid++;
+                    continue;
+                }
+                valid++;
+                batch.add(fix);
+                if (batch.size() == BATCH_SIZE) {
+                    accepted += ingestBatch(batch);
+                    batch.clear();
+                }
+            }
+        } finally {
+            if (!batch.isEmpty()) {
+                accepted += ingestBatch(batch);
+            }
+            acceptedFixes.increment(accepted);
+            rejectedFixes.increment(invalid + valid - accepted);
+        }
+        logger.debug("Ingested {} locations ({} invalid, {} for unknown users)", accepted, invalid, valid - accepted);
+        return new IngestionReport(accepted, invalid, valid - accepted);
+    }
+
+    /**
+     * @return le nombre de positions ajoutées (les autres concernent des utilisateurs inconnus).
+     */
+    private int ingestBatch(List<LocationFix> batch) {
+        Map<String, List<LocationFix>> fixesByUser = new LinkedHashMap<>();
+        for (LocationFix fix : batch) {
+            fixesByUser.computeIfAbsent(fix.userName(), userName -> new ArrayList<>()).add(fix);
+        }
+        int added = 0;
+        List<User> users = new ArrayList<>(fixesByUser.size());
+        List<CompletableFuture<Void>> writes = new ArrayList<>(fixesByUser.size());
+        for (Map.Entry<String, List<LocationFix>> entry : fixesByUser.entrySet()) {
+            User user = tourGuideService.getUser(entry.getKey());
+            if (user == null) {
+                continue;
+            }
+            List<VisitedLocation> visitedLocations = new ArrayList<>(entry.getValue().size());
+            for (LocationFix fix : entry.getValue()) {
+                visitedLocations.add(new VisitedLocation(user.getUserId(),
+                        new Location(fix.latitude(), fix.longitude()), new Date(fix.timeVisited())));
+            }
+            added += visitedLocations.size();
+            users.add(user);
+            // Une seule tâche par utilisateur : ses positions sont ajoutées dans l'ordre du flux.
+            writes.add(tourGuideService.addVisitedLocations(user, visitedLocations));
+        }
+        // Le lot est appliqué avant la lecture du suivant : la mémoire reste bornée à un lot.
+        CompletableFuture.allOf(writes.toArray(CompletableFuture[]::new)).join();
+        // Une seule évaluation par utilisateur et par lot, quel que soit son nombre de positions, demandée
+        // une fois les écritures appliquées.
+        users.forEach(rewardsService::requestEvaluation);
+        return added;
+    }
+
+    private static Counter fixCounter(String outcome) {
+        return Counter.builder(TourGuideMetrics.INGESTED_LOCATIONS)
+                .description("Locations pushed by clients, added or rejected (invalid or unknown user)")
+                .tag("outcome", outcome)
+                .register(TourGuideMetrics.registry());
+    }
+
+    /**
+     * Bilan d'un envoi de positions.
+     */
+    public record IngestionReport(int accepted, int invalid, int unknownUsers) {
+    }
+}
@@ -0,0 +1,45 @@
+package com.openclassrooms.tourguide.metrics;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * Chronomètre des appels à une source externe, avec histogramme de latence et issue (succès ou erreur).
+ * Les compteurs sont résolus une fois à la construction : une mesure ne coûte qu'une lecture d'horloge.
+ */
+public class ExternalCallTimer {
+    private final String source;
+    private final Timer success;
+    private final Timer error;
+
+    public ExternalCallTimer(String source, String operation) {
+        this.source = source;
+        this.success = timer(source, operation, "success");
+        this.error = timer(source, operation, "error");
+    }
+
+    public <T> T record(Supplier<T> call) {
+        long start = System.nanoTime();
+        try {
+            T result = call.get();
+            success.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            return result;
+        } catch (RuntimeException e) {
+            error.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            TourGuideMetrics.recordError(source, e);
+            throw e;
+        }
+    }
+
+    private static Timer timer(String source, String operation, String outcome) {
+        return Timer.builder(TourGuideMetrics.EXTERNAL_CALLS)
+                .description("Latency of calls to external sources")
+                .tag("source", source)
+                .tag("operation", operation)
+                .tag("outcome", outcome)
+                .publishPercentileHistogram()
+                .register(TourGuideMetrics.registry());
+    }
+}
@@ -0,0 +1,47 @@
+package com.openclassrooms.tourguide.metrics;
+
+import java.util.List;
+import java.util.UUID;
+
+import gpsUtil.location.Attraction;
+import gpsUtil.location.VisitedLocation;
+
+import com.openclassrooms.tourguide.client.LocationSource;
+import com.openclassrooms.tourguide.client.PricingSource;
+import com.openclassrooms.tourguide.client.RewardSource;
+
+/**
+ * Décorateurs chronométrant chaque appel aux sources externes ({@link ExternalCallTimer}).
+ */
+public final class MeteredSources {
+
+    private MeteredSources() {
+    }
+
+    public static LocationSource locationSource(LocationSource source) {
+        ExternalCallTimer userLocation = new ExternalCallTimer("gpsUtil", "getUserLocation");
+        ExternalCallTimer attractions = new ExternalCallTimer("gpsUtil", "getAttractions");
+        return new LocationSource() {
+            @Override
+            public VisitedLocation getUserLocation(UUID userId) {
+                return userLocation.record(() -> source.getUserLocation(userId));
+            }
+
+            @Override
+            public List<Attraction> getAttractions() {
+                return attractions.record(source::getAttractions);
+            }
+        };
+    }
+
+    public static RewardSource rewardSource(RewardSource source) {
+        ExternalCallTimer rewardPoints = new ExternalCallTimer("rewardCentral", "getAttractionRewardPoints");
+        return (attractionId, userId) -> rewardPoints.record(() -> source.getAttractionRewardPoints(attractionId, userId));
+    }
+
+    public static PricingSource pricingSource(PricingSource source) {
+        ExternalCallTimer price = new ExternalCallTimer("tripPricer", "getPrice");
+        return (apiKey, attractionId, adults, children, nightsStay, rewardsPoints) -> price.record(
+                () -> source.getPrice(apiKey, attractionId, adults, children, nightsStay, rewardsPoints));
+    }
+}
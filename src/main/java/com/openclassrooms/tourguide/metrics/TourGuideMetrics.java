@@ -0,0 +1,98 @@
+package com.openclassrooms.tourguide.metrics;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletionException;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+
+import com.openclassrooms.tourguide.execution.ExternalCallExecutor;
+
+/**
+ * Noms et enregistrement des métriques de TourGuide.
+ * <p>
+ * Les métriques sont publiées dans {@link Metrics#globalRegistry} : Spring Boot y ajoute ses registres
+ * (dont Prometheus, exposé sur {@code /actuator/prometheus}), et hors de Spring (tests, benchmarks) le registre
+ * global vide rend les mesures quasi gratuites.
+ */
+public final class TourGuideMetrics {
+    public static final String EXTERNAL_CALLS = "tourguide.external.calls";
+    public static final String ERRORS = "tourguide.errors";
+    public static final String HEDGED_CALLS = "tourguide.external.hedged";
+    public static final String REQUEST_FALLBACKS = "tourguide.request.fallbacks";
+    public static final String REWARDS_GRANTED = "tourguide.rewards.granted";
+    public static final String REWARD_QUEUE_DEPTH = "tourguide.rewards.queue.depth";
+    public static final String REWARD_QUEUE_COALESCED = "tourguide.rewards.queue.coalesced";
+    public static final String REWARD_LATENCY = "tourguide.rewards.latency";
+    public static final String INGESTED_LOCATIONS = "tourguide.ingest.locations";
+    public static final String TRACKER_USER_DURATION = "tourguide.tracker.user.duration";
+    public static final String TRACKER_CYCLE_DURATION = "tourguide.tracker.cycle.duration";
+    public static final String TRACKER_THROUGHPUT = "tourguide.tracker.throughput";
+    public static final String TRACKER_SCHEDULE_LAG = "tourguide.tracker.schedule.lag";
+    public static final String TRACKER_OVERDUE_USERS = "tourguide.tracker.overdue.users";
+    public static final String TRACKER_SCHEDULED_USERS = "tourguide.tracker.scheduled.users";
+    public static final String TRACKER_CONCURRENCY = "tourguide.tracker.concurrency";
+    public static final String EXECUTOR_ACTIVE = "tourguide.executor.active";
+    public static final String EXECUTOR_QUEUED = "tourguide.executor.queued";
+    public static final String EXECUTOR_LIMIT = "tourguide.executor.limit";
+    public static final String CLUSTER_MEMBERS = "tourguide.cluster.members";
+    public static final String TRACKER_FOREIGN_SKIPPED = "tourguide.tracker.foreign.skipped";
+    public static final String USER_SHARD_QUEUED = "tourguide.users.shard.queued";
+    public static final String JOURNAL_COMMIT = "tourguide.journal.commit";
+
+    private TourGuideMetrics() {
+    }
+
+    public static MeterRegistry registry() {
+        return Metrics.globalRegistry;
+    }
+
+    /**
+     * Compte une exception, par composant et par type.
+     */
+    public static void recordError(String component, Throwable error) {
+        // Les échecs asynchrones arrivent enveloppés : on compte la cause réelle.
+        while (error instanceof CompletionException && error.getCause() != null) {
+            error = error.getCause();
+        }
+        Counter.builder(ERRORS)
+                .description("Exceptions raised while tracking users, computing rewards or calling external sources")
+                .tag("component", component)
+                .tag("exception", error.getClass().getSimpleName())
+                .register(registry())
+                .increment();
+    }
+
+    /**
+     * Retire du registre les jauges d'un composant arrêté. Le registre ne garde qu'une jauge par nom et tags, celle
+     * enregistrée en premier : sans ce retrait, une nouvelle instance du composant publierait les valeurs de l'ancienne.
+     */
+    public static void remove(Collection<? extends Meter> meters) {
+        meters.forEach(registry()::remove);
+    }
+
+    /**
+     * Jauges de saturation d'un exécuteur : appels en cours, tâches en attente et limite de concurrence.
+     *
+     * @return les jauges, à retirer à l'arrêt de l'exécuteur ({@link #remove}).
+     */
+    public static List<Gauge> monitorExecutor(ExternalCallExecutor executor, String name) {
+        MeterRegistry registry = registry();
+        return List.of(Gauge.builder(EXECUTOR_ACTIVE, executor, ExternalCallExecutor::getActiveCount)
+                        .description("External calls currently running")
+                        .tag("executor", name)
+                        .register(registry),
+                Gauge.builder(EXECUTOR_QUEUED, executor, ExternalCallExecutor::getQueuedTaskCount)
+                        .description("Tasks waiting for a thread or a permit")
+                        .tag("executor", name)
+                        .register(registry),
+                Gauge.builder(EXECUTOR_LIMIT, executor, ExternalCallExecutor::getMaxConcurrency)
+                        .description("Maximum number of concurrent external calls")
+                        .tag("executor", name)
+                        .register(registry));
+    }
+}
@@ -0,0 +1,237 @@
+package com.openclassrooms.tourguide.service;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Timer;
+
+import com.openclassrooms.tourguide.metrics.TourGuideMetrics;
+import com.openclassrooms.tourguide.user.User;
+
+/**
+ * File bornée des évaluations de récompenses, consommée par un pool de workers.
+ * <p>
+ * Une demande pour un utilisateur déjà en attente lui est rattachée (une seule évaluation pour toutes), et une
+ * demande reste en file au moins {@link RewardQueueSettings#coalesceWindow()} pour regrouper les rafales de
+ * positions. Quand la file est pleine, la demande attend une place sans bloquer l'appelant : son futur ne se
+ * termine qu'après son évaluation, et la charge ne s'accumule pas sans limite sur l'exécuteur de RewardCentral.
+ * Les demandes en attente d'une place restent bornées par le nombre d'utilisateurs, une seule étant retenue
+ * par utilisateur.
+ */
+class RewardEvaluationQueue {
+    private final RewardsService rewardsService;
+    private final long coalesceWindowNanos;
+    private final DelayQueue<Request> queue = new DelayQueue<>();
+    // Demande en attente par utilisateur (en file ou en attente d'une place) : retirée par le worker qui la prend en charge.
+    private final Map<UUID, Request> waiting = new ConcurrentHashMap<>();
+    // Demande en cours d'évaluation par utilisateur, pour les lecteurs qui veulent s'y joindre sans en créer.
+    private final Map<UUID, Request> evaluating = new ConcurrentHashMap<>();
+    // Demandes arrivées file pleine, admises dans l'ordre à mesure que les workers libèrent des places.
+    private final Queue<Request> admissions = new ArrayDeque<>();
+    private final int capacity;
+    // Places occupées dans la file ; modifié sous le verrou de l'instance, comme admissions et stopped.
+    private int queued;
+    private final int workerCount;
+    private final List<Thread> workers = new ArrayList<>();
+    private volatile boolean stopped;
+    private final Gauge depth;
+    private final Counter coalesced = Counter.builder(TourGuideMetrics.REWARD_QUEUE_COALESCED)
+            .description("Reward evaluation requests merged into one already waiting for the same user")
+            .register(TourGuideMetrics.registry());
+    // Du premier signalement d'une nouvelle position à la fin de l'évaluation des récompenses.
+    private final Timer latency = Timer.builder(TourGuideMetrics.REWARD_LATENCY)
+            .description("Time from a location change to the end of the reward evaluation it triggered")
+            .publishPercentileHistogram()
+            .register(TourGuideMetrics.registry());
+
+    RewardEvaluationQueue(RewardsService rewardsService, RewardQueueSettings settings) {
+        this.rewardsService = rewardsService;
+        this.coalesceWindowNanos = settings.coalesceWindow().toNanos();
+        this.capacity = settings.capacity();
+        this.depth = Gauge.builder(TourGuideMetrics.REWARD_QUEUE_DEPTH, waiting, Map::size)
+                .description("Users waiting for a reward evaluation")
+                .register(TourGuideMetrics.registry());
+        this.workerCount = settings.workers();
+    }
+
+    /**
+     * Demande l'évaluation des récompenses de l'utilisateur. L'appel ne bloque jamais : si la file est pleine,
+     * la demande attend une place et son futur se termine plus tard.
+     *
+     * @return un futur terminé à la fin de l'évaluation qui prend en compte cette demande,
+     *         ou annulé si la file est arrêtée avant.
+     */
+    CompletableFuture<Void> submit(User user) {
+        Request current = waiting.get(user.getUserId());
+        if (current != null) {
+            coalesced.increment();
+            return current.done;
+        }
+        startWorkers();
+        // Même verrou que stop() : aucune demande ne peut être ajoutée après la vidange de la file.
+        synchronized (this) {
+            if (stopped) {
+                return CompletableFuture.failedFuture(new CancellationException("Reward queue stopped"));
+            }
+            Request previous = waiting.get(user.getUserId());
+            if (previous != null) {
+                // Demande concurrente enregistrée entre-temps : on s'y rattache.
+                coalesced.increment();
+                return previous.done;
+            }
+            Request request = new Request(user, System.nanoTime());
+            waiting.put(user.getUserId(), request);
+            if (queued < capacity) {
+                queued++;
+                queue.add(request);
+            } else {
+                admissions.add(request);
+            }
+            return request.done;
+        }
+    }
+
+    /**
+     * Évaluation déjà demandée ou en cours pour l'utilisateur, sans en créer de nouvelle.
+     *
+     * @return son futur, ou {@code null} si aucune n'est en attente ni en cours.
+     */
+    CompletableFuture<Void> pending(User user) {
+        Request request = waiting.get(user.getUserId());
+        if (request == null) {
+            request = evaluating.get(user.getUserId());
+        }
+        return request != null ? request.done : null;
+    }
+
+    /**
+     * Annule toutes les demandes en attente (en file ou en attente d'une place) et interrompt les workers,
+     * dont l'évaluation en cours est annulée elle aussi.
+     */
+    synchronized void stop() {
+        stopped = true;
+        workers.forEach(Thread::interrupt);
+        // Parcours complet : poll() ne rendrait pas les demandes dont le délai de regroupement court encore.
+        queue.forEach(this::cancel);
+        queue.clear();
+        admissions.forEach(this::cancel);
+        admissions.clear();
+        TourGuideMetrics.remove(List.of(depth));
+    }
+
+    private void cancel(Request request) {
+        waiting.remove(request.user.getUserId(), request);
+        request.done.cancel(false);
+    }
+
+    /**
+     * Les workers ne sont lancés qu'à la première demande : un service qui n'évalue les récompenses
+     * que directement (tests, benchmarks) n'en crée aucun.
+     */
+    private synchronized void startWorkers() {
+        if (!workers.isEmpty() || stopped) {
+            return;
+        }
+        for (int i = 0; i < workerCount; i++) {
+            workers.add(Thread.ofPlatform().name("reward-worker-" + i).daemon().start(this::work));
+        }
+    }
+
+    private void work() {
+        while (true) {
+            Request request;
+            try {
+                request = queue.take();
+            } catch (InterruptedException e) {
+                return;
+            }
+            if (!release(request)) {
+                request.done.cancel(false);
+                return;
+            }
+            Throwable error = null;
+            try {
+                // Attente interruptible : stop() libère un worker dont la passe ne se terminera jamais.
+                rewardsService.calculateRewards(request.user).get();
+            } catch (InterruptedException e) {
+                request.done.cancel(false);
+                return;
+            } catch (ExecutionException e) {
+                // L'erreur est déjà comptée par RewardsService.
+                error = e.getCause();
+            } catch (CancellationException e) {
+                error = e;
+            } catch (RuntimeException e) {
+                // Échec avant même le lancement de la passe (exécuteur arrêté par stop(), par exemple) : le worker
+                // survit et la demande se termine, sans quoi ses appelants n'en verraient jamais la fin.
+                TourGuideMetrics.recordError("rewards", e);
+                error = e;
+            } finally {
+                evaluating.remove(request.user.getUserId(), request);
+            }
+            latency.record(System.nanoTime() - request.submittedNanos, TimeUnit.NANOSECONDS);
+            if (error == null) {
+                request.done.complete(null);
+            } else {
+                request.done.completeExceptionally(error);
+            }
+        }
+    }
+
+    /**
+     * Prise en charge d'une demande : elle cesse d'être en attente, et sa place revient à la première
+     * demande arrivée file pleine.
+     *
+     * @return false si la file est arrêtée.
+     */
+    private synchronized boolean release(Request request) {
+        if (stopped) {
+            return false;
+        }
+        // Les demandes arrivant à partir d'ici déclenchent une nouvelle évaluation ; la demande reste visible
+        // (en cours) pour pending() sans interruption.
+        evaluating.put(request.user.getUserId(), request);
+        waiting.remove(request.user.getUserId(), request);
+        Request admitted = admissions.poll();
+        if (admitted != null) {
+            queue.add(admitted);
+        } else {
+            queued--;
+        }
+        return true;
+    }
+
+    private final class Request implements Delayed {
+        private final User user;
+        private final long submittedNanos;
+        private final CompletableFuture<Void> done = new CompletableFuture<>();
+
+        private Request(User user, long submittedNanos) {
+            this.user = user;
+            this.submittedNanos = submittedNanos;
+        }
+
+        @Override
+        public long getDelay(TimeUnit unit) {
+            return unit.convert(submittedNanos + coalesceWindowNanos - System.nanoTime(), TimeUnit.NANOSECONDS);
+        }
+
+        @Override
+        public int compareTo(Delayed other) {
+            return Long.compare(submittedNanos, ((Request) other).submittedNanos);
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package com.openclassrooms.tourguide.service;
+
+import java.time.Duration;
+
+/**
+ * File d'évaluation des récompenses.
+ *
+ * @param capacity nombre maximal d'utilisateurs en attente ; au-delà, les demandes attendent une place.
+ * @param workers nombre d'évaluations menées simultanément.
+ * @param coalesceWindow délai pendant lequel une demande reste en file, les demandes suivantes pour le même
+ *                       utilisateur lui étant rattachées ({@code ZERO} : évaluation dès qu'un worker est libre).
+ */
+public record RewardQueueSettings(int capacity, int workers, Duration coalesceWindow) {
+
+    public static final RewardQueueSettings DEFAULT = new RewardQueueSettings(10_000, 100, Duration.ZERO);
+
+    public RewardQueueSettings {
+        if (capacity <= 0 || workers <= 0) {
+            throw new IllegalArgumentException("Reward queue capacity and workers must be positive");
+        }
+        if (coalesceWindow.isNegative()) {
+            throw new IllegalArgumentException("Coalesce window must not be negative");
+        }
+    }
+}
@@ -1,12 +1,20 @@
 package com.openclassrooms.tourguide.service;
 
+import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.Set;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CancellationException;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.stream.Collectors;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
 
+import io.micrometer.core.instrument.Counter;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
 import gpsUtil.GpsUtil;
@@ -14,6 +22,14 @@ import gpsUtil.location.Attraction;
 import gpsUtil.location.Location;
 import gpsUtil.location.VisitedLocation;
 import rewardCentral.RewardCentral;
+import com.openclassrooms.tourguide.client.LocationSource;
+import com.openclassrooms.tourguide.client.RewardPointsClient;
+import com.openclassrooms.tourguide.client.RewardSource;
+import com.openclassrooms.tourguide.execution.ExecutionSettings;
+import com.openclassrooms.tourguide.execution.ExternalCallExecutor;
+import com.openclassrooms.tourguide.execution.UserShards;
+import com.openclassrooms.tourguide.geo.AttractionIndex;
+import com.openclassrooms.tourguide.metrics.TourGuideMetrics;
 import com.openclassrooms.tourguide.user.User;
 import com.openclassrooms.tourguide.user.UserReward;
 
@@ -23,22 +39,59 @@ public class RewardsService {
 
     // proximité en miles
     private final int defaultProximityBuffer = 10;
-    private int proximityBuffer = defaultProximityBuffer;
-    private final RewardCentral rewardsCentral;
+    // Buffer et génération publiés ensemble : une passe lit toujours un buffer avec la génération qui lui correspond.
+    private final AtomicReference<ProximityRules> proximityRules =
+            new AtomicReference<>(new ProximityRules(defaultProximityBuffer, 0));
+    private final int attractionProximityRange = 200;
+    private final RewardPointsClient rewardPointsClient;
     private final List<Attraction> attractions;
+    private final AttractionIndex attractionIndex;
 
-    // Utilisation d'un pool de threads fixe important pour gérer le calcul asynchrone des récompenses
-    // afin de ne pas bloquer le thread principal lors du traitement massif d'utilisateurs.
-    private final ExecutorService executorService = Executors.newFixedThreadPool(100);
+    // Exécuteur dédié aux appels à RewardCentral, afin de ne pas bloquer le thread principal lors du traitement
+    // massif d'utilisateurs (pool fixe ou threads virtuels selon la configuration).
+    private final ExecutorService executorService;
+    // Mêmes threads, sans permis : la recherche des attractions proches ne retient aucune place réservée à RewardCentral.
+    private final Executor passExecutor;
+    // Threads propriétaires des écritures sur les utilisateurs, partagés avec TourGuideService.
+    private final UserShards userShards;
+    private final Counter rewardsGranted = Counter.builder(TourGuideMetrics.REWARDS_GRANTED)
+            .description("Rewards granted to users")
+            .register(TourGuideMetrics.registry());
+    // Demandes d'évaluation déclenchées par les nouvelles positions (Tracker, positions envoyées, /triggerVisit).
+    private final RewardEvaluationQueue evaluationQueue;
+    // Dernière passe de récompenses lancée par utilisateur, pour enchaîner les passes concurrentes.
+    private final Map<UUID, CompletableFuture<Void>> inFlightPasses = new ConcurrentHashMap<>();
     
     public RewardsService(GpsUtil gpsUtil, RewardCentral rewardCentral) {
-        this.rewardsCentral = rewardCentral;
-        // Chargement des attractions en mémoire au démarrage pour éviter de les récupérer via GpsUtil à chaque calcul (optimisation de performance).
-        this.attractions = gpsUtil.getAttractions();
+        this(gpsUtil, rewardCentral, ExecutionSettings.DEFAULT);
+    }
+
+    public RewardsService(GpsUtil gpsUtil, RewardCentral rewardCentral, ExecutionSettings executionSettings) {
+        this(LocationSource.from(gpsUtil), RewardSource.from(rewardCentral), executionSettings);
+    }
+
+    public RewardsService(LocationSource locationSource, RewardSource rewardSource, ExecutionSettings executionSettings) {
+        this(locationSource, rewardSource, executionSettings, RewardQueueSettings.DEFAULT);
+    }
+
+    @Autowired
+    public RewardsService(LocationSource locationSource, RewardSource rewardSource, ExecutionSettings executionSettings,
+                          RewardQueueSettings rewardQueueSettings) {
+        this.evaluationQueue = new RewardEvaluationQueue(this, rewardQueueSettings);
+        ExternalCallExecutor rewardCentralExecutor = executionSettings.newRewardCentralExecutor();
+        this.executorService = rewardCentralExecutor;
+        this.passExecutor = rewardCentralExecutor.ungated();
+        this.userShards = executionSettings.newUserShards();
+        // Les appels à la source de points passent par un client mis en cache, chargé sur le même pool de threads.
+        this.rewardPointsClient = new RewardPointsClient(rewardSource, executorService);
+        // Chargement des attractions en mémoire au démarrage pour éviter de les récupérer à chaque calcul (optimisation de performance).
+        this.attractions = locationSource.getAttractions();
+        // Index spatial construit une fois : seules les attractions situées dans le rayon sont testées ensuite.
+        this.attractionIndex = new AttractionIndex(attractions);
     }
     
     public void setProximityBuffer(int proximityBuffer) {
-        this.proximityBuffer = proximityBuffer;
+        proximityRules.updateAndGet(rules -> rules.withBuffer(proximityBuffer));
     }
     
     /**
@@ -46,47 +99,138 @@ public class RewardsService {
      * Méthode prévue pour une future configuration dynamique ou usage public/test.
      */
     public void setDefaultProximityBuffer() {
-        proximityBuffer = defaultProximityBuffer;
+        setProximityBuffer(defaultProximityBuffer);
+    }
+
+    /**
+     * Demande l'évaluation des récompenses de l'utilisateur après l'ajout de positions, à travers la file bornée :
+     * les demandes rapprochées pour un même utilisateur sont regroupées. L'appelant n'est jamais bloqué :
+     * file pleine, c'est le futur retourné qui attend une place.
+     *
+     * @return un futur terminé une fois les récompenses évaluées, annulé si le service est arrêté avant.
+     */
+    public CompletableFuture<Void> requestEvaluation(User user) {
+        return evaluationQueue.submit(user);
+    }
+
+    /**
+     * Évaluation déjà demandée ou en cours pour l'utilisateur, sans en lancer de nouvelle : permet à une lecture
+     * d'attendre des récompenses sur le point d'être ajoutées sans charger RewardCentral.
+     *
+     * @return son futur, ou un futur déjà terminé si aucune évaluation n'est en cours.
+     */
+    public CompletableFuture<Void> pendingEvaluation(User user) {
+        CompletableFuture<Void> queued = evaluationQueue.pending(user);
+        if (queued != null) {
+            return queued;
+        }
+        CompletableFuture<Void> pass = inFlightPasses.get(user.getUserId());
+        return pass != null ? pass : CompletableFuture.completedFuture(null);
     }
 
+    /**
+     * Évalue les récompenses de l'utilisateur de façon incrémentale : seules les positions ajoutées
+     * depuis la passe précédente sont comparées aux attractions.
+     * Les passes d'un même utilisateur sont enchaînées : le futur retourné ne se termine qu'après
+     * toute passe déjà en cours pour cet utilisateur (ex. Tracker et /triggerVisit simultanés).
+     */
     public CompletableFuture<Void> calculateRewards(User user) {
-        return CompletableFuture.runAsync(() -> {
-            List<VisitedLocation> userLocations = user.getVisitedLocations();
-            List<UserReward> userRewards = user.getUserRewards();
-
-            Set<String> rewardedAttractions = userRewards.stream()
-                    .map(r -> r.attraction.attractionName)
-                    .collect(Collectors.toSet());
-
-            for(VisitedLocation visitedLocation : userLocations) {
-                for(Attraction attraction : attractions) {
-                    if(!rewardedAttractions.contains(attraction.attractionName)) {
-                        if(nearAttraction(visitedLocation, attraction)) {
-                            UserReward reward = new UserReward(visitedLocation, attraction, getRewardPoints(attraction, user));
-                            user.addUserReward(reward);
-                            rewardedAttractions.add(attraction.attractionName);
+        CompletableFuture<Void> pass = inFlightPasses.compute(user.getUserId(), (userId, previous) -> previous == null
+                ? CompletableFuture.supplyAsync(() -> rewardNewLocations(user), passExecutor)
+                        .thenCompose(Function.identity())
+                : previous.handle((ignored, error) -> null)
+                        .thenComposeAsync(ignored -> rewardNewLocations(user), passExecutor));
+        pass.whenComplete((ignored, error) -> inFlightPasses.remove(user.getUserId(), pass));
+        return pass;
+    }
+
+    /**
+     * Recherche les attractions proches des nouvelles positions, puis résout leurs points en un seul lot.
+     * Aucun thread du pool n'est bloqué pendant les appels à RewardCentral.
+     */
+    private CompletableFuture<Void> rewardNewLocations(User user) {
+        // Utilisateur déjà récompensé pour chaque attraction, ou dont le stockage est plein : aucune position
+        // ne peut rien rapporter de plus.
+        if (user.getRewardCount() >= Math.min(attractions.size(), user.getRewardCapacity())) {
+            return CompletableFuture.completedFuture(null);
+        }
+        ProximityRules rules = proximityRules.get();
+        List<VisitedLocation> userLocations = user.pollLocationsToReward(rules.generation());
+        if (userLocations.isEmpty()) {
+            return CompletableFuture.completedFuture(null);
+        }
+
+        // Première position trouvée pour chaque attraction non encore récompensée.
+        Map<Attraction, VisitedLocation> newRewards = new LinkedHashMap<>();
+        for(VisitedLocation visitedLocation : userLocations) {
+            attractionIndex.forEachWithin(visitedLocation.location, rules.buffer(), attraction -> {
+                if(!user.hasRewardFor(attraction.attractionName)) {
+                    newRewards.putIfAbsent(attraction, visitedLocation);
+                }
+            });
+        }
+        if (newRewards.isEmpty()) {
+            return CompletableFuture.completedFuture(null);
+        }
+
+        // Les récompenses sont ajoutées par le thread du shard de l'utilisateur, seul à écrire sur lui.
+        return getRewardPoints(newRewards.keySet(), user)
+                .thenAcceptAsync(points -> newRewards.forEach((attraction, visitedLocation) -> {
+                    if (user.addUserReward(new UserReward(visitedLocation, attraction, points.get(attraction.attractionId)))) {
+                        rewardsGranted.increment();
+                    }
+                }), userShards.executorFor(user))
+                .whenComplete((ignored, error) -> {
+                    if (error != null) {
+                        TourGuideMetrics.recordError("rewards", error);
+                        // Le watermark a déjà avancé : on le remet à zéro pour ne pas perdre ces positions à la passe suivante,
+                        // sauf si le stockage est plein (la passe suivante les refuserait de nouveau).
+                        if (user.getRewardCount() < user.getRewardCapacity()) {
+                            user.resetRewardsWatermark();
                         }
                     }
-                }
-            }
-        }, executorService);
+                });
     }
     
+    /**
+     * Rayon (en milles) dans lequel une attraction peut encore être visitée et récompensée.
+     */
+    public int getAttractionProximityRange() {
+        return attractionProximityRange;
+    }
+
     public boolean isWithinAttractionProximity(Attraction attraction, Location location) {
-        int attractionProximityRange = 200;
-        return !(getDistance(attraction, location) > attractionProximityRange);
+        return isWithinAttractionProximity(getDistance(attraction, location));
+    }
+
+    /**
+     * Variante pour une distance déjà connue (ex. renvoyée par l'index), sans nouveau calcul trigonométrique.
+     */
+    public boolean isWithinAttractionProximity(double distanceInMiles) {
+        return !(distanceInMiles > attractionProximityRange);
     }
 
     public void stop() {
+        evaluationQueue.stop();
         executorService.shutdownNow();
-    }
-    
-    private boolean nearAttraction(VisitedLocation visitedLocation, Attraction attraction) {
-        return !(getDistance(attraction, visitedLocation.location) > proximityBuffer);
+        // Les tâches retirées par shutdownNow() ne termineraient jamais leur passe : ceux qui l'attendent sont libérés.
+        inFlightPasses.values().forEach(pass -> pass.completeExceptionally(
+                new CancellationException("Rewards service stopped")));
+        userShards.shutdown();
     }
     
     public int getRewardPoints(Attraction attraction, User user) {
-        return rewardsCentral.getAttractionRewardPoints(attraction.attractionId, user.getUserId());
+        return rewardPointsClient.getRewardPoints(attraction.attractionId, user.getUserId()).join();
+    }
+
+    /**
+     * Résout les points de plusieurs attractions pour un utilisateur en un seul aller-retour concurrent.
+     *
+     * @return les points indexés par identifiant d'attraction.
+     */
+    public CompletableFuture<Map<UUID, Integer>> getRewardPoints(Collection<Attraction> attractions, User user) {
+        return rewardPointsClient.getRewardPoints(
+                attractions.stream().map(attraction -> attraction.attractionId).toList(), user.getUserId());
     }
     
     public double getDistance(Location loc1, Location loc2) {
@@ -109,4 +253,23 @@ public class RewardsService {
     public List<Attraction> getAttractions() {
         return attractions;
     }
-}
\ No newline at end of file
+
+    public UserShards getUserShards() {
+        return userShards;
+    }
+
+    public AttractionIndex getAttractionIndex() {
+        return attractionIndex;
+    }
+
+    /**
+     * Règles de proximité en vigueur. La génération est incrémentée à chaque changement du buffer : elle invalide
+     * les watermarks des utilisateurs (réévaluation complète).
+     */
+    private record ProximityRules(int buffer, int generation) {
+
+        ProximityRules withBuffer(int newBuffer) {
+            return new ProximityRules(newBuffer, generation + 1);
+        }
+    }
+}
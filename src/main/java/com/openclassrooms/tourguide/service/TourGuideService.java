@@ -1,33 +1,45 @@
 package com.openclassrooms.tourguide.service;
 
+import com.openclassrooms.tourguide.client.LocationSource;
+import com.openclassrooms.tourguide.client.PricingSource;
+import com.openclassrooms.tourguide.client.TripDealsClient;
+import com.openclassrooms.tourguide.cluster.UserPartition;
+import com.openclassrooms.tourguide.execution.ExecutionSettings;
+import com.openclassrooms.tourguide.execution.RequestDeadlines;
 import com.openclassrooms.tourguide.helper.InternalTestHelper;
+import com.openclassrooms.tourguide.helper.InternalUserGenerator;
+import com.openclassrooms.tourguide.helper.InternalUserSettings;
+import com.openclassrooms.tourguide.metrics.TourGuideMetrics;
+import com.openclassrooms.tourguide.store.InMemoryUserRepository;
+import com.openclassrooms.tourguide.store.UserRepository;
 import com.openclassrooms.tourguide.tracker.Tracker;
+import com.openclassrooms.tourguide.tracker.TrackerSettings;
 import com.openclassrooms.tourguide.user.User;
 import com.openclassrooms.tourguide.user.UserReward;
 import com.openclassrooms.tourguide.dto.NearByAttractionDto;
+import com.openclassrooms.tourguide.geo.NearbyAttraction;
 
-import java.time.LocalDateTime;
-import java.time.ZoneOffset;
-import java.util.ArrayList;
-import java.util.Date;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
-import java.util.Random;
 import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.stream.IntStream;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import io.micrometer.core.instrument.Counter;
+import jakarta.annotation.PreDestroy;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
 import gpsUtil.GpsUtil;
 import gpsUtil.location.Attraction;
-import gpsUtil.location.Location;
 import gpsUtil.location.VisitedLocation;
 
 import tripPricer.Provider;
@@ -36,32 +48,84 @@ import tripPricer.TripPricer;
 @Service
 public class TourGuideService {
     private final Logger logger = LoggerFactory.getLogger(TourGuideService.class);
-    private final GpsUtil gpsUtil;
+    private final LocationSource locationSource;
     private final RewardsService rewardsService;
-    private final TripPricer tripPricer = new TripPricer();
+    private final TripDealsClient tripDealsClient;
+    private final UserRepository userRepository;
     public final Tracker tracker;
     private final boolean testMode = true; // Peut être rendu configurable via @Value si besoin
+    private static final int NEARBY_ATTRACTIONS_COUNT = 5;
+    public static final int MAX_PAGE_SIZE = 1000;
 
-    private final ExecutorService executorService = Executors.newFixedThreadPool(100);
+    // Exécuteur des appels à gpsUtil : pool fixe ou threads virtuels bornés selon la configuration.
+    private final ExecutorService executorService;
+    // Exécuteur des appels à TripPricer, à travers le cache des offres.
+    private final ExecutorService pricingExecutorService;
+    private final RequestDeadlines requestDeadlines;
+    private final Counter tripDealsFallbacks = fallbacks("getTripDeals");
+    private final Counter rewardsFallbacks = fallbacks("getRewards");
 
     public TourGuideService(GpsUtil gpsUtil, RewardsService rewardsService) {
-        this.gpsUtil = gpsUtil;
+        this(gpsUtil, rewardsService, ExecutionSettings.DEFAULT);
+    }
+
+    public TourGuideService(GpsUtil gpsUtil, RewardsService rewardsService, ExecutionSettings executionSettings) {
+        this(gpsUtil, rewardsService, new TripPricer(), executionSettings);
+    }
+
+    public TourGuideService(GpsUtil gpsUtil, RewardsService rewardsService, TripPricer tripPricer,
+                            ExecutionSettings executionSettings) {
+        this(LocationSource.from(gpsUtil), rewardsService, PricingSource.from(tripPricer), executionSettings);
+    }
+
+    public TourGuideService(LocationSource locationSource, RewardsService rewardsService, PricingSource pricingSource,
+                            ExecutionSettings executionSettings) {
+        this(locationSource, rewardsService, pricingSource,
+                new InMemoryUserRepository(InternalTestHelper.getInternalUserNumber()), executionSettings,
+                InternalUserSettings.DEFAULT, TrackerSettings.DEFAULT, RequestDeadlines.DEFAULT);
+    }
+
+    public TourGuideService(LocationSource locationSource, RewardsService rewardsService, PricingSource pricingSource,
+                            UserRepository userRepository, ExecutionSettings executionSettings,
+                            InternalUserSettings internalUserSettings, TrackerSettings trackerSettings,
+                            RequestDeadlines requestDeadlines) {
+        this(locationSource, rewardsService, pricingSource, userRepository, executionSettings, internalUserSettings,
+                trackerSettings, requestDeadlines, UserPartition.standalone());
+    }
+
+    /**
+     * @param userPartition utilisateurs suivis par cette instance quand plusieurs se partagent le suivi.
+     */
+    @Autowired
+    public TourGuideService(LocationSource locationSource, RewardsService rewardsService, PricingSource pricingSource,
+                            UserRepository userRepository, ExecutionSettings executionSettings,
+                            InternalUserSettings internalUserSettings, TrackerSettings trackerSettings,
+                            RequestDeadlines requestDeadlines, UserPartition userPartition) {
+        this.locationSource = locationSource;
+        this.userRepository = userRepository;
+        this.executorService = executionSettings.newGpsUtilExecutor();
+        this.pricingExecutorService = executionSettings.newTripPricerExecutor();
+        this.tripDealsClient = new TripDealsClient(pricingSource, tripPricerApiKey, pricingExecutorService,
+                requestDeadlines.tripDealsHedgeDelay());
+        this.requestDeadlines = requestDeadlines;
         this.rewardsService = rewardsService;
         // Fixe la locale par défaut à US pour assurer une cohérence dans les formats de nombres et de devises,
         // ce qui est important pour la compatibilité avec les bibliothèques externes comme TripPricer.
         Locale.setDefault(Locale.US);
 
-        if (testMode) {
+        if (userRepository.size() > 0) {
+            // Stockage persistant déjà rempli : les utilisateurs sont relus à la demande, rien n'est régénéré.
+            logger.info("Using {} stored users", userRepository.size());
+        } else if (testMode) {
             logger.info("TestMode enabled");
             logger.debug("Initializing users");
             // Initialisation de données fictives pour le développement et les tests sans base de données réelle.
-            initializeInternalUsers();
+            InternalUserGenerator.populate(userRepository, InternalTestHelper.getInternalUserNumber(), internalUserSettings);
             logger.debug("Finished initializing users");
         }
         // Le Tracker est un thread d'arrière-plan qui met à jour périodiquement la position des utilisateurs.
-        tracker = new Tracker(this);
-        tracker.start();
-        addShutDownHook();
+        // Il n'est pas lancé ici : son démarrage et son arrêt suivent le cycle de vie du contexte (TrackerLifecycle).
+        tracker = new Tracker(this, trackerSettings, userPartition);
     }
 
     public List<UserReward> getUserRewards(User user) {
@@ -86,63 +150,230 @@ public class TourGuideService {
     }
 
     public User getUser(String userName) {
-        return internalUserMap.get(userName);
+        return userRepository.get(userName);
     }
 
+    /**
+     * Copie de tous les utilisateurs : à réserver aux petits volumes (tests). Pour parcourir le stockage,
+     * utiliser {@link #userIterator()} ; pour l'exposer, {@link #getUsers(String, int)}.
+     */
     public List<User> getAllUsers() {
-        return new ArrayList<>(internalUserMap.values());
+        return userRepository.findAll();
+    }
+
+    /**
+     * Page d'utilisateurs dans l'ordre d'ajout, sans copie du reste du stockage.
+     *
+     * @param cursor jeton renvoyé par la page précédente, {@code null} ou vide pour la première page.
+     * @param limit nombre maximal d'utilisateurs, de 1 à {@value #MAX_PAGE_SIZE}.
+     * @throws IllegalArgumentException si le jeton ou la taille de page est invalide.
+     */
+    public UserPage getUsers(String cursor, int limit) {
+        if (limit < 1 || limit > MAX_PAGE_SIZE) {
+            throw new IllegalArgumentException("Page size must be between 1 and " + MAX_PAGE_SIZE);
+        }
+        int from = decodeCursor(cursor);
+        List<User> users = userRepository.page(from, limit);
+        int next = from + users.size();
+        // Page incomplète : plus rien à lire pour l'instant, pas de jeton.
+        return new UserPage(users, users.size() < limit || next >= userRepository.size() ? null : encodeCursor(next));
+    }
+
+    /**
+     * @param nextCursor jeton de la page suivante, {@code null} pour la dernière page.
+     */
+    public record UserPage(List<User> users, String nextCursor) {
+    }
+
+    // Jeton opaque pour les clients : la position suivante, en base 36.
+    private static String encodeCursor(int position) {
+        return Integer.toString(position, Character.MAX_RADIX);
+    }
+
+    private static int decodeCursor(String cursor) {
+        if (cursor == null || cursor.isEmpty()) {
+            return 0;
+        }
+        try {
+            int position = Integer.parseInt(cursor, Character.MAX_RADIX);
+            if (position >= 0) {
+                return position;
+            }
+        } catch (NumberFormatException e) {
+            // Traité ci-dessous.
+        }
+        throw new IllegalArgumentException("Invalid cursor: " + cursor);
+    }
+
+    /**
+     * Parcours des utilisateurs sans copie : l'itérateur reflète le stockage au fil de l'eau
+     * (faiblement cohérent) et ne permet pas de retirer d'utilisateur.
+     */
+    public Iterator<User> userIterator() {
+        return userRepository.iterator();
+    }
+
+    /**
+     * Noms des utilisateurs, sans charger en mémoire ceux d'un stockage sur disque.
+     */
+    public Iterator<String> userNameIterator() {
+        return userRepository.userNames();
+    }
+
+    public int getUserCount() {
+        return userRepository.size();
     }
 
     public void addUser(User user) {
-        if (!internalUserMap.containsKey(user.getUserName())) {
-            internalUserMap.put(user.getUserName(), user);
+        if (userRepository.add(user)) {
+            // Le nouvel utilisateur entre dans le cycle de suivi continu.
+            tracker.schedule(user);
         }
     }
 
     public List<Provider> getTripDeals(User user) {
+        List<Provider> providers;
+        try {
+            providers = tripDeals(user).join();
+        } catch (CompletionException e) {
+            // Erreur de la source, relancée telle quelle comme lors d'un appel direct.
+            throw e.getCause() instanceof RuntimeException cause ? cause : e;
+        }
+        // Attendue : l'appelant relit les offres de l'utilisateur juste après.
+        storeTripDeals(user, providers).join();
+        return providers;
+    }
+
+    /**
+     * Offres de voyage sans bloquer l'appelant. Passé le délai {@link RequestDeadlines#tripDeals()}, la réponse
+     * se rabat sur les dernières offres calculées pour l'utilisateur (vide s'il n'en a jamais eu) ; l'appel en cours
+     * continue et alimente le cache pour la requête suivante.
+     */
+    public CompletableFuture<List<Provider>> getTripDealsAsync(User user) {
+        // Copie : le délai ne s'applique qu'à cette requête, pas au futur partagé par le cache.
+        return tripDeals(user).copy()
+                .orTimeout(requestDeadlines.tripDeals().toMillis(), TimeUnit.MILLISECONDS)
+                .handle((providers, error) -> {
+                    if (error == null) {
+                        // La réponse n'attend pas l'écriture : seul le repli d'une requête suivante la relit.
+                        storeTripDeals(user, providers);
+                        return providers;
+                    }
+                    if (!(unwrap(error) instanceof TimeoutException)) {
+                        throw error instanceof CompletionException completion ? completion : new CompletionException(error);
+                    }
+                    tripDealsFallbacks.increment();
+                    logger.debug("Trip deals for {} not ready in time, serving previous deals", user.getUserName());
+                    return user.getTripDeals();
+                });
+    }
+
+    /**
+     * Récompenses déjà obtenues par l'utilisateur. La lecture ne déclenche aucune évaluation : elle attend seulement,
+     * au plus {@link RequestDeadlines#rewards()}, celle déjà demandée ou en cours pour ses dernières positions ;
+     * passé ce délai (ou si RewardCentral échoue), la réponse contient les récompenses du moment.
+     */
+    public CompletableFuture<List<UserReward>> getUserRewardsAsync(User user) {
+        // Copie : le délai ne s'applique qu'à cette requête, pas à l'évaluation partagée.
+        return rewardsService.pendingEvaluation(user).copy()
+                .orTimeout(requestDeadlines.rewards().toMillis(), TimeUnit.MILLISECONDS)
+                .handle((ignored, error) -> {
+                    if (error != null) {
+                        // Les échecs de RewardCentral sont déjà comptés par RewardsService.
+                        rewardsFallbacks.increment();
+                        logger.debug("Rewards for {} not updated in time, serving current rewards", user.getUserName());
+                    }
+                    return user.getUserRewards();
+                });
+    }
+
+    /**
+     * Dernières offres de l'utilisateur, écrites par le thread de son shard comme ses autres modifications.
+     */
+    private CompletableFuture<Void> storeTripDeals(User user, List<Provider> providers) {
+        return rewardsService.getUserShards().run(user, () -> user.setTripDeals(providers));
+    }
+
+    private CompletableFuture<List<Provider>> tripDeals(User user) {
         // Calcul du total des points de récompense pour obtenir de meilleures offres.
-        int cumulativeRewardPoints = user.getUserRewards().stream().mapToInt(UserReward::getRewardPoints).sum();
-        
-        // Appel à la librairie externe TripPricer pour obtenir des offres basées sur les préférences et les points de l'utilisateur.
-        List<Provider> providers = tripPricer.getPrice(tripPricerApiKey, user.getUserId(),
+        int cumulativeRewardPoints = user.getRewardPointsTotal();
+
+        // Offres basées sur les préférences et les points de l'utilisateur : TripPricer n'est appelé qu'en l'absence
+        // d'offre en cache pour ces valeurs (un changement de préférences ou de points donne une nouvelle clé).
+        return tripDealsClient.getTripDeals(user.getUserId(),
                 user.getUserPreferences().getNumberOfAdults(), user.getUserPreferences().getNumberOfChildren(),
                 user.getUserPreferences().getTripDuration(), cumulativeRewardPoints);
-        user.setTripDeals(providers);
-        return providers;
+    }
+
+    private static Throwable unwrap(Throwable error) {
+        return error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+    }
+
+    private static Counter fallbacks(String endpoint) {
+        return Counter.builder(TourGuideMetrics.REQUEST_FALLBACKS)
+                .description("Responses served from previous or partial results because the deadline passed")
+                .tag("endpoint", endpoint)
+                .register(TourGuideMetrics.registry());
     }
 
     public CompletableFuture<VisitedLocation> trackUserLocation(User user) {
-        return CompletableFuture.supplyAsync(() -> gpsUtil.getUserLocation(user.getUserId()), executorService)
-                .thenApply(visitedLocation -> {
+        // Écriture confiée au shard de l'utilisateur sans bloquer le thread gpsUtil : il est libéré dès la réponse.
+        // Les étapes suivantes, comme la demande d'évaluation (qui ne bloque jamais), s'enchaînent sur le shard.
+        return CompletableFuture.supplyAsync(() -> locationSource.getUserLocation(user.getUserId()), executorService)
+                .thenApplyAsync(visitedLocation -> {
                     user.addToVisitedLocations(visitedLocation);
+                    // Horodatage de la dernière position connue : trace par utilisateur de la fin de son suivi.
+                    user.setLatestLocationTimestamp(visitedLocation.timeVisited);
                     return visitedLocation;
-                });
+                }, rewardsService.getUserShards().executorFor(user));
+    }
+
+    /**
+     * Ajoute les positions à l'historique de l'utilisateur, depuis le thread de son shard, et horodate
+     * sa dernière position connue avec celle de la dernière ajoutée.
+     *
+     * @return un futur terminé une fois les positions ajoutées.
+     */
+    public CompletableFuture<Void> addVisitedLocations(User user, List<VisitedLocation> visitedLocations) {
+        return rewardsService.getUserShards().run(user, () -> {
+            visitedLocations.forEach(user::addToVisitedLocations);
+            if (!visitedLocations.isEmpty()) {
+                user.setLatestLocationTimestamp(visitedLocations.get(visitedLocations.size() - 1).timeVisited);
+            }
+        });
     }
 
+    @PreDestroy
     public void stop() {
         tracker.stopTracking();
         executorService.shutdownNow();
+        pricingExecutorService.shutdownNow();
         rewardsService.stop();
     }
 
     public List<NearByAttractionDto> getNearByAttractions(VisitedLocation visitedLocation, User user) {
-        List<Attraction> attractions = rewardsService.getAttractions();
-        if (attractions == null) {
-            attractions = gpsUtil.getAttractions();
-        }
+        return getNearByAttractions(visitedLocation, user, NEARBY_ATTRACTIONS_COUNT);
+    }
 
-        return attractions.stream()
-            .sorted((a1, a2) -> Double.compare(
-                rewardsService.getDistance(a1, visitedLocation.location),
-                rewardsService.getDistance(a2, visitedLocation.location)))
-            .limit(5)
-            .map(attraction -> toNearByAttractionDto(attraction, visitedLocation, user))
+    /**
+     * Retourne les {@code limit} attractions les plus proches de la position donnée.
+     * La recherche passe par l'index spatial (tas borné, distances calculées une seule fois)
+     * au lieu de trier tout le catalogue à chaque requête.
+     */
+    public List<NearByAttractionDto> getNearByAttractions(VisitedLocation visitedLocation, User user, int limit) {
+        List<NearbyAttraction> nearbyAttractions = rewardsService.getAttractionIndex().nearest(visitedLocation.location, limit);
+        // Les points des K attractions sont résolus en parallèle, en un seul aller-retour vers RewardCentral.
+        Map<UUID, Integer> rewardPoints = rewardsService.getRewardPoints(
+                nearbyAttractions.stream().map(NearbyAttraction::attraction).toList(), user).join();
+
+        return nearbyAttractions.stream()
+            .map(nearbyAttraction -> toNearByAttractionDto(nearbyAttraction, visitedLocation,
+                rewardPoints.get(nearbyAttraction.attraction().attractionId)))
             .toList();
     }
 
-    private NearByAttractionDto toNearByAttractionDto(Attraction attraction, VisitedLocation visitedLocation, User user) {
-        double distance = rewardsService.getDistance(attraction, visitedLocation.location);
-        int rewardPoints = rewardsService.getRewardPoints(attraction, user);
+    private NearByAttractionDto toNearByAttractionDto(NearbyAttraction nearbyAttraction, VisitedLocation visitedLocation, int rewardPoints) {
+        Attraction attraction = nearbyAttraction.attraction();
 
         return new NearByAttractionDto(
             attraction.attractionName,
@@ -150,60 +381,17 @@ public class TourGuideService {
             attraction.longitude,
             visitedLocation.location.latitude,
             visitedLocation.location.longitude,
-            distance,
+            nearbyAttraction.distanceInMiles(),
             rewardPoints
         );
     }
 
-    private void addShutDownHook() {
-        Runtime.getRuntime().addShutdownHook(new Thread(this::stop));
-    }
-
     /**********************************************************************************
      * Methods Below: For Internal Testing
      **********************************************************************************/
     private static final String tripPricerApiKey = "test-server-api-key";
-    // Database connection will be used for external users, but for testing purposes
-    // internal users are provided and stored in memory
-    private final Map<String, User> internalUserMap = new ConcurrentHashMap<>();
-
-    private void initializeInternalUsers() {
-        IntStream.range(0, InternalTestHelper.getInternalUserNumber()).forEach(i -> {
-            String userName = "internalUser" + i;
-            String phone = "000";
-            String email = userName + "@tourGuide.com";
-            User user = new User(UUID.randomUUID(), userName, phone, email);
-            generateUserLocationHistory(user);
-
-            internalUserMap.put(userName, user);
-        });
-        logger.debug("Created {} internal test users.", InternalTestHelper.getInternalUserNumber());
-    }
-
-    private void generateUserLocationHistory(User user) {
-        IntStream.range(0, 3).forEach(i -> user.addToVisitedLocations(new VisitedLocation(user.getUserId(),
-                new Location(generateRandomLatitude(), generateRandomLongitude()), getRandomTime())));
-    }
-
-    private double generateRandomLongitude() {
-        double leftLimit = -180;
-        double rightLimit = 180;
-        return leftLimit + new Random().nextDouble() * (rightLimit - leftLimit);
-    }
-
-    private double generateRandomLatitude() {
-        double leftLimit = -85.05112878;
-        double rightLimit = 85.05112878;
-        return leftLimit + new Random().nextDouble() * (rightLimit - leftLimit);
-    }
-
-    private Date getRandomTime() {
-        LocalDateTime localDateTime = LocalDateTime.now().minusDays(new Random().nextInt(30));
-        return Date.from(localDateTime.toInstant(ZoneOffset.UTC));
-    }
-
-    public GpsUtil getGpsUtil() {
-        return gpsUtil;
+    public LocationSource getLocationSource() {
+        return locationSource;
     }
 
     public RewardsService getRewardsService() {
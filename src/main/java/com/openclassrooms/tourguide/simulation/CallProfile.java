@@ -0,0 +1,21 @@
+package com.openclassrooms.tourguide.simulation;
+
+/**
+ * Comportement d'une source simulée : temps de réponse, taux d'erreur et débit maximal.
+ *
+ * @param errorRate probabilité (entre 0 et 1) qu'un appel échoue par {@link SimulatedFailureException}.
+ * @param maxCallsPerSecond débit maximal, 0 pour ne pas le limiter.
+ */
+public record CallProfile(LatencyProfile latency, double errorRate, int maxCallsPerSecond) {
+
+    public static final CallProfile INSTANT = new CallProfile(LatencyProfile.none(), 0, 0);
+
+    public CallProfile {
+        if (errorRate < 0 || errorRate > 1) {
+            throw new IllegalArgumentException("errorRate must be between 0 and 1: " + errorRate);
+        }
+        if (maxCallsPerSecond < 0) {
+            throw new IllegalArgumentException("maxCallsPerSecond must not be negative: " + maxCallsPerSecond);
+        }
+    }
+}
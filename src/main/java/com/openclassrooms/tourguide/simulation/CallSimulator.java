@@ -0,0 +1,80 @@
+package com.openclassrooms.tourguide.simulation;
+
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Applique un {@link CallProfile} à chaque appel d'un simulateur : attente du créneau de débit, latence tirée
+ * du profil, puis éventuelle erreur injectée.
+ * <p>
+ * Comme les données simulées, latence et erreur sont tirées d'une graine dérivée de la graine globale et de la
+ * requête ({@link #seedFor}), quel que soit le thread appelant : d'une exécution à l'autre, une même requête voit
+ * la même latence et le même résultat. Une requête en échec retentée tire une nouvelle valeur par tentative ;
+ * seules les requêtes en échec sont retenues, jusqu'à leur prochaine réussite.
+ */
+class CallSimulator {
+    private static final long CALL_SEED_SALT = 0x5DEECE66DL;
+    private static final long ATTEMPT_MULTIPLIER = 0xD6E8FEB86659FD93L;
+
+    private final String sourceName;
+    private final CallProfile profile;
+    private final ThroughputLimiter limiter;
+    private final long seed;
+    // Échecs consécutifs par requête, pour qu'une nouvelle tentative ne rejoue pas le même tirage.
+    private final Map<CallKey, Integer> failedAttempts = new ConcurrentHashMap<>();
+
+    CallSimulator(String sourceName, CallProfile profile, long seed) {
+        this.sourceName = sourceName;
+        this.profile = profile;
+        this.limiter = profile.maxCallsPerSecond() > 0 ? new ThroughputLimiter(profile.maxCallsPerSecond()) : null;
+        // Graine distincte de celle des données : latence et erreur ne sont pas corrélées aux valeurs rendues.
+        this.seed = seed ^ CALL_SEED_SALT;
+    }
+
+    /**
+     * @param id   identifiant de la requête (utilisateur, attraction).
+     * @param rank rang de la requête pour cet identifiant, celui qu'utilisent ses données simulées.
+     */
+    void call(UUID id, long rank) {
+        if (limiter != null) {
+            limiter.acquire();
+        }
+        CallKey key = new CallKey(id, rank);
+        int attempt = failedAttempts.isEmpty() ? 0 : failedAttempts.getOrDefault(key, 0);
+        SplittableRandom random = new SplittableRandom(seedFor(seed, id, rank) ^ attempt * ATTEMPT_MULTIPLIER);
+        long delayNanos = profile.latency().nextDelayNanos(random);
+        if (delayNanos > 0) {
+            pause(delayNanos);
+        }
+        if (profile.errorRate() > 0 && random.nextDouble() < profile.errorRate()) {
+            failedAttempts.merge(key, 1, Integer::sum);
+            throw new SimulatedFailureException(sourceName + " call failed (simulated)");
+        }
+        if (attempt > 0) {
+            failedAttempts.remove(key);
+        }
+    }
+
+    static void pause(long nanos) {
+        try {
+            TimeUnit.NANOSECONDS.sleep(nanos);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Graine reproductible pour une donnée simulée, fonction de la graine globale, d'un identifiant et d'un rang.
+     */
+    static long seedFor(long seed, UUID id, long rank) {
+        return seed ^ id.getMostSignificantBits() * 0x9E3779B97F4A7C15L
+                ^ id.getLeastSignificantBits() * 0xC2B2AE3D27D4EB4FL
+                ^ rank * 0x165667B19E3779F9L;
+    }
+
+    private record CallKey(UUID id, long rank) {
+    }
+}
@@ -0,0 +1,80 @@
+package com.openclassrooms.tourguide.simulation;
+
+import java.time.Duration;
+import java.util.Locale;
+import java.util.SplittableRandom;
+
+import org.springframework.boot.convert.DurationStyle;
+
+/**
+ * Distribution des temps de réponse d'une source simulée.
+ */
+@FunctionalInterface
+public interface LatencyProfile {
+    // Quantile 0,99 de la loi normale centrée réduite.
+    double Z_99 = 2.3263478740408408;
+
+    long nextDelayNanos(SplittableRandom random);
+
+    static LatencyProfile none() {
+        return random -> 0;
+    }
+
+    static LatencyProfile fixed(Duration delay) {
+        long nanos = delay.toNanos();
+        return random -> nanos;
+    }
+
+    static LatencyProfile uniform(Duration min, Duration max) {
+        long minNanos = min.toNanos();
+        long maxNanos = max.toNanos();
+        if (minNanos > maxNanos) {
+            throw new IllegalArgumentException("Uniform latency requires min <= max: " + min + ", " + max);
+        }
+        return random -> random.nextLong(minNanos, maxNanos + 1);
+    }
+
+    /**
+     * Loi log-normale : la plupart des appels sont proches de la médiane, 1 % dépasse {@code p99}.
+     * Les valeurs extrêmes sont bornées à 10 fois le p99 pour ne pas bloquer un test.
+     */
+    static LatencyProfile longTail(Duration median, Duration p99) {
+        double medianNanos = median.toNanos();
+        double p99Nanos = p99.toNanos();
+        if (medianNanos <= 0 || p99Nanos < medianNanos) {
+            throw new IllegalArgumentException("Long-tail latency requires 0 < median <= p99: " + median + ", " + p99);
+        }
+        double sigma = Math.log(p99Nanos / medianNanos) / Z_99;
+        long capNanos = (long) (10 * p99Nanos);
+        return random -> Math.min(capNanos, (long) (medianNanos * Math.exp(sigma * random.nextGaussian())));
+    }
+
+    /**
+     * Lit un profil écrit sous la forme {@code none}, {@code fixed:50ms}, {@code uniform:30ms..100ms}
+     * ou {@code long-tail:20ms..500ms} (médiane..p99).
+     */
+    static LatencyProfile parse(String spec) {
+        String trimmed = spec.trim();
+        if (trimmed.equalsIgnoreCase("none")) {
+            return none();
+        }
+        int colon = trimmed.indexOf(':');
+        if (colon < 0) {
+            throw new IllegalArgumentException("Unknown latency profile: " + spec);
+        }
+        String kind = trimmed.substring(0, colon).trim().toLowerCase(Locale.ROOT);
+        String[] bounds = trimmed.substring(colon + 1).split("\\.\\.");
+        try {
+            return switch (kind) {
+                case "fixed" -> fixed(DurationStyle.detectAndParse(bounds[0].trim()));
+                case "uniform" -> uniform(DurationStyle.detectAndParse(bounds[0].trim()),
+                        DurationStyle.detectAndParse(bounds[1].trim()));
+                case "long-tail" -> longTail(DurationStyle.detectAndParse(bounds[0].trim()),
+                        DurationStyle.detectAndParse(bounds[1].trim()));
+                default -> throw new IllegalArgumentException("Unknown latency profile: " + spec);
+            };
+        } catch (ArrayIndexOutOfBoundsException e) {
+            throw new IllegalArgumentException("Missing bound in latency profile: " + spec, e);
+        }
+    }
+}
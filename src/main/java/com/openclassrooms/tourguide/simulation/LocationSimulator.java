@@ -0,0 +1,70 @@
+package com.openclassrooms.tourguide.simulation;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import gpsUtil.location.Attraction;
+import gpsUtil.location.Location;
+import gpsUtil.location.VisitedLocation;
+
+import com.openclassrooms.tourguide.client.LocationSource;
+
+/**
+ * Simulateur local de gpsUtil : la n-ième position renvoyée pour un utilisateur ne dépend que de la graine,
+ * de l'utilisateur et de n, quel que soit l'ordre des appels entre utilisateurs.
+ * <p>
+ * Comme gpsUtil, les positions sont tirées uniformément en latitude/longitude ; le catalogue d'attractions est
+ * fixé à la construction et renvoyé à l'identique à chaque appel. Seules les positions subissent le profil d'appel :
+ * le catalogue, lu au démarrage pour construire l'index et la table des attractions, ne doit ni ralentir ni faire
+ * échouer le démarrage.
+ */
+public class LocationSimulator implements LocationSource {
+    // Mêmes bornes de latitude que gpsUtil.
+    private static final double MAX_LATITUDE = 85.05112878;
+
+    private final long seed;
+    private final CallSimulator calls;
+    private final List<Attraction> attractions;
+    private final Map<UUID, AtomicInteger> locationsPerUser = new ConcurrentHashMap<>();
+
+    public LocationSimulator(long seed, CallProfile profile, List<Attraction> attractions) {
+        this.seed = seed;
+        this.calls = new CallSimulator("gpsUtil", profile, seed);
+        this.attractions = List.copyOf(attractions);
+    }
+
+    /**
+     * Catalogue synthétique de {@code count} attractions, reproductible pour une même graine.
+     */
+    public static List<Attraction> syntheticAttractions(int count, long seed) {
+        SplittableRandom random = new SplittableRandom(seed);
+        List<Attraction> attractions = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            attractions.add(new Attraction("Attraction " + i, "City " + i % 100, "State " + i % 50,
+                    random.nextDouble(-MAX_LATITUDE, MAX_LATITUDE), random.nextDouble(-180, 180)));
+        }
+        return attractions;
+    }
+
+    @Override
+    public VisitedLocation getUserLocation(UUID userId) {
+        AtomicInteger ranks = locationsPerUser.computeIfAbsent(userId, id -> new AtomicInteger());
+        // Un appel en échec ne consomme pas de rang : la tentative suivante vise la même position.
+        calls.call(userId, ranks.get());
+        int rank = ranks.getAndIncrement();
+        SplittableRandom random = new SplittableRandom(CallSimulator.seedFor(seed, userId, rank));
+        Location location = new Location(random.nextDouble(-MAX_LATITUDE, MAX_LATITUDE), random.nextDouble(-180, 180));
+        return new VisitedLocation(userId, location, new Date());
+    }
+
+    @Override
+    public List<Attraction> getAttractions() {
+        return attractions;
+    }
+}
@@ -0,0 +1,52 @@
+package com.openclassrooms.tourguide.simulation;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.UUID;
+
+import tripPricer.Provider;
+
+import com.openclassrooms.tourguide.client.PricingSource;
+
+/**
+ * Simulateur local de TripPricer : cinq offres de fournisseurs distincts, dont les prix ne dépendent que de la graine
+ * et des paramètres de la demande.
+ */
+public class PricingSimulator implements PricingSource {
+    private static final int OFFER_COUNT = 5;
+    private static final String[] PROVIDERS = { "Holiday Travels", "Enterprize Ventures Limited", "Sunny Days",
+            "FlyAway Trips", "United Partners Vacations", "Dream Trips", "Live Free",
+            "Dancing Waves Cruselines and Partners", "AdventureCo", "Cure-Your-Blues" };
+
+    private final long seed;
+    private final CallSimulator calls;
+
+    public PricingSimulator(long seed, CallProfile profile) {
+        this.seed = seed;
+        this.calls = new CallSimulator("TripPricer", profile, seed);
+    }
+
+    @Override
+    public List<Provider> getPrice(String apiKey, UUID attractionId, int adults, int children, int nightsStay,
+                                   int rewardsPoints) {
+        long request = ((adults * 31L + children) * 31L + nightsStay) * 31L + rewardsPoints;
+        calls.call(attractionId, request);
+        SplittableRandom random = new SplittableRandom(CallSimulator.seedFor(seed, attractionId, request));
+
+        // Tirage sans remise des fournisseurs (Fisher-Yates partiel).
+        String[] providers = PROVIDERS.clone();
+        List<Provider> offers = new ArrayList<>(OFFER_COUNT);
+        for (int i = 0; i < OFFER_COUNT; i++) {
+            int pick = random.nextInt(i, providers.length);
+            String provider = providers[pick];
+            providers[pick] = providers[i];
+            providers[i] = provider;
+
+            double nightlyPrice = random.nextInt(100, 700) * adults + random.nextInt(50, 350) * children;
+            double price = Math.max(0, nightlyPrice * nightsStay + 0.99 - rewardsPoints);
+            offers.add(new Provider(new UUID(random.nextLong(), random.nextLong()), provider, price));
+        }
+        return offers;
+    }
+}
@@ -0,0 +1,39 @@
+package com.openclassrooms.tourguide.simulation;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.UUID;
+
+import gpsUtil.location.Attraction;
+
+import com.openclassrooms.tourguide.client.RewardSource;
+
+/**
+ * Simulateur local de RewardCentral : les points (de 1 à 999, comme la bibliothèque) ne dépendent que de la graine,
+ * de l'utilisateur et du rang de l'attraction dans le catalogue, donc restent identiques d'une exécution à l'autre
+ * même si les identifiants d'attraction changent.
+ */
+public class RewardSimulator implements RewardSource {
+    private final long seed;
+    private final CallSimulator calls;
+    private final Map<UUID, Integer> attractionRanks = new HashMap<>();
+
+    public RewardSimulator(long seed, CallProfile profile, List<Attraction> attractions) {
+        this.seed = seed;
+        this.calls = new CallSimulator("RewardCentral", profile, seed);
+        for (int i = 0; i < attractions.size(); i++) {
+            attractionRanks.put(attractions.get(i).attractionId, i);
+        }
+    }
+
+    @Override
+    public int getAttractionRewardPoints(UUID attractionId, UUID userId) {
+        // Attraction hors catalogue : son identifiant tient lieu de rang.
+        Integer rank = attractionRanks.get(attractionId);
+        long attractionKey = rank != null ? rank : attractionId.getMostSignificantBits() ^ attractionId.getLeastSignificantBits();
+        calls.call(userId, attractionKey);
+        return new SplittableRandom(CallSimulator.seedFor(seed, userId, attractionKey)).nextInt(1, 1000);
+    }
+}
@@ -0,0 +1,12 @@
+package com.openclassrooms.tourguide.simulation;
+
+/**
+ * Erreur injectée volontairement par un simulateur, pour vérifier la résistance aux pannes des sources externes.
+ */
+public class SimulatedFailureException extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
+    public SimulatedFailureException(String message) {
+        super(message);
+    }
+}
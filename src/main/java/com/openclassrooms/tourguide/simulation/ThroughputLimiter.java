@@ -0,0 +1,29 @@
+package com.openclassrooms.tourguide.simulation;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Limiteur de débit sans verrou : chaque appel réserve le prochain créneau libre, espacés de
+ * {@code 1 / maxCallsPerSecond}, et attend son tour. La capacité inutilisée n'est pas cumulée (pas de rafale).
+ */
+public class ThroughputLimiter {
+    private final long intervalNanos;
+    private final AtomicLong nextSlotNanos = new AtomicLong(System.nanoTime());
+
+    public ThroughputLimiter(int maxCallsPerSecond) {
+        if (maxCallsPerSecond <= 0) {
+            throw new IllegalArgumentException("maxCallsPerSecond must be positive: " + maxCallsPerSecond);
+        }
+        this.intervalNanos = TimeUnit.SECONDS.toNanos(1) / maxCallsPerSecond;
+    }
+
+    public void acquire() {
+        long now = System.nanoTime();
+        long previous = nextSlotNanos.getAndAccumulate(now, (next, time) -> Math.max(next, time) + intervalNanos);
+        long waitNanos = Math.max(previous, now) - now;
+        if (waitNanos > 0) {
+            CallSimulator.pause(waitNanos);
+        }
+    }
+}
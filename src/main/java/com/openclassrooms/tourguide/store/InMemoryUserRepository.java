@@ -0,0 +1,67 @@
+package com.openclassrooms.tourguide.store;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.openclassrooms.tourguide.user.User;
+
+/**
+ * Utilisateurs conservés dans le tas, perdus à l'arrêt : stockage par défaut, et celui des tests.
+ */
+public class InMemoryUserRepository implements UserRepository {
+    private final Map<String, User> users;
+    // Ordre d'ajout, qui sert de position stable aux pages (la table n'a pas d'ordre).
+    private final List<User> insertionOrder;
+
+    public InMemoryUserRepository() {
+        users = new ConcurrentHashMap<>();
+        insertionOrder = new ArrayList<>();
+    }
+
+    /**
+     * Table dimensionnée d'emblée pour le nombre d'utilisateurs attendu : évite les redimensionnements
+     * successifs lors du chargement initial.
+     */
+    public InMemoryUserRepository(int expectedUsers) {
+        users = new ConcurrentHashMap<>((int) (expectedUsers / 0.75f) + 1);
+        insertionOrder = new ArrayList<>(expectedUsers);
+    }
+
+    @Override
+    public User get(String userName) {
+        return users.get(userName);
+    }
+
+    @Override
+    public boolean add(User user) {
+        if (users.putIfAbsent(user.getUserName(), user) != null) {
+            return false;
+        }
+        synchronized (insertionOrder) {
+            insertionOrder.add(user);
+        }
+        return true;
+    }
+
+    @Override
+    public int size() {
+        return users.size();
+    }
+
+    @Override
+    public List<User> page(int from, int limit) {
+        synchronized (insertionOrder) {
+            int end = (int) Math.min(insertionOrder.size(), (long) from + limit);
+            return from >= end ? List.of() : List.copyOf(insertionOrder.subList(from, end));
+        }
+    }
+
+    @Override
+    public Iterator<User> iterator() {
+        return Collections.unmodifiableCollection(users.values()).iterator();
+    }
+}
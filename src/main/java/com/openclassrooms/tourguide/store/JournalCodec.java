@@ -0,0 +1,248 @@
+package com.openclassrooms.tourguide.store;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.Function;
+import java.util.zip.CRC32C;
+
+import gpsUtil.location.Attraction;
+import gpsUtil.location.Location;
+import gpsUtil.location.VisitedLocation;
+
+import com.openclassrooms.tourguide.user.LocationHistory;
+import com.openclassrooms.tourguide.user.User;
+import com.openclassrooms.tourguide.user.UserPreferences;
+import com.openclassrooms.tourguide.user.UserReward;
+
+/**
+ * Format binaire du journal et des instantanés du {@link JournaledUserRepository}.
+ * <p>
+ * Un enregistrement du journal est encadré par sa longueur et sa somme de contrôle CRC32C
+ * ({@code [longueur][crc][charge utile]}) : une écriture interrompue par un arrêt brutal est détectée
+ * et ignorée à la relecture. La charge utile commence par le type d'événement et le nom d'utilisateur.
+ */
+final class JournalCodec {
+    static final byte USER_ADDED = 1;
+    static final byte LOCATION_ADDED = 2;
+    static final byte LOCATIONS_CLEARED = 3;
+    static final byte REWARD_ADDED = 4;
+    static final byte PROFILE_CHANGED = 5;
+
+    static final int FRAME_HEADER_SIZE = 8;
+    private static final long NO_TIME = Long.MIN_VALUE;
+
+    private JournalCodec() {
+    }
+
+    /**
+     * Utilisateur relu, avec la séquence de fin de son historique au moment de l'écriture : les événements
+     * de position de séquence inférieure y sont déjà inclus.
+     */
+    record DecodedUser(User user, long locationSequence) {
+    }
+
+    static void encodeUser(Encoder encoder, User user) {
+        encoder.putLong(user.getUserId().getMostSignificantBits());
+        encoder.putLong(user.getUserId().getLeastSignificantBits());
+        encoder.putString(user.getUserName());
+        encodeProfile(encoder, user);
+        LocationHistory.Snapshot visitedLocations = user.getVisitedLocationsSnapshot();
+        encoder.putLong(visitedLocations.endSequence());
+        encoder.putInt(visitedLocations.size());
+        for (int i = 0; i < visitedLocations.size(); i++) {
+            encoder.putDouble(visitedLocations.latitude(i));
+            encoder.putDouble(visitedLocations.longitude(i));
+            encoder.putLong(visitedLocations.timeMillis(i));
+        }
+        List<UserReward> userRewards = user.getUserRewards();
+        encoder.putInt(userRewards.size());
+        for (UserReward userReward : userRewards) {
+            encodeReward(encoder, userReward);
+        }
+    }
+
+    static DecodedUser decodeUser(ByteBuffer buffer, Function<String, Attraction> attractionResolver) {
+        UUID userId = new UUID(buffer.getLong(), buffer.getLong());
+        String userName = getString(buffer);
+        User user = new User(userId, userName, null, null);
+        applyProfile(buffer, user);
+        long locationSequence = buffer.getLong();
+        int locationCount = buffer.getInt();
+        for (int i = 0; i < locationCount; i++) {
+            user.addToVisitedLocations(new VisitedLocation(userId, new Location(buffer.getDouble(), buffer.getDouble()),
+                    new Date(buffer.getLong())));
+        }
+        int rewardCount = buffer.getInt();
+        for (int i = 0; i < rewardCount; i++) {
+            user.addUserReward(decodeReward(buffer, userId, attractionResolver));
+        }
+        return new DecodedUser(user, locationSequence);
+    }
+
+    static void encodeProfile(Encoder encoder, User user) {
+        encoder.putString(user.getPhoneNumber());
+        encoder.putString(user.getEmailAddress());
+        Date latestLocationTimestamp = user.getLatestLocationTimestamp();
+        encoder.putLong(latestLocationTimestamp == null ? NO_TIME : latestLocationTimestamp.getTime());
+        UserPreferences preferences = user.getUserPreferences();
+        encoder.putInt(preferences.getAttractionProximity());
+        encoder.putInt(preferences.getTripDuration());
+        encoder.putInt(preferences.getTicketQuantity());
+        encoder.putInt(preferences.getNumberOfAdults());
+        encoder.putInt(preferences.getNumberOfChildren());
+    }
+
+    static void applyProfile(ByteBuffer buffer, User user) {
+        user.setPhoneNumber(getString(buffer));
+        user.setEmailAddress(getString(buffer));
+        long latestLocationTime = buffer.getLong();
+        user.setLatestLocationTimestamp(latestLocationTime == NO_TIME ? null : new Date(latestLocationTime));
+        UserPreferences preferences = new UserPreferences();
+        preferences.setAttractionProximity(buffer.getInt());
+        preferences.setTripDuration(buffer.getInt());
+        preferences.setTicketQuantity(buffer.getInt());
+        preferences.setNumberOfAdults(buffer.getInt());
+        preferences.setNumberOfChildren(buffer.getInt());
+        user.setUserPreferences(preferences);
+    }
+
+    static void encodeReward(Encoder encoder, UserReward userReward) {
+        encoder.putString(userReward.attraction.attractionName);
+        encoder.putDouble(userReward.visitedLocation.location.latitude);
+        encoder.putDouble(userReward.visitedLocation.location.longitude);
+        encoder.putLong(userReward.visitedLocation.timeVisited.getTime());
+        encoder.putInt(userReward.getRewardPoints());
+    }
+
+    /**
+     * Les attractions sont retrouvées par leur nom ; une attraction disparue du catalogue est recréée
+     * à la position de la visite.
+     */
+    static UserReward decodeReward(ByteBuffer buffer, UUID userId, Function<String, Attraction> attractionResolver) {
+        String attractionName = getString(buffer);
+        VisitedLocation visitedLocation = new VisitedLocation(userId,
+                new Location(buffer.getDouble(), buffer.getDouble()), new Date(buffer.getLong()));
+        Attraction attraction = attractionResolver.apply(attractionName);
+        if (attraction == null) {
+            attraction = new Attraction(attractionName, "", "", visitedLocation.location.latitude,
+                    visitedLocation.location.longitude);
+        }
+        return new UserReward(visitedLocation, attraction, buffer.getInt());
+    }
+
+    static String getString(ByteBuffer buffer) {
+        int length = buffer.getShort();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Lit l'enregistrement encadré à la position courante et avance au suivant.
+     *
+     * @return la charge utile, ou {@code null} si l'enregistrement est incomplet ou corrompu (fin du journal utile).
+     */
+    static ByteBuffer nextFrame(ByteBuffer buffer) {
+        if (buffer.remaining() < FRAME_HEADER_SIZE) {
+            return null;
+        }
+        int start = buffer.position();
+        int length = buffer.getInt(start);
+        int checksum = buffer.getInt(start + 4);
+        if (length <= 0 || length > buffer.remaining() - FRAME_HEADER_SIZE) {
+            return null;
+        }
+        ByteBuffer payload = buffer.slice(start + FRAME_HEADER_SIZE, length);
+        CRC32C crc = new CRC32C();
+        crc.update(payload.duplicate());
+        if ((int) crc.getValue() != checksum) {
+            return null;
+        }
+        buffer.position(start + FRAME_HEADER_SIZE + length);
+        return payload;
+    }
+
+    /**
+     * Tampon d'encodage extensible, réutilisable d'un enregistrement à l'autre.
+     */
+    static final class Encoder {
+        private ByteBuffer buffer;
+
+        Encoder(int initialCapacity) {
+            this.buffer = ByteBuffer.allocate(initialCapacity);
+        }
+
+        /**
+         * Commence un enregistrement encadré, dont la longueur et la somme de contrôle sont écrites par {@link #endFrame()}.
+         */
+        Encoder beginFrame(byte type, String userName) {
+            buffer.clear();
+            buffer.position(FRAME_HEADER_SIZE);
+            buffer.put(type);
+            putString(userName);
+            return this;
+        }
+
+        ByteBuffer endFrame() {
+            int length = buffer.position() - FRAME_HEADER_SIZE;
+            CRC32C crc = new CRC32C();
+            crc.update(buffer.array(), FRAME_HEADER_SIZE, length);
+            buffer.putInt(0, length);
+            buffer.putInt(4, (int) crc.getValue());
+            return buffer.flip();
+        }
+
+        /**
+         * Commence un bloc simplement préfixé par sa longueur (instantanés).
+         */
+        Encoder beginBlock() {
+            buffer.clear();
+            buffer.position(Integer.BYTES);
+            return this;
+        }
+
+        ByteBuffer endBlock() {
+            buffer.putInt(0, buffer.position() - Integer.BYTES);
+            return buffer.flip();
+        }
+
+        void putLong(long value) {
+            ensure(Long.BYTES).putLong(value);
+        }
+
+        void putInt(int value) {
+            ensure(Integer.BYTES).putInt(value);
+        }
+
+        void putDouble(double value) {
+            ensure(Double.BYTES).putDouble(value);
+        }
+
+        void putString(String value) {
+            if (value == null) {
+                ensure(Short.BYTES).putShort((short) -1);
+                return;
+            }
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            if (bytes.length > Short.MAX_VALUE) {
+                throw new IllegalArgumentException("String too long for the journal: " + bytes.length + " bytes");
+            }
+            ensure(Short.BYTES + bytes.length).putShort((short) bytes.length).put(bytes);
+        }
+
+        private ByteBuffer ensure(int bytes) {
+            if (buffer.remaining() < bytes) {
+                ByteBuffer larger = ByteBuffer.allocate(Math.max(buffer.capacity() * 2, buffer.position() + bytes));
+                larger.put(buffer.flip());
+                buffer = larger;
+            }
+            return buffer;
+        }
+    }
+}
@@ -0,0 +1,247 @@
+package com.openclassrooms.tourguide.store;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.openclassrooms.tourguide.metrics.TourGuideMetrics;
+
+/**
+ * Écriture du journal par validation groupée (group commit).
+ * <p>
+ * Un écrivain ne fait qu'une copie mémoire dans le tampon courant et repart sans attendre le disque.
+ * Un thread dédié échange périodiquement ce tampon contre le second, l'écrit d'un seul appel et le force
+ * sur disque : le coût d'un {@code fsync} est partagé par tous les événements du lot. Les écrivains
+ * ne sont ralentis que si le tampon est plein (contre-pression), ou s'ils demandent explicitement
+ * à attendre la durabilité ({@link #sync()}).
+ * <p>
+ * Le journal est découpé en segments numérotés ; {@link #rotate()} en commence un nouveau, ce qui permet
+ * de supprimer les plus anciens une fois couverts par un instantané.
+ */
+final class JournalWriter implements AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger(JournalWriter.class);
+
+    private final Path directory;
+    private final long commitIntervalNanos;
+    private final int flushThreshold;
+    private final Timer commitTimer;
+    private final Thread flusher;
+    // Ordre d'acquisition : channelLock puis bufferLock.
+    private final Object channelLock = new Object();
+    private final Object bufferLock = new Object();
+    private ByteBuffer active;
+    private ByteBuffer standby;
+    // Octets ajoutés depuis l'ouverture, et octets déjà forcés sur disque.
+    private long appended;
+    private long durable;
+    private int syncRequests;
+    private boolean closed;
+    private IOException failure;
+    private FileChannel channel;
+    private long segment;
+
+    JournalWriter(Path directory, long segment, int bufferSize, Duration commitInterval) throws IOException {
+        this.directory = directory;
+        this.segment = segment;
+        this.channel = openSegment(directory, segment);
+        this.active = ByteBuffer.allocateDirect(bufferSize);
+        this.standby = ByteBuffer.allocateDirect(bufferSize);
+        this.flushThreshold = bufferSize / 2;
+        this.commitIntervalNanos = commitInterval.toNanos();
+        this.commitTimer = Timer.builder(TourGuideMetrics.JOURNAL_COMMIT)
+                .description("Time to write and force one group of journal records")
+                .publishPercentileHistogram()
+                .register(TourGuideMetrics.registry());
+        this.flusher = Thread.ofPlatform().name("journal-flusher").daemon().start(this::flushLoop);
+    }
+
+    static Path segmentFile(Path directory, long segment) {
+        return directory.resolve(String.format("journal-%08d.log", segment));
+    }
+
+    /**
+     * Ajoute un enregistrement encadré au lot courant (copie des octets restants du tampon fourni).
+     *
+     * @throws UncheckedIOException si une écriture précédente a échoué.
+     */
+    void append(ByteBuffer frame) {
+        int size = frame.remaining();
+        synchronized (bufferLock) {
+            if (size > active.capacity()) {
+                throw new IllegalArgumentException("Journal record of " + size + " bytes exceeds the buffer size");
+            }
+            while (true) {
+                checkUsable();
+                if (active.remaining() >= size) {
+                    break;
+                }
+                // Tampon plein : on attend l'échange du flusher.
+                bufferLock.notifyAll();
+                awaitQuietly();
+            }
+            boolean wasEmpty = active.position() == 0;
+            active.put(frame);
+            appended += size;
+            if (wasEmpty || active.position() >= flushThreshold) {
+                bufferLock.notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Attend que tout ce qui a été ajouté jusqu'ici soit forcé sur disque.
+     */
+    void sync() {
+        synchronized (bufferLock) {
+            long target = appended;
+            syncRequests++;
+            bufferLock.notifyAll();
+            try {
+                // Après fermeture, le reliquat est écrit par close() : seul un échec d'écriture interrompt l'attente.
+                while (durable < target) {
+                    if (failure != null) {
+                        throw new UncheckedIOException("Journal is unavailable", failure);
+                    }
+                    awaitQuietly();
+                }
+            } finally {
+                syncRequests--;
+            }
+        }
+    }
+
+    /**
+     * Valide le lot en cours dans le segment courant, puis dirige les ajouts suivants vers un nouveau segment.
+     *
+     * @return le numéro du nouveau segment.
+     */
+    long rotate() throws IOException {
+        synchronized (channelLock) {
+            flushPending();
+            channel.close();
+            segment++;
+            channel = openSegment(directory, segment);
+            return segment;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        synchronized (bufferLock) {
+            closed = true;
+            bufferLock.notifyAll();
+        }
+        try {
+            flusher.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (channelLock) {
+            flushPending();
+            channel.close();
+        }
+    }
+
+    private void flushLoop() {
+        try {
+            while (awaitBatch()) {
+                synchronized (channelLock) {
+                    flushPending();
+                }
+            }
+        } catch (IOException e) {
+            logger.error("Journal write failed, further updates will be rejected", e);
+            TourGuideMetrics.recordError("journal", e);
+            synchronized (bufferLock) {
+                failure = e;
+                bufferLock.notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Attend un lot à écrire : dès le premier enregistrement, on laisse le lot grossir pendant l'intervalle
+     * de validation, sauf si le tampon se remplit ou si un écrivain attend la durabilité.
+     *
+     * @return {@code false} une fois le journal fermé (le reliquat est écrit par {@link #close()}).
+     */
+    private boolean awaitBatch() {
+        synchronized (bufferLock) {
+            while (active.position() == 0 && !closed) {
+                awaitQuietly();
+            }
+            long deadline = System.nanoTime() + commitIntervalNanos;
+            long remaining;
+            while (!closed && syncRequests == 0 && active.position() < flushThreshold
+                    && (remaining = deadline - System.nanoTime()) > 0) {
+                try {
+                    TimeUnit.NANOSECONDS.timedWait(bufferLock, remaining);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return false;
+                }
+            }
+            return !closed;
+        }
+    }
+
+    private void flushPending() throws IOException {
+        ByteBuffer batch;
+        long batchEnd;
+        synchronized (bufferLock) {
+            if (active.position() == 0) {
+                return;
+            }
+            batch = active;
+            active = standby;
+            standby = batch;
+            batchEnd = appended;
+            // Réveille les écrivains bloqués sur un tampon plein.
+            bufferLock.notifyAll();
+        }
+        long start = System.nanoTime();
+        batch.flip();
+        while (batch.hasRemaining()) {
+            channel.write(batch);
+        }
+        channel.force(false);
+        batch.clear();
+        commitTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        synchronized (bufferLock) {
+            durable = batchEnd;
+            bufferLock.notifyAll();
+        }
+    }
+
+    private void checkUsable() {
+        if (failure != null) {
+            throw new UncheckedIOException("Journal is unavailable", failure);
+        }
+        if (closed) {
+            throw new IllegalStateException("Journal is closed");
+        }
+    }
+
+    private void awaitQuietly() {
+        try {
+            bufferLock.wait();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for the journal", e);
+        }
+    }
+
+    private static FileChannel openSegment(Path directory, long segment) throws IOException {
+        return FileChannel.open(segmentFile(directory, segment),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    }
+}
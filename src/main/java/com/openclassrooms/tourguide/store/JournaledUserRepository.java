@@ -0,0 +1,412 @@
+package com.openclassrooms.tourguide.store;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import gpsUtil.location.Attraction;
+import gpsUtil.location.Location;
+import gpsUtil.location.VisitedLocation;
+
+import com.openclassrooms.tourguide.metrics.TourGuideMetrics;
+import com.openclassrooms.tourguide.user.User;
+import com.openclassrooms.tourguide.user.UserChangeListener;
+import com.openclassrooms.tourguide.user.UserReward;
+
+/**
+ * Utilisateurs en mémoire, rendus durables par un journal des modifications et des instantanés périodiques.
+ * <p>
+ * Chaque ajout d'utilisateur, de position ou de récompense et chaque changement de profil est ajouté au journal
+ * ({@link JournalWriter}, validation groupée). Un instantané recopie régulièrement tous les utilisateurs, après
+ * avoir ouvert un nouveau segment de journal : les segments précédents sont alors supprimés.
+ * <p>
+ * L'instantané est pris sans arrêter les écritures ; il peut donc déjà contenir une partie des événements du
+ * segment suivant. La relecture les reconnaît : une position n'est rejouée que si sa séquence dépasse celle de
+ * l'historique copié, et les récompenses (par attraction) comme les profils sont idempotents.
+ * <p>
+ * Au démarrage, le dernier instantané est décodé en parallèle, puis les segments suivants sont rejoués en parallèle
+ * par partitions d'utilisateurs (l'ordre des événements d'un même utilisateur est conservé). Un nouvel instantané
+ * est aussitôt écrit pour repartir d'un journal vide.
+ * <p>
+ * L'ordre d'ajout, sur lequel reposent les pages de {@link #page}, survit au redémarrage : l'instantané est écrit
+ * dans cet ordre, et les utilisateurs du journal sont décodés en parallèle mais ajoutés dans l'ordre du journal.
+ */
+public class JournaledUserRepository implements UserRepository {
+    private static final Logger logger = LoggerFactory.getLogger(JournaledUserRepository.class);
+    private static final Pattern SEGMENT_FILE = Pattern.compile("journal-(\\d+)\\.log");
+    private static final Pattern SNAPSHOT_FILE = Pattern.compile("snapshot-(\\d+)\\.bin");
+    private static final int JOURNAL_BUFFER_SIZE = 4 * 1024 * 1024;
+    private static final int REPLAY_BATCH_SIZE = 65_536;
+    private static final int SNAPSHOT_PAGE_SIZE = 4096;
+
+    private final Path directory;
+    private final InMemoryUserRepository users = new InMemoryUserRepository();
+    private final Function<String, Attraction> attractionResolver;
+    private final UserChangeListener journalListener = new JournalListener();
+    // Un tampon d'encodage par thread écrivain : l'encodage se fait hors du verrou du journal.
+    private final ThreadLocal<JournalCodec.Encoder> encoders =
+            ThreadLocal.withInitial(() -> new JournalCodec.Encoder(1024));
+    private final Object snapshotLock = new Object();
+    // Ajout en mémoire et écriture de USER_ADDED dans le même ordre pour tous les ajouts concurrents.
+    private final Object addLock = new Object();
+    private JournalWriter writer;
+    private ScheduledExecutorService snapshotScheduler;
+
+    private JournaledUserRepository(Path directory, Function<String, Attraction> attractionResolver) {
+        this.directory = directory;
+        this.attractionResolver = attractionResolver;
+    }
+
+    /**
+     * Ouvre le journal du répertoire donné (ou l'y crée) et restaure les utilisateurs qu'il contient.
+     *
+     * @param commitInterval     délai maximal de regroupement des écritures : borne la perte en cas d'arrêt brutal.
+     * @param snapshotInterval   période des instantanés ({@link Duration#ZERO} : seulement au démarrage).
+     * @param attractionResolver retrouve une attraction du catalogue par son nom, pour les récompenses relues.
+     */
+    public static JournaledUserRepository open(Path directory, Duration commitInterval, Duration snapshotInterval,
+                                               Function<String, Attraction> attractionResolver) throws IOException {
+        Files.createDirectories(directory);
+        JournaledUserRepository repository = new JournaledUserRepository(directory, attractionResolver);
+        long nextSegment = repository.recover();
+        repository.writeSnapshot(nextSegment);
+        repository.deleteObsoleteFiles(nextSegment);
+        repository.users.iterator().forEachRemaining(user -> user.setChangeListener(repository.journalListener));
+        repository.writer = new JournalWriter(directory, nextSegment, JOURNAL_BUFFER_SIZE, commitInterval);
+        if (!snapshotInterval.isZero()) {
+            repository.snapshotScheduler = Executors.newSingleThreadScheduledExecutor(
+                    Thread.ofPlatform().name("journal-snapshot").daemon().factory());
+            repository.snapshotScheduler.scheduleWithFixedDelay(repository::scheduledSnapshot,
+                    snapshotInterval.toMillis(), snapshotInterval.toMillis(), TimeUnit.MILLISECONDS);
+        }
+        return repository;
+    }
+
+    @Override
+    public User get(String userName) {
+        return users.get(userName);
+    }
+
+    @Override
+    public boolean add(User user) {
+        // Verrou de l'utilisateur tenu jusqu'à l'écriture de USER_ADDED : une modification faite dès qu'il est visible
+        // attend ce verrou dans le listener, et son événement suit toujours USER_ADDED dans le journal.
+        synchronized (addLock) {
+            synchronized (user) {
+                if (!users.add(user)) {
+                    return false;
+                }
+                user.setChangeListener(journalListener);
+                // L'état complet est journalisé après le branchement : rien de ce qui précède ne peut être manqué.
+                JournalCodec.Encoder encoder = encoders.get().beginFrame(JournalCodec.USER_ADDED, user.getUserName());
+                JournalCodec.encodeUser(encoder, user);
+                writer.append(encoder.endFrame());
+                return true;
+            }
+        }
+    }
+
+    @Override
+    public int size() {
+        return users.size();
+    }
+
+    @Override
+    public Iterator<User> iterator() {
+        return users.iterator();
+    }
+
+    @Override
+    public List<User> page(int from, int limit) {
+        return users.page(from, limit);
+    }
+
+    /**
+     * Attend que toutes les modifications journalisées jusqu'ici soient sur disque.
+     */
+    public void sync() {
+        writer.sync();
+    }
+
+    /**
+     * Écrit un instantané de tous les utilisateurs et supprime les segments de journal qu'il couvre.
+     */
+    public void snapshot() throws IOException {
+        synchronized (snapshotLock) {
+            long segment = writer.rotate();
+            writeSnapshot(segment);
+            deleteObsoleteFiles(segment);
+        }
+    }
+
+    @Override
+    public void close() {
+        if (snapshotScheduler != null) {
+            snapshotScheduler.shutdownNow();
+        }
+        synchronized (snapshotLock) {
+            try {
+                writer.close();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    private void scheduledSnapshot() {
+        try {
+            long start = System.nanoTime();
+            snapshot();
+            logger.debug("Snapshot of {} users written in {} ms", users.size(),
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        } catch (IOException | RuntimeException e) {
+            // Le journal reste complet : l'instantané suivant retentera la compaction.
+            logger.error("Snapshot failed", e);
+            TourGuideMetrics.recordError("journal", e);
+        }
+    }
+
+    /**
+     * Restaure le dernier instantané puis rejoue les segments de journal suivants.
+     *
+     * @return le numéro du prochain segment de journal.
+     */
+    private long recover() throws IOException {
+        long start = System.nanoTime();
+        List<Long> snapshots = numberedFiles(SNAPSHOT_FILE);
+        List<Long> segments = numberedFiles(SEGMENT_FILE);
+        long firstSegment = snapshots.isEmpty() ? 0 : snapshots.get(snapshots.size() - 1);
+        Map<String, Long> locationFloors = new ConcurrentHashMap<>();
+        if (!snapshots.isEmpty()) {
+            UserSnapshotFile.read(snapshotFile(firstSegment), attractionResolver, (user, locationSequence) -> {
+                users.add(user);
+                locationFloors.put(user.getUserName(), locationSequence);
+            });
+        }
+        long lastSegment = firstSegment;
+        for (long segment : segments) {
+            if (segment >= firstSegment) {
+                replaySegment(JournalWriter.segmentFile(directory, segment), locationFloors);
+            }
+            lastSegment = Math.max(lastSegment, segment);
+        }
+        if (!snapshots.isEmpty() || !segments.isEmpty()) {
+            logger.info("Recovered {} users from {} in {} ms", users.size(), directory,
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        }
+        return lastSegment + 1;
+    }
+
+    private void replaySegment(Path file, Map<String, Long> locationFloors) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            int partitions = Runtime.getRuntime().availableProcessors();
+            List<ByteBuffer> additions = new ArrayList<>();
+            List<List<ByteBuffer>> batch = new ArrayList<>(partitions);
+            for (int i = 0; i < partitions; i++) {
+                batch.add(new ArrayList<>());
+            }
+            int batched = 0;
+            ByteBuffer payload;
+            while ((payload = JournalCodec.nextFrame(buffer)) != null) {
+                if (payload.get(payload.position()) == JournalCodec.USER_ADDED) {
+                    additions.add(payload);
+                } else {
+                    // Les événements d'un même utilisateur vont dans la même partition, dans l'ordre du journal.
+                    String userName = JournalCodec.getString(payload.duplicate().position(1));
+                    batch.get(Math.floorMod(userName.hashCode(), partitions)).add(payload);
+                }
+                if (++batched == REPLAY_BATCH_SIZE) {
+                    applyBatch(additions, batch, locationFloors);
+                    batched = 0;
+                }
+            }
+            applyBatch(additions, batch, locationFloors);
+            if (buffer.hasRemaining()) {
+                // Fin de fichier incomplète : dernière écriture interrompue par un arrêt brutal.
+                logger.warn("Ignoring {} trailing bytes of {}", buffer.remaining(), file);
+            }
+        }
+    }
+
+    /**
+     * Ajoute d'abord les utilisateurs du lot, décodés en parallèle mais ajoutés dans l'ordre du journal, puis rejoue
+     * les autres événements par partition : ceux d'un utilisateur suivent toujours son ajout dans le journal.
+     */
+    private void applyBatch(List<ByteBuffer> additions, List<List<ByteBuffer>> batch,
+            Map<String, Long> locationFloors) {
+        JournalCodec.DecodedUser[] decoded = new JournalCodec.DecodedUser[additions.size()];
+        IntStream.range(0, decoded.length).parallel().forEach(i -> {
+            ByteBuffer event = additions.get(i).position(1);
+            JournalCodec.getString(event);
+            decoded[i] = JournalCodec.decodeUser(event, attractionResolver);
+        });
+        for (JournalCodec.DecodedUser user : decoded) {
+            if (users.add(user.user())) {
+                locationFloors.put(user.user().getUserName(), user.locationSequence());
+            }
+        }
+        additions.clear();
+        batch.parallelStream().forEach(events -> {
+            for (ByteBuffer event : events) {
+                apply(event, locationFloors);
+            }
+            events.clear();
+        });
+    }
+
+    private void apply(ByteBuffer event, Map<String, Long> locationFloors) {
+        byte type = event.get();
+        String userName = JournalCodec.getString(event);
+        User user = users.get(userName);
+        if (user == null) {
+            return;
+        }
+        long locationFloor = locationFloors.getOrDefault(userName, 0L);
+        switch (type) {
+            case JournalCodec.LOCATION_ADDED -> {
+                long sequence = event.getLong();
+                Location location = new Location(event.getDouble(), event.getDouble());
+                Date timeVisited = new Date(event.getLong());
+                if (sequence >= locationFloor) {
+                    user.addToVisitedLocations(new VisitedLocation(user.getUserId(), location, timeVisited));
+                }
+            }
+            case JournalCodec.LOCATIONS_CLEARED -> {
+                if (event.getLong() >= locationFloor) {
+                    user.clearVisitedLocations();
+                }
+            }
+            case JournalCodec.REWARD_ADDED -> user.addUserReward(
+                    JournalCodec.decodeReward(event, user.getUserId(), attractionResolver));
+            case JournalCodec.PROFILE_CHANGED -> JournalCodec.applyProfile(event, user);
+            default -> throw new IllegalStateException("Unknown journal event type " + type);
+        }
+    }
+
+    /**
+     * Écrit l'instantané couvrant tous les segments antérieurs à {@code segment}, dans l'ordre d'ajout.
+     */
+    private void writeSnapshot(long segment) throws IOException {
+        UserSnapshotFile.write(snapshotFile(segment), new Iterator<>() {
+            private List<User> page = List.of();
+            private int from;
+            private int index;
+
+            @Override
+            public boolean hasNext() {
+                if (index == page.size()) {
+                    from += page.size();
+                    page = users.page(from, SNAPSHOT_PAGE_SIZE);
+                    index = 0;
+                }
+                return index < page.size();
+            }
+
+            @Override
+            public User next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return page.get(index++);
+            }
+        });
+    }
+
+    private void deleteObsoleteFiles(long segment) throws IOException {
+        for (long older : numberedFiles(SEGMENT_FILE)) {
+            if (older < segment) {
+                Files.deleteIfExists(JournalWriter.segmentFile(directory, older));
+            }
+        }
+        for (long older : numberedFiles(SNAPSHOT_FILE)) {
+            if (older < segment) {
+                Files.deleteIfExists(snapshotFile(older));
+            }
+        }
+    }
+
+    private List<Long> numberedFiles(Pattern pattern) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.map(file -> pattern.matcher(file.getFileName().toString()))
+                    .filter(Matcher::matches)
+                    .map(matcher -> Long.parseLong(matcher.group(1)))
+                    .sorted()
+                    .toList();
+        }
+    }
+
+    private Path snapshotFile(long segment) {
+        return directory.resolve(String.format("snapshot-%08d.bin", segment));
+    }
+
+    /**
+     * Journalise chaque modification d'un utilisateur suivi, sous le verrou de l'utilisateur pris par {@link #add}.
+     */
+    private final class JournalListener implements UserChangeListener {
+
+        @Override
+        public void locationAdded(User user, long sequence, double latitude, double longitude, long timeMillis) {
+            synchronized (user) {
+                JournalCodec.Encoder encoder = encoders.get().beginFrame(JournalCodec.LOCATION_ADDED, user.getUserName());
+                encoder.putLong(sequence);
+                encoder.putDouble(latitude);
+                encoder.putDouble(longitude);
+                encoder.putLong(timeMillis);
+                writer.append(encoder.endFrame());
+            }
+        }
+
+        @Override
+        public void locationsCleared(User user, long sequence) {
+            synchronized (user) {
+                JournalCodec.Encoder encoder = encoders.get().beginFrame(JournalCodec.LOCATIONS_CLEARED,
+                        user.getUserName());
+                encoder.putLong(sequence);
+                writer.append(encoder.endFrame());
+            }
+        }
+
+        @Override
+        public void rewardAdded(User user, UserReward userReward) {
+            synchronized (user) {
+                JournalCodec.Encoder encoder = encoders.get().beginFrame(JournalCodec.REWARD_ADDED, user.getUserName());
+                JournalCodec.encodeReward(encoder, userReward);
+                writer.append(encoder.endFrame());
+            }
+        }
+
+        @Override
+        public void profileChanged(User user) {
+            synchronized (user) {
+                JournalCodec.Encoder encoder = encoders.get().beginFrame(JournalCodec.PROFILE_CHANGED, user.getUserName());
+                JournalCodec.encodeProfile(encoder, user);
+                writer.append(encoder.endFrame());
+            }
+        }
+    }
+}
@@ -0,0 +1,383 @@
+package com.openclassrooms.tourguide.store;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Function;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import gpsUtil.location.Attraction;
+
+import com.openclassrooms.tourguide.user.User;
+import com.openclassrooms.tourguide.user.UserChangeListener;
+import com.openclassrooms.tourguide.user.UserReward;
+
+/**
+ * Stockage persistant des utilisateurs dans deux fichiers projetés en mémoire :
+ * <ul>
+ * <li>{@code users.dat} : un enregistrement de taille fixe par utilisateur ({@link UserRecords}),
+ * projeté par segments de 64 Mo à la première utilisation ;</li>
+ * <li>{@code users.idx} : table de hachage à adressage ouvert, du nom d'utilisateur vers le numéro
+ * d'enregistrement, dimensionnée une fois pour toutes d'après la capacité.</li>
+ * </ul>
+ * L'ouverture ne lit rien : un utilisateur n'est reconstruit en mémoire qu'à son premier accès, puis partagé tant
+ * qu'il est référencé (références faibles). Chaque modification d'un utilisateur est aussitôt recopiée dans son
+ * enregistrement ; les pages modifiées sont écrites sur disque par le système, y compris si le processus s'arrête
+ * brutalement.
+ * <p>
+ * Les lectures de l'index sont sans verrou ; les ajouts sont sérialisés et publient l'entrée d'index
+ * après l'enregistrement.
+ */
+public class MappedUserRepository implements UserRepository {
+    /**
+     * Nombre maximal de récompenses par utilisateur : l'enregistrement de taille fixe n'en contient pas plus.
+     */
+    public static final int MAX_REWARDS_PER_USER = UserRecords.REWARD_SLOTS;
+
+    private static final Logger logger = LoggerFactory.getLogger(MappedUserRepository.class);
+    private static final long MAGIC = 0x546f757247756964L;
+    private static final long VERSION = 1;
+    private static final int HEADER_SIZE = 64;
+    private static final int CAPACITY_OFFSET = 16;
+    private static final int SIZE_OFFSET = 24;
+    private static final int RECORDS_PER_SEGMENT = 16_384;
+    private static final long SEGMENT_SIZE = (long) RECORDS_PER_SEGMENT * UserRecords.RECORD_SIZE;
+    // Index de 1 Go au plus : un seul MappedByteBuffer suffit.
+    private static final int MAX_CAPACITY = 1 << 26;
+    private static final int LOCK_STRIPES = 256;
+    private static final VarHandle LONGS = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.BIG_ENDIAN);
+
+    private final FileChannel indexChannel;
+    private final FileChannel dataChannel;
+    private final MappedByteBuffer index;
+    private final int capacity;
+    private final int slotMask;
+    private final AtomicReferenceArray<MappedByteBuffer> segments;
+    private final Object insertLock = new Object();
+    private final Object[] recordLocks = new Object[LOCK_STRIPES];
+    // Utilisateurs actuellement en mémoire : une seule instance par enregistrement tant qu'elle est référencée.
+    private final Cache<Integer, User> liveUsers = Caffeine.newBuilder().weakValues().build();
+    private final Function<String, Attraction> attractionResolver;
+
+    private MappedUserRepository(FileChannel indexChannel, FileChannel dataChannel, MappedByteBuffer index,
+                                 int capacity, Function<String, Attraction> attractionResolver) {
+        this.indexChannel = indexChannel;
+        this.dataChannel = dataChannel;
+        this.index = index;
+        this.capacity = capacity;
+        this.slotMask = slotCount(capacity) - 1;
+        this.segments = new AtomicReferenceArray<>((capacity + RECORDS_PER_SEGMENT - 1) / RECORDS_PER_SEGMENT);
+        this.attractionResolver = attractionResolver;
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            recordLocks[i] = new Object();
+        }
+    }
+
+    /**
+     * Ouvre le stockage du répertoire donné, ou l'y crée.
+     *
+     * @param capacity           nombre maximal d'utilisateurs, pris en compte à la création seulement.
+     * @param attractionResolver retrouve une attraction du catalogue par son nom, pour les récompenses relues.
+     */
+    public static MappedUserRepository open(Path directory, int capacity,
+                                            Function<String, Attraction> attractionResolver) throws IOException {
+        Files.createDirectories(directory);
+        FileChannel indexChannel = FileChannel.open(directory.resolve("users.idx"),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        FileChannel dataChannel = FileChannel.open(directory.resolve("users.dat"),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            boolean created = indexChannel.size() == 0;
+            if (!created) {
+                MappedByteBuffer header = indexChannel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE);
+                if (header.getLong(0) != MAGIC || header.getLong(8) != VERSION) {
+                    throw new IOException("Not a user store (or unsupported version): " + directory);
+                }
+                capacity = (int) header.getLong(CAPACITY_OFFSET);
+            } else if (capacity <= 0 || capacity > MAX_CAPACITY) {
+                throw new IllegalArgumentException("Invalid user store capacity: " + capacity);
+            }
+            MappedByteBuffer index = indexChannel.map(FileChannel.MapMode.READ_WRITE, 0,
+                    HEADER_SIZE + (long) slotCount(capacity) * Long.BYTES);
+            if (created) {
+                index.putLong(0, MAGIC);
+                index.putLong(8, VERSION);
+                index.putLong(CAPACITY_OFFSET, capacity);
+            }
+            MappedUserRepository repository = new MappedUserRepository(indexChannel, dataChannel, index, capacity,
+                    attractionResolver);
+            logger.info("Opened user store {} ({} users, capacity {})", directory, repository.size(), capacity);
+            return repository;
+        } catch (IOException | RuntimeException e) {
+            indexChannel.close();
+            dataChannel.close();
+            throw e;
+        }
+    }
+
+    @Override
+    public User get(String userName) {
+        int recordIndex = find(userName, hash(userName));
+        return recordIndex < 0 ? null : materialize(recordIndex);
+    }
+
+    /**
+     * @throws IllegalStateException si la capacité du stockage est atteinte.
+     */
+    @Override
+    public boolean add(User user) {
+        String userName = user.getUserName();
+        int hash = hash(userName);
+        int recordIndex;
+        synchronized (insertLock) {
+            if (find(userName, hash) >= 0) {
+                return false;
+            }
+            recordIndex = size();
+            if (recordIndex >= capacity) {
+                throw new IllegalStateException("User store is full (" + capacity + " users)");
+            }
+            synchronized (lockFor(recordIndex)) {
+                // Le stockage suit l'utilisateur dès maintenant : une modification concurrente attend la fin de l'écriture.
+                user.setChangeListener(new RecordWriter(recordIndex));
+                try {
+                    UserRecords.write(segment(recordIndex), recordOffset(recordIndex), user);
+                } catch (RuntimeException e) {
+                    user.setChangeListener(UserChangeListener.NONE);
+                    throw e;
+                }
+            }
+            int slot = hash & slotMask;
+            while ((long) LONGS.getAcquire(index, slotOffset(slot)) != 0) {
+                slot = (slot + 1) & slotMask;
+            }
+            LONGS.setRelease(index, slotOffset(slot), ((long) hash << 32) | (recordIndex + 1L));
+            LONGS.setRelease(index, SIZE_OFFSET, recordIndex + 1L);
+        }
+        liveUsers.put(recordIndex, user);
+        return true;
+    }
+
+    @Override
+    public int size() {
+        return (int) (long) LONGS.getAcquire(index, SIZE_OFFSET);
+    }
+
+    @Override
+    public Iterator<User> iterator() {
+        return new Iterator<>() {
+            private int next;
+
+            @Override
+            public boolean hasNext() {
+                return next < size();
+            }
+
+            @Override
+            public User next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return materialize(next++);
+            }
+        };
+    }
+
+    /**
+     * Parcours des numéros d'enregistrement : seul le nom est lu, aucun utilisateur n'est reconstruit.
+     */
+    @Override
+    public Iterator<String> userNames() {
+        return new Iterator<>() {
+            private int next;
+
+            @Override
+            public boolean hasNext() {
+                return next < size();
+            }
+
+            @Override
+            public String next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                int recordIndex = next++;
+                return UserRecords.readUserName(segment(recordIndex), recordOffset(recordIndex));
+            }
+        };
+    }
+
+    /**
+     * Les positions sont les numéros d'enregistrement, attribués dans l'ordre d'ajout.
+     */
+    @Override
+    public List<User> page(int from, int limit) {
+        int end = (int) Math.min(size(), (long) from + limit);
+        List<User> page = new ArrayList<>(Math.max(0, end - from));
+        for (int recordIndex = from; recordIndex < end; recordIndex++) {
+            page.add(materialize(recordIndex));
+        }
+        return page;
+    }
+
+    /**
+     * Force l'écriture sur disque des pages modifiées.
+     */
+    public void flush() {
+        index.force();
+        for (int i = 0; i < segments.length(); i++) {
+            MappedByteBuffer segment = segments.get(i);
+            if (segment != null) {
+                segment.force();
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        flush();
+        try {
+            indexChannel.close();
+            dataChannel.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private int find(String userName, int hash) {
+        for (int slot = hash & slotMask; ; slot = (slot + 1) & slotMask) {
+            long entry = (long) LONGS.getAcquire(index, slotOffset(slot));
+            if (entry == 0) {
+                return -1;
+            }
+            int recordIndex = (int) entry - 1;
+            if ((int) (entry >>> 32) == hash
+                    && UserRecords.hasUserName(segment(recordIndex), recordOffset(recordIndex), userName)) {
+                return recordIndex;
+            }
+        }
+    }
+
+    private User materialize(int recordIndex) {
+        return liveUsers.get(recordIndex, this::load);
+    }
+
+    private User load(int recordIndex) {
+        synchronized (lockFor(recordIndex)) {
+            User user = UserRecords.read(segment(recordIndex), recordOffset(recordIndex), attractionResolver);
+            // Branché après la relecture : reconstruire l'utilisateur ne réécrit pas son enregistrement.
+            user.setChangeListener(new RecordWriter(recordIndex));
+            return user;
+        }
+    }
+
+    private MappedByteBuffer segment(int recordIndex) {
+        int segmentIndex = recordIndex / RECORDS_PER_SEGMENT;
+        MappedByteBuffer segment = segments.get(segmentIndex);
+        if (segment != null) {
+            return segment;
+        }
+        synchronized (segments) {
+            segment = segments.get(segmentIndex);
+            if (segment == null) {
+                try {
+                    // La projection agrandit le fichier si besoin ; les pages jamais écrites ne consomment pas de disque.
+                    segment = dataChannel.map(FileChannel.MapMode.READ_WRITE, segmentIndex * SEGMENT_SIZE, SEGMENT_SIZE);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                segments.set(segmentIndex, segment);
+            }
+            return segment;
+        }
+    }
+
+    private Object lockFor(int recordIndex) {
+        return recordLocks[recordIndex & (LOCK_STRIPES - 1)];
+    }
+
+    private static int recordOffset(int recordIndex) {
+        return (recordIndex % RECORDS_PER_SEGMENT) * UserRecords.RECORD_SIZE;
+    }
+
+    private static int slotOffset(int slot) {
+        return HEADER_SIZE + slot * Long.BYTES;
+    }
+
+    /**
+     * Nombre d'entrées de l'index : puissance de deux, au moins le double de la capacité (remplissage ≤ 50 %).
+     */
+    private static int slotCount(int capacity) {
+        return Integer.highestOneBit(Math.max(1, capacity - 1)) << 2;
+    }
+
+    private static int hash(String userName) {
+        int hash = userName.hashCode();
+        return hash ^ (hash >>> 16);
+    }
+
+    /**
+     * Recopie dans l'enregistrement chaque modification de l'utilisateur en mémoire.
+     */
+    private final class RecordWriter implements UserChangeListener {
+        private final int recordIndex;
+
+        private RecordWriter(int recordIndex) {
+            this.recordIndex = recordIndex;
+        }
+
+        @Override
+        public void locationAdded(User user, long sequence, double latitude, double longitude, long timeMillis) {
+            synchronized (lockFor(recordIndex)) {
+                UserRecords.appendLocation(segment(recordIndex), recordOffset(recordIndex), latitude, longitude,
+                        timeMillis);
+            }
+        }
+
+        @Override
+        public void locationsCleared(User user, long sequence) {
+            synchronized (lockFor(recordIndex)) {
+                UserRecords.clearLocations(segment(recordIndex), recordOffset(recordIndex));
+            }
+        }
+
+        /**
+         * Une récompense qui ne tient pas dans l'enregistrement est refusée : {@link User#addUserReward} l'annule.
+         */
+        @Override
+        public void rewardAdded(User user, UserReward userReward) {
+            synchronized (lockFor(recordIndex)) {
+                UserRecords.appendReward(segment(recordIndex), recordOffset(recordIndex), userReward);
+            }
+        }
+
+        @Override
+        public int rewardCapacity() {
+            return MAX_REWARDS_PER_USER;
+        }
+
+        @Override
+        public void profileChanged(User user) {
+            synchronized (lockFor(recordIndex)) {
+                UserRecords.writeProfile(segment(recordIndex), recordOffset(recordIndex), user);
+            }
+        }
+    }
+}
@@ -0,0 +1,201 @@
+package com.openclassrooms.tourguide.store;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Date;
+import java.util.UUID;
+import java.util.function.Function;
+
+import gpsUtil.location.Attraction;
+import gpsUtil.location.Location;
+import gpsUtil.location.VisitedLocation;
+
+import com.openclassrooms.tourguide.user.User;
+import com.openclassrooms.tourguide.user.UserPreferences;
+import com.openclassrooms.tourguide.user.UserReward;
+
+/**
+ * Format des enregistrements de taille fixe du {@link MappedUserRepository} : un utilisateur par bloc de 4 Ko
+ * (identité, préférences, tampon circulaire des dernières positions et récompenses obtenues).
+ * <p>
+ * Les méthodes n'utilisent que des accès absolus au tampon : plusieurs enregistrements d'un même segment
+ * peuvent être lus et écrits en parallèle. L'appelant sérialise les accès à un même enregistrement.
+ */
+final class UserRecords {
+    static final int RECORD_SIZE = 4096;
+    static final int LOCATION_SLOTS = User.VISITED_LOCATIONS_CAPACITY;
+    static final int REWARD_SLOTS = 32;
+
+    private static final int USER_ID = 8;
+    private static final int USER_NAME = 24;
+    private static final int USER_NAME_BYTES = 62;
+    private static final int PHONE_NUMBER = 88;
+    private static final int PHONE_NUMBER_BYTES = 30;
+    private static final int EMAIL_ADDRESS = 120;
+    private static final int EMAIL_ADDRESS_BYTES = 126;
+    private static final int LATEST_LOCATION_TIME = 248;
+    private static final int PREFERENCES = 256;
+    // Nombre total de positions écrites, et séquence à partir de laquelle elles sont visibles (effacement).
+    private static final int LOCATION_SEQUENCE = 280;
+    private static final int LOCATION_CLEARED = 288;
+    private static final int LOCATIONS = 296;
+    private static final int LOCATION_SIZE = 24;
+    private static final int REWARD_COUNT = 1016;
+    private static final int REWARDS = 1024;
+    private static final int REWARD_SIZE = 96;
+    private static final int REWARD_POINTS = 24;
+    private static final int REWARD_ATTRACTION = 28;
+    private static final int REWARD_ATTRACTION_BYTES = 66;
+    private static final long NO_TIME = Long.MIN_VALUE;
+
+    private UserRecords() {
+    }
+
+    /**
+     * Écrit un nouvel enregistrement à partir de l'état courant de l'utilisateur.
+     *
+     * @throws IllegalArgumentException si le nom, le téléphone, l'email ou le nom d'une attraction récompensée
+     *                                  ne tiennent pas dans leur champ.
+     * @throws IllegalStateException si l'utilisateur a plus de récompenses que l'enregistrement n'en contient.
+     */
+    static void write(ByteBuffer buffer, int offset, User user) {
+        byte[] userName = encode(user.getUserName(), USER_NAME_BYTES, "User name");
+        buffer.putLong(offset + USER_ID, user.getUserId().getMostSignificantBits());
+        buffer.putLong(offset + USER_ID + 8, user.getUserId().getLeastSignificantBits());
+        putString(buffer, offset + USER_NAME, userName);
+        writeProfile(buffer, offset, user);
+
+        buffer.putLong(offset + LOCATION_SEQUENCE, 0);
+        buffer.putLong(offset + LOCATION_CLEARED, 0);
+        for (VisitedLocation visitedLocation : user.getVisitedLocations()) {
+            appendLocation(buffer, offset, visitedLocation.location.latitude, visitedLocation.location.longitude,
+                    visitedLocation.timeVisited.getTime());
+        }
+        buffer.putInt(offset + REWARD_COUNT, 0);
+        for (UserReward userReward : user.getUserRewards()) {
+            appendReward(buffer, offset, userReward);
+        }
+    }
+
+    static void writeProfile(ByteBuffer buffer, int offset, User user) {
+        putString(buffer, offset + PHONE_NUMBER, encode(user.getPhoneNumber(), PHONE_NUMBER_BYTES, "Phone number"));
+        putString(buffer, offset + EMAIL_ADDRESS, encode(user.getEmailAddress(), EMAIL_ADDRESS_BYTES, "Email address"));
+        Date latestLocationTimestamp = user.getLatestLocationTimestamp();
+        buffer.putLong(offset + LATEST_LOCATION_TIME,
+                latestLocationTimestamp == null ? NO_TIME : latestLocationTimestamp.getTime());
+        UserPreferences preferences = user.getUserPreferences();
+        buffer.putInt(offset + PREFERENCES, preferences.getAttractionProximity());
+        buffer.putInt(offset + PREFERENCES + 4, preferences.getTripDuration());
+        buffer.putInt(offset + PREFERENCES + 8, preferences.getTicketQuantity());
+        buffer.putInt(offset + PREFERENCES + 12, preferences.getNumberOfAdults());
+        buffer.putInt(offset + PREFERENCES + 16, preferences.getNumberOfChildren());
+    }
+
+    static void appendLocation(ByteBuffer buffer, int offset, double latitude, double longitude, long timeMillis) {
+        long sequence = buffer.getLong(offset + LOCATION_SEQUENCE);
+        int position = offset + LOCATIONS + (int) (sequence % LOCATION_SLOTS) * LOCATION_SIZE;
+        buffer.putDouble(position, latitude);
+        buffer.putDouble(position + 8, longitude);
+        buffer.putLong(position + 16, timeMillis);
+        buffer.putLong(offset + LOCATION_SEQUENCE, sequence + 1);
+    }
+
+    static void clearLocations(ByteBuffer buffer, int offset) {
+        buffer.putLong(offset + LOCATION_CLEARED, buffer.getLong(offset + LOCATION_SEQUENCE));
+    }
+
+    /**
+     * @throws IllegalStateException si l'enregistrement n'a plus de place pour une récompense.
+     * @throws IllegalArgumentException si le nom de l'attraction ne tient pas dans son champ.
+     */
+    static void appendReward(ByteBuffer buffer, int offset, UserReward userReward) {
+        int count = buffer.getInt(offset + REWARD_COUNT);
+        if (count >= REWARD_SLOTS) {
+            throw new IllegalStateException("User record is full (" + REWARD_SLOTS + " rewards), reward for "
+                    + userReward.attraction.attractionName + " rejected");
+        }
+        byte[] attractionName = encode(userReward.attraction.attractionName, REWARD_ATTRACTION_BYTES,
+                "Attraction name");
+        int position = offset + REWARDS + count * REWARD_SIZE;
+        VisitedLocation visitedLocation = userReward.visitedLocation;
+        buffer.putDouble(position, visitedLocation.location.latitude);
+        buffer.putDouble(position + 8, visitedLocation.location.longitude);
+        buffer.putLong(position + 16, visitedLocation.timeVisited.getTime());
+        buffer.putInt(position + REWARD_POINTS, userReward.getRewardPoints());
+        putString(buffer, position + REWARD_ATTRACTION, attractionName);
+        buffer.putInt(offset + REWARD_COUNT, count + 1);
+    }
+
+    static boolean hasUserName(ByteBuffer buffer, int offset, String userName) {
+        return userName.equals(getString(buffer, offset + USER_NAME));
+    }
+
+    static String readUserName(ByteBuffer buffer, int offset) {
+        return getString(buffer, offset + USER_NAME);
+    }
+
+    /**
+     * Reconstruit l'utilisateur en mémoire. Les attractions des récompenses sont retrouvées par leur nom ;
+     * une attraction disparue du catalogue est recréée à la position de la visite.
+     */
+    static User read(ByteBuffer buffer, int offset, Function<String, Attraction> attractionResolver) {
+        UUID userId = new UUID(buffer.getLong(offset + USER_ID), buffer.getLong(offset + USER_ID + 8));
+        User user = new User(userId, getString(buffer, offset + USER_NAME), getString(buffer, offset + PHONE_NUMBER),
+                getString(buffer, offset + EMAIL_ADDRESS));
+        long latestLocationTime = buffer.getLong(offset + LATEST_LOCATION_TIME);
+        if (latestLocationTime != NO_TIME) {
+            user.setLatestLocationTimestamp(new Date(latestLocationTime));
+        }
+        UserPreferences preferences = new UserPreferences();
+        preferences.setAttractionProximity(buffer.getInt(offset + PREFERENCES));
+        preferences.setTripDuration(buffer.getInt(offset + PREFERENCES + 4));
+        preferences.setTicketQuantity(buffer.getInt(offset + PREFERENCES + 8));
+        preferences.setNumberOfAdults(buffer.getInt(offset + PREFERENCES + 12));
+        preferences.setNumberOfChildren(buffer.getInt(offset + PREFERENCES + 16));
+        user.setUserPreferences(preferences);
+
+        long end = buffer.getLong(offset + LOCATION_SEQUENCE);
+        long start = Math.max(buffer.getLong(offset + LOCATION_CLEARED), end - LOCATION_SLOTS);
+        for (long sequence = start; sequence < end; sequence++) {
+            int position = offset + LOCATIONS + (int) (sequence % LOCATION_SLOTS) * LOCATION_SIZE;
+            user.addToVisitedLocations(new VisitedLocation(userId,
+                    new Location(buffer.getDouble(position), buffer.getDouble(position + 8)),
+                    new Date(buffer.getLong(position + 16))));
+        }
+
+        int rewardCount = buffer.getInt(offset + REWARD_COUNT);
+        for (int i = 0; i < rewardCount; i++) {
+            int position = offset + REWARDS + i * REWARD_SIZE;
+            VisitedLocation visitedLocation = new VisitedLocation(userId,
+                    new Location(buffer.getDouble(position), buffer.getDouble(position + 8)),
+                    new Date(buffer.getLong(position + 16)));
+            String attractionName = getString(buffer, position + REWARD_ATTRACTION);
+            Attraction attraction = attractionResolver.apply(attractionName);
+            if (attraction == null) {
+                attraction = new Attraction(attractionName, "", "", visitedLocation.location.latitude,
+                        visitedLocation.location.longitude);
+            }
+            user.addUserReward(new UserReward(visitedLocation, attraction, buffer.getInt(position + REWARD_POINTS)));
+        }
+        return user;
+    }
+
+    private static byte[] encode(String value, int maxBytes, String field) {
+        byte[] bytes = value == null ? new byte[0] : value.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > maxBytes) {
+            throw new IllegalArgumentException(field + " exceeds " + maxBytes + " bytes: " + value);
+        }
+        return bytes;
+    }
+
+    private static void putString(ByteBuffer buffer, int position, byte[] bytes) {
+        buffer.putShort(position, (short) bytes.length);
+        buffer.put(position + 2, bytes);
+    }
+
+    private static String getString(ByteBuffer buffer, int position) {
+        byte[] bytes = new byte[buffer.getShort(position)];
+        buffer.get(position + 2, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,87 @@
+package com.openclassrooms.tourguide.store;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import com.openclassrooms.tourguide.user.User;
+
+/**
+ * Stockage des utilisateurs, indexé par nom d'utilisateur.
+ * <p>
+ * Les implémentations sont thread-safe : le Tracker, le calcul des récompenses et la couche REST
+ * y accèdent en concurrence.
+ */
+public interface UserRepository extends AutoCloseable {
+
+    /**
+     * @return l'utilisateur, ou {@code null} s'il n'existe pas.
+     */
+    User get(String userName);
+
+    /**
+     * Ajoute l'utilisateur s'il n'existe pas déjà un utilisateur du même nom.
+     *
+     * @return {@code true} si l'utilisateur a été ajouté.
+     */
+    boolean add(User user);
+
+    int size();
+
+    /**
+     * Parcours faiblement cohérent : reflète les ajouts concurrents sans lever d'exception,
+     * et ne permet pas de retirer d'utilisateur.
+     */
+    Iterator<User> iterator();
+
+    /**
+     * Noms des utilisateurs, dans l'ordre de {@link #iterator()}. Un stockage qui ne garde pas ses utilisateurs
+     * en mémoire les lit sans les reconstruire.
+     */
+    default Iterator<String> userNames() {
+        Iterator<User> users = iterator();
+        return new Iterator<>() {
+            @Override
+            public boolean hasNext() {
+                return users.hasNext();
+            }
+
+            @Override
+            public String next() {
+                return users.next().getUserName();
+            }
+        };
+    }
+
+    /**
+     * Utilisateurs aux positions {@code [from, from + limit[} dans l'ordre d'ajout. Les utilisateurs n'étant jamais
+     * retirés, une position reste valable : la page suivante commence à {@code from} plus la taille de celle-ci,
+     * et les utilisateurs ajoutés entre-temps apparaissent en fin de parcours.
+     * <p>
+     * L'implémentation par défaut parcourt les {@code from} premiers utilisateurs ; les stockages l'accèdent
+     * directement à la position.
+     *
+     * @return au plus {@code limit} utilisateurs, liste vide au-delà du dernier.
+     */
+    default List<User> page(int from, int limit) {
+        List<User> page = new ArrayList<>(Math.min(limit, Math.max(0, size() - from)));
+        Iterator<User> users = iterator();
+        for (int skipped = 0; skipped < from && users.hasNext(); skipped++) {
+            users.next();
+        }
+        while (page.size() < limit && users.hasNext()) {
+            page.add(users.next());
+        }
+        return page;
+    }
+
+    default List<User> findAll() {
+        List<User> users = new ArrayList<>(size());
+        iterator().forEachRemaining(users::add);
+        return users;
+    }
+
+    @Override
+    default void close() {
+    }
+}
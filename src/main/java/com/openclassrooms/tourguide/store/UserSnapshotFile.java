@@ -0,0 +1,152 @@
+package com.openclassrooms.tourguide.store;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
+import java.util.function.Function;
+import java.util.function.ObjLongConsumer;
+import java.util.stream.IntStream;
+
+import gpsUtil.location.Attraction;
+
+import com.openclassrooms.tourguide.user.User;
+
+/**
+ * Fichier binaire compact contenant une liste d'utilisateurs complets (identité, préférences, historique
+ * et récompenses) : instantanés du {@link JournaledUserRepository} et jeux d'utilisateurs pré-générés.
+ * <p>
+ * Chaque utilisateur est un bloc préfixé par sa longueur : la relecture repère les blocs séquentiellement,
+ * puis les décode en parallèle. L'en-tête porte le nombre d'utilisateurs et la graine qui les a générés
+ * (jeux pré-générés), pour reconnaître un fichier qui ne correspond plus à la configuration.
+ */
+public final class UserSnapshotFile {
+    private static final long MAGIC = 0x546f757247536e70L;
+    private static final int VERSION = 2;
+    // Version 1 : en-tête sans graine, toujours relu.
+    private static final int VERSION_WITHOUT_SEED = 1;
+    private static final int HEADER_SIZE = 24;
+    private static final int HEADER_SIZE_WITHOUT_SEED = 16;
+    private static final int OUTPUT_BUFFER_SIZE = 1024 * 1024;
+
+    private UserSnapshotFile() {
+    }
+
+    /**
+     * En-tête d'un fichier.
+     *
+     * @param seed graine des utilisateurs générés, 0 pour un instantané.
+     */
+    public record Header(int userCount, long seed) {
+    }
+
+    public static int write(Path file, Iterator<User> users) throws IOException {
+        return write(file, users, 0);
+    }
+
+    /**
+     * Écrit les utilisateurs sous un nom temporaire, renommé une fois le fichier complet et forcé sur disque.
+     *
+     * @param seed graine enregistrée dans l'en-tête.
+     * @return le nombre d'utilisateurs écrits.
+     */
+    public static int write(Path file, Iterator<User> users, long seed) throws IOException {
+        Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+        JournalCodec.Encoder encoder = new JournalCodec.Encoder(4096);
+        ByteBuffer output = ByteBuffer.allocateDirect(OUTPUT_BUFFER_SIZE);
+        int userCount = 0;
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            output.putLong(MAGIC).putInt(VERSION).putInt(0).putLong(seed);
+            while (users.hasNext()) {
+                encoder.beginBlock();
+                JournalCodec.encodeUser(encoder, users.next());
+                ByteBuffer block = encoder.endBlock();
+                if (output.remaining() < block.remaining()) {
+                    drain(channel, output);
+                }
+                if (output.remaining() < block.remaining()) {
+                    // Bloc plus grand que le tampon : écrit directement, le tampon venant d'être vidé.
+                    while (block.hasRemaining()) {
+                        channel.write(block);
+                    }
+                } else {
+                    output.put(block);
+                }
+                userCount++;
+            }
+            drain(channel, output);
+            output.putInt(userCount).flip();
+            channel.write(output, 12);
+            channel.force(true);
+        }
+        Files.move(temporary, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        return userCount;
+    }
+
+    /**
+     * Lit seulement l'en-tête du fichier.
+     */
+    public static Header readHeader(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            while (header.hasRemaining() && channel.read(header) >= 0) {
+                // Lecture jusqu'à la fin de l'en-tête ou du fichier.
+            }
+            return header(header.flip(), file);
+        }
+    }
+
+    /**
+     * Décode les utilisateurs en parallèle, puis les transmet dans l'ordre du fichier, avec la séquence de fin
+     * de leur historique, au consommateur (appelé depuis le thread appelant) : l'ordre d'ajout est conservé.
+     *
+     * @param attractionResolver retrouve une attraction du catalogue par son nom, pour les récompenses relues.
+     * @return le nombre d'utilisateurs lus.
+     */
+    public static int read(Path file, Function<String, Attraction> attractionResolver, ObjLongConsumer<User> consumer)
+            throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            int userCount = header(buffer, file).userCount();
+            // Repérage séquentiel des blocs (simple lecture des longueurs), puis décodage en parallèle.
+            int[] offsets = new int[userCount];
+            int position = buffer.getInt(8) == VERSION_WITHOUT_SEED ? HEADER_SIZE_WITHOUT_SEED : HEADER_SIZE;
+            for (int i = 0; i < userCount; i++) {
+                offsets[i] = position;
+                position += Integer.BYTES + buffer.getInt(position);
+            }
+            JournalCodec.DecodedUser[] decoded = new JournalCodec.DecodedUser[userCount];
+            IntStream.range(0, userCount).parallel().forEach(i -> {
+                ByteBuffer block = buffer.slice(offsets[i] + Integer.BYTES, buffer.getInt(offsets[i]));
+                decoded[i] = JournalCodec.decodeUser(block, attractionResolver);
+            });
+            for (JournalCodec.DecodedUser user : decoded) {
+                consumer.accept(user.user(), user.locationSequence());
+            }
+            return userCount;
+        }
+    }
+
+    private static Header header(ByteBuffer buffer, Path file) throws IOException {
+        boolean valid = buffer.limit() >= HEADER_SIZE_WITHOUT_SEED && buffer.getLong(0) == MAGIC
+                && (buffer.getInt(8) == VERSION_WITHOUT_SEED || buffer.getInt(8) == VERSION && buffer.limit() >= HEADER_SIZE);
+        if (!valid) {
+            throw new IOException("Not a user snapshot (or unsupported version): " + file);
+        }
+        return new Header(buffer.getInt(12), buffer.getInt(8) == VERSION ? buffer.getLong(16) : 0);
+    }
+
+    private static void drain(FileChannel channel, ByteBuffer output) throws IOException {
+        output.flip();
+        while (output.hasRemaining()) {
+            channel.write(output);
+        }
+        output.clear();
+    }
+}
@@ -0,0 +1,77 @@
+package com.openclassrooms.tourguide.tracker;
+
+import java.time.Duration;
+
+import gpsUtil.location.Location;
+
+import com.openclassrooms.tourguide.service.RewardsService;
+import com.openclassrooms.tourguide.user.LocationHistory;
+import com.openclassrooms.tourguide.user.User;
+
+/**
+ * Fréquence de suivi adaptée au déplacement de chaque utilisateur, déduite de ses deux dernières positions :
+ * - en déplacement rapide, ou à proximité d'une attraction pas encore récompensée : intervalle minimal,
+ *   pour ne pas retarder les récompenses qui comptent ;
+ * - en déplacement normal : intervalle de base ;
+ * - immobile : l'intervalle double à chaque suivi, jusqu'à l'intervalle maximal.
+ */
+public class AdaptiveTrackingPolicy implements TrackingPolicy {
+    // En dessous de cette distance entre deux positions, l'utilisateur est considéré immobile.
+    private static final double STATIONARY_MILES = 0.1;
+    // Au-delà de cette vitesse (miles par heure), l'utilisateur est considéré en déplacement rapide.
+    private static final double FAST_MILES_PER_HOUR = 30;
+
+    private final RewardsService rewardsService;
+    private final long minIntervalMillis;
+    private final long baseIntervalMillis;
+    private final long maxIntervalMillis;
+
+    public AdaptiveTrackingPolicy(RewardsService rewardsService, Duration minInterval, Duration baseInterval,
+                                  Duration maxInterval) {
+        this.rewardsService = rewardsService;
+        this.minIntervalMillis = minInterval.toMillis();
+        this.baseIntervalMillis = baseInterval.toMillis();
+        this.maxIntervalMillis = maxInterval.toMillis();
+    }
+
+    @Override
+    public long nextIntervalMillis(User user, long previousIntervalMillis) {
+        // Seules les deux dernières positions sont copiées, lues ensuite sous forme primitive.
+        LocationHistory.Snapshot latest = user.getLatestVisitedLocations(2);
+        if (latest.size() < 2) {
+            return baseIntervalMillis;
+        }
+        Location last = new Location(latest.latitude(1), latest.longitude(1));
+        Location previous = new Location(latest.latitude(0), latest.longitude(0));
+
+        if (isNearUnrewardedAttraction(user, last)) {
+            return minIntervalMillis;
+        }
+
+        double miles = rewardsService.getDistance(previous, last);
+        if (miles < STATIONARY_MILES) {
+            // Backoff exponentiel borné, en repartant au moins de l'intervalle de base.
+            return Math.min(Math.max(previousIntervalMillis, baseIntervalMillis) * 2, maxIntervalMillis);
+        }
+        long elapsedMillis = latest.timeMillis(1) - latest.timeMillis(0);
+        if (elapsedMillis > 0 && miles / (elapsedMillis / 3_600_000.0) >= FAST_MILES_PER_HOUR) {
+            return minIntervalMillis;
+        }
+        return baseIntervalMillis;
+    }
+
+    /**
+     * Vrai si une attraction à portée de récompense n'est pas encore récompensée, même si la plus proche l'est déjà.
+     */
+    private boolean isNearUnrewardedAttraction(User user, Location location) {
+        boolean[] found = new boolean[1];
+        rewardsService.getAttractionIndex().forEachWithin(location, rewardsService.getAttractionProximityRange(),
+                attraction -> {
+                    // Dès la première attraction non récompensée, les suivantes ne sont plus vérifiées.
+                    if (!found[0] && !user.hasRewardFor(attraction.attractionName)) {
+                        found[0] = true;
+                    }
+                });
+        return found[0];
+    }
+}
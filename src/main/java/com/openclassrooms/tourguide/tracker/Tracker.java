@@ -1,28 +1,126 @@
 package com.openclassrooms.tourguide.tracker;
 
+import java.time.Duration;
 import java.util.List;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
-import org.apache.commons.lang3.time.StopWatch;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.openclassrooms.tourguide.cluster.UserPartition;
+import com.openclassrooms.tourguide.metrics.TourGuideMetrics;
 import com.openclassrooms.tourguide.service.TourGuideService;
 import com.openclassrooms.tourguide.user.User;
 
 // Le Tracker est un service d'arrière-plan (Thread) qui met à jour en continu la localisation des utilisateurs.
 public class Tracker extends Thread {
     private final Logger logger = LoggerFactory.getLogger(Tracker.class);
-    // Intervalle de temps entre deux cycles de mise à jour des positions (CINQ minutes).
-    private static final long TRACKING_POLLING_INTERVAL = TimeUnit.MINUTES.toMillis(5);
-    
+    // Intervalle de rafraîchissement de base de chaque utilisateur (CINQ minutes).
+    private static final Duration TRACKING_POLLING_INTERVAL = Duration.ofMinutes(5);
+    // Bornes de la politique adaptative : utilisateurs rapides ou proches d'une attraction / utilisateurs immobiles.
+    private static final Duration MIN_TRACKING_INTERVAL = Duration.ofMinutes(1);
+    private static final Duration MAX_TRACKING_INTERVAL = Duration.ofHours(2);
+    // Granularité de l'ordonnanceur : les suivis sont lancés par petits lots à chaque top.
+    private static final Duration TICK_DURATION = Duration.ofSeconds(1);
+    // Au-delà de ce délai, un utilisateur est compté en échec pour ne pas monopoliser une place de la fenêtre.
+    private static final Duration USER_TRACKING_TIMEOUT = Duration.ofMinutes(2);
+    private static final Duration PROGRESS_LOG_INTERVAL = Duration.ofSeconds(10);
 
     private final TourGuideService tourGuideService;
+    private final TrackingPipeline trackingPipeline;
+    private final TrackingWheel trackingWheel;
+    private final TrackingPolicy trackingPolicy;
+    private final TrackerSettings settings;
+    // Utilisateurs suivis par ce nœud ; les autres restent dans la roue sans être suivis.
+    private final UserPartition partition;
+    private final long intervalMillis;
+    private final long tickMillis;
     private volatile boolean stop = false;
+    // Passe à vrai à la fin du délai de démarrage, quand les utilisateurs existants entrent dans la roue.
+    private volatile boolean started = false;
+    // Retard du dernier top traité par rapport à son heure prévue.
+    private volatile long scheduleLagMillis;
+    // Utilisateurs arrivés à échéance mais pas encore lancés (fenêtre pleine).
+    private final AtomicInteger overdueUsers = new AtomicInteger();
+    // Débit mesuré sur le dernier intervalle de suivi, en utilisateurs par seconde.
+    private volatile double throughput;
+    private final List<Gauge> gauges;
+    private final Counter foreignSkipped = Counter.builder(TourGuideMetrics.TRACKER_FOREIGN_SKIPPED)
+            .description("Due users left to the cluster node that owns them")
+            .register(TourGuideMetrics.registry());
 
     public Tracker(TourGuideService tourGuideService) {
+        this(tourGuideService, TrackerSettings.DEFAULT);
+    }
+
+    public Tracker(TourGuideService tourGuideService, TrackerSettings settings) {
+        this(tourGuideService, settings, UserPartition.standalone());
+    }
+
+    /**
+     * @param partition utilisateurs attribués à ce nœud quand plusieurs instances se partagent le suivi.
+     */
+    public Tracker(TourGuideService tourGuideService, TrackerSettings settings, UserPartition partition) {
+        this(tourGuideService, TRACKING_POLLING_INTERVAL, TICK_DURATION,
+                new AdaptiveTrackingPolicy(tourGuideService.getRewardsService(), MIN_TRACKING_INTERVAL,
+                        TRACKING_POLLING_INTERVAL, MAX_TRACKING_INTERVAL), settings, partition);
+    }
+
+    /**
+     * Tracker à intervalle fixe pour tous les utilisateurs.
+     */
+    public Tracker(TourGuideService tourGuideService, Duration trackingInterval, Duration tickDuration) {
+        this(tourGuideService, trackingInterval, tickDuration, TrackingPolicy.fixed(trackingInterval));
+    }
+
+    /**
+     * @param trackingInterval intervalle sur lequel sont répartis les premiers suivis (et taille de la roue).
+     * @param tickDuration granularité de l'ordonnanceur.
+     * @param trackingPolicy délai entre deux suivis d'un même utilisateur.
+     */
+    public Tracker(TourGuideService tourGuideService, Duration trackingInterval, Duration tickDuration,
+                   TrackingPolicy trackingPolicy) {
+        this(tourGuideService, trackingInterval, tickDuration, trackingPolicy, TrackerSettings.DEFAULT);
+    }
+
+    /**
+     * @param settings délai de démarrage, montée en charge et arrêt.
+     */
+    public Tracker(TourGuideService tourGuideService, Duration trackingInterval, Duration tickDuration,
+                   TrackingPolicy trackingPolicy, TrackerSettings settings) {
+        this(tourGuideService, trackingInterval, tickDuration, trackingPolicy, settings, UserPartition.standalone());
+    }
+
+    public Tracker(TourGuideService tourGuideService, Duration trackingInterval, Duration tickDuration,
+                   TrackingPolicy trackingPolicy, TrackerSettings settings, UserPartition partition) {
+        super("tracker");
         this.tourGuideService = tourGuideService;
+        this.trackingPolicy = trackingPolicy;
+        this.settings = settings;
+        this.partition = partition;
+        // Pendant la montée en charge, la fenêtre part de warmUpConcurrency et s'agrandit à chaque top.
+        this.trackingPipeline = new TrackingPipeline(tourGuideService, settings.concurrencyAfter(0),
+                USER_TRACKING_TIMEOUT, PROGRESS_LOG_INTERVAL);
+        this.intervalMillis = trackingInterval.toMillis();
+        this.tickMillis = tickDuration.toMillis();
+        this.trackingWheel = new TrackingWheel(tickMillis, (int) Math.max(1, intervalMillis / tickMillis),
+                System.currentTimeMillis());
+        this.gauges = registerGauges();
+    }
+
+    /**
+     * Ajoute un nouvel utilisateur à l'ordonnanceur. Avant le démarrage effectif, il n'y a rien à faire :
+     * l'utilisateur sera repris avec les autres à la fin du délai de démarrage.
+     */
+    public void schedule(User user) {
+        if (started) {
+            scheduleFirstTracking(user.getUserName(), System.currentTimeMillis());
+        }
     }
 
     /**
@@ -31,52 +129,171 @@ public class Tracker extends Thread {
     public void stopTracking() {
         stop = true;
         this.interrupt();
+        TourGuideMetrics.remove(gauges);
+        // Le Tracker est le seul utilisateur de sa partition : sa jauge disparaît avec lui.
+        partition.close();
+    }
+
+    /**
+     * Arrêt en douceur : plus aucun suivi n'est lancé, puis les suivis en cours sont attendus
+     * (au plus {@link TrackerSettings#drainTimeout()}).
+     *
+     * @return {@code false} si des suivis étaient encore en cours à l'expiration du délai.
+     */
+    public boolean drain() {
+        long deadline = System.nanoTime() + settings.drainTimeout().toNanos();
+        stopTracking();
+        try {
+            join(Math.max(1, settings.drainTimeout().toMillis()));
+            return trackingPipeline.awaitIdle(Duration.ofNanos(Math.max(0, deadline - System.nanoTime())));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    public int getConcurrencyLimit() {
+        return trackingPipeline.getLimit();
+    }
+
+    public long getScheduleLagMillis() {
+        return scheduleLagMillis;
+    }
+
+    public int getOverdueUserCount() {
+        return overdueUsers.get();
+    }
+
+    public int getScheduledUserCount() {
+        return trackingWheel.getScheduledUsers();
     }
 
     /**
-     * Boucle principale du thread Tracker  – Récupère la liste de tous les utilisateurs.
-     * - Lance le suivi de leur position de façon asynchrone.
-     * - Attend que toutes les tâches de suivi soient terminées avant de recommencer un cycle.
-     * - Fait une pause entre chaque cycle pour limiter la charge.
+     * Boucle principale du thread Tracker : au lieu de suivre tout le monde d'un coup puis de dormir,
+     * chaque utilisateur a sa propre échéance, répartie sur l'intervalle de suivi.
+     * - À chaque top, seuls les utilisateurs arrivés à échéance sont lancés dans la fenêtre de suivi.
+     * - À la fin de son suivi, l'utilisateur est reprogrammé après son échéance précédente, avec le délai choisi par
+     *   la politique de suivi : la charge sur gpsUtil et RewardCentral reste lisse et chaque position respecte ce délai
+     *   tant que le système n'est pas saturé (sinon, le retard et le nombre d'utilisateurs en retard augmentent).
      */
     @Override
     public void run() {
-        StopWatch stopWatch = new StopWatch();
+        try {
+            // Laisse l'application finir de démarrer et servir ses premières requêtes avant la charge du suivi.
+            TimeUnit.MILLISECONDS.sleep(settings.startDelay().toMillis());
+        } catch (InterruptedException e) {
+            logger.debug("Tracker stopped before starting");
+            return;
+        }
+        long now = System.currentTimeMillis();
+        // Un utilisateur ajouté pendant ce parcours peut être programmé deux fois : il est alors suivi
+        // un peu plus souvent, sans autre conséquence.
+        started = true;
+        // Parcours des seuls noms : les utilisateurs d'un stockage sur disque ne sont chargés qu'à leur échéance.
+        tourGuideService.userNameIterator().forEachRemaining(userName -> scheduleFirstTracking(userName, now));
+        long tick = trackingWheel.tickOf(now);
+        long warmUpStart = System.nanoTime();
+        boolean warmingUp = settings.concurrencyAfter(0) < settings.maxConcurrency();
+        long reportStart = System.nanoTime();
+        long completedAtReportStart = trackingPipeline.getCompletedCount();
+        long failedAtReportStart = trackingPipeline.getFailedCount();
         while (true) {
             if (Thread.currentThread().isInterrupted() || stop) {
-                logger.debug("Tracker stopping");
                 break;
             }
-
-            List<User> users = tourGuideService.getAllUsers();
-            logger.debug("Begin Tracker. Tracking {} users.", users.size());
-            stopWatch.start();
-
-            CompletableFuture<?>[] futures = users.stream()
-                    .map(u -> tourGuideService.trackUserLocation(u)
-                            .thenCompose(v -> tourGuideService.getRewardsService().calculateRewards(u))
-                            // Ajout de la gestion d'erreur locale pour ne pas impacter les autres users
-                            .exceptionally(ex -> {
-                                logger.error("Error tracking user {}", u.getUserName(), ex);
-                                return null;
-                            }))
-                    .toArray(CompletableFuture[]::new);
-
-            // On attend que toutes les tâches de tracking soient terminées avant de passer au cycle suivant.
-            // Cela garantit que le système ne surcharge pas si le tracking prend plus de temps que prévu.
-            CompletableFuture.allOf(futures).join();
-
-            stopWatch.stop();
-            logger.debug("Tracker Time Elapsed: {} seconds.", stopWatch.getDuration().toSeconds());
-            stopWatch.reset();
             try {
-                logger.debug("Tracker sleeping");
-                // Pause du thread avant le prochain cycle de mise à jour.
-                TimeUnit.MILLISECONDS.sleep(TRACKING_POLLING_INTERVAL);
+                // Le top t couvre les échéances de [t, t + 1[ : il est traité à sa fin.
+                long tickEnd = (tick + 1) * tickMillis;
+                long wait = tickEnd - System.currentTimeMillis();
+                if (wait > 0) {
+                    TimeUnit.MILLISECONDS.sleep(wait);
+                }
+                scheduleLagMillis = Math.max(0, System.currentTimeMillis() - tickEnd);
+                if (warmingUp) {
+                    trackingPipeline.raiseLimit(settings.concurrencyAfter(System.nanoTime() - warmUpStart));
+                    warmingUp = trackingPipeline.getLimit() < settings.maxConcurrency();
+                    if (!warmingUp) {
+                        logger.debug("Tracker warm-up finished: {} concurrent users", settings.maxConcurrency());
+                    }
+                }
+                dispatch(trackingWheel.drain(tick));
+                tick++;
             } catch (InterruptedException e) {
                 break;
             }
+
+            // Bilan à chaque tour de roue, c'est-à-dire une fois par intervalle de suivi.
+            long elapsed = System.nanoTime() - reportStart;
+            if (elapsed >= TimeUnit.MILLISECONDS.toNanos(intervalMillis)) {
+                long completed = trackingPipeline.getCompletedCount() - completedAtReportStart;
+                long failed = trackingPipeline.getFailedCount() - failedAtReportStart;
+                throughput = completed / (elapsed / 1e9);
+                logger.debug("Tracker: {} users tracked in {} seconds ({} users/s), {} failed, schedule lag {} ms, {} overdue.",
+                        completed, TimeUnit.NANOSECONDS.toSeconds(elapsed), Math.round(throughput),
+                        failed, scheduleLagMillis, overdueUsers.get());
+                reportStart = System.nanoTime();
+                completedAtReportStart += completed;
+                failedAtReportStart += failed;
+            }
         }
+        logger.debug("Tracker stopping");
+    }
+
+    private void dispatch(List<TrackingWheel.Entry> dueUsers) throws InterruptedException {
+        overdueUsers.addAndGet(dueUsers.size());
+        for (TrackingWheel.Entry entry : dueUsers) {
+            User user = tourGuideService.getUser(entry.userName());
+            if (user == null) {
+                overdueUsers.decrementAndGet();
+                continue;
+            }
+            if (!partition.isLocal(user.getUserId())) {
+                // Suivi par un autre nœud : l'utilisateur reste dans la roue à l'intervalle de base, pour être
+                // repris au plus tard un intervalle après un rééquilibrage qui l'attribue à ce nœud.
+                overdueUsers.decrementAndGet();
+                foreignSkipped.increment();
+                trackingWheel.schedule(entry.userName(),
+                        Math.max(entry.deadlineMillis() + intervalMillis, System.currentTimeMillis()), intervalMillis);
+                continue;
+            }
+            // Bloque si la fenêtre de suivi est pleine : c'est la contre-pression vers l'ordonnanceur.
+            CompletableFuture<Boolean> tracking = trackingPipeline.submit(user);
+            overdueUsers.decrementAndGet();
+            tracking.thenRun(() -> reschedule(entry, user));
+        }
+    }
+
+    private void reschedule(TrackingWheel.Entry entry, User user) {
+        // Délai choisi par la politique de suivi d'après les dernières positions de l'utilisateur.
+        long interval = trackingPolicy.nextIntervalMillis(user, entry.intervalMillis());
+        // Échéance suivante calée sur la précédente (pas de dérive), ou immédiate si le retard dépasse le délai.
+        long next = Math.max(entry.deadlineMillis() + interval, System.currentTimeMillis());
+        trackingWheel.schedule(entry.userName(), next, interval);
+    }
+
+    private List<Gauge> registerGauges() {
+        MeterRegistry registry = TourGuideMetrics.registry();
+        return List.of(Gauge.builder(TourGuideMetrics.TRACKER_THROUGHPUT, this, tracker -> tracker.throughput)
+                        .description("Users tracked per second over the last tracking interval")
+                        .baseUnit("users/s")
+                        .register(registry),
+                Gauge.builder(TourGuideMetrics.TRACKER_SCHEDULE_LAG, this, Tracker::getScheduleLagMillis)
+                        .description("Delay of the last scheduler tick behind its planned time")
+                        .baseUnit("milliseconds")
+                        .register(registry),
+                Gauge.builder(TourGuideMetrics.TRACKER_OVERDUE_USERS, this, Tracker::getOverdueUserCount)
+                        .description("Users due for tracking but waiting for room in the in-flight window")
+                        .register(registry),
+                Gauge.builder(TourGuideMetrics.TRACKER_CONCURRENCY, this, Tracker::getConcurrencyLimit)
+                        .description("Users allowed in the in-flight window, ramped up during warm-up")
+                        .register(registry),
+                Gauge.builder(TourGuideMetrics.TRACKER_SCHEDULED_USERS, this, Tracker::getScheduledUserCount)
+                        .description("Users waiting in the timing wheel for their next tracking")
+                        .register(registry));
+    }
 
+    private void scheduleFirstTracking(String userName, long now) {
+        // Décalage stable dérivé du nom : les suivis sont répartis uniformément sur l'intervalle.
+        trackingWheel.schedule(userName, now + Math.floorMod(userName.hashCode(), intervalMillis), intervalMillis);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,41 @@
+package com.openclassrooms.tourguide.tracker;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.SmartLifecycle;
+
+/**
+ * Démarrage et arrêt du Tracker avec le contexte Spring, plutôt que depuis le constructeur de TourGuideService.
+ * <p>
+ * Phase par défaut : le Tracker démarre après le reste de l'application (serveur web compris) et s'arrête avant,
+ * en laissant finir les suivis en cours tant que stockage et exécuteurs sont encore disponibles.
+ */
+public class TrackerLifecycle implements SmartLifecycle {
+    private final Logger logger = LoggerFactory.getLogger(TrackerLifecycle.class);
+    private final Tracker tracker;
+    private volatile boolean running;
+
+    public TrackerLifecycle(Tracker tracker) {
+        this.tracker = tracker;
+    }
+
+    @Override
+    public void start() {
+        // Le délai de démarrage et la montée en charge sont gérés par le thread du Tracker lui-même.
+        tracker.start();
+        running = true;
+    }
+
+    @Override
+    public void stop() {
+        if (!tracker.drain()) {
+            logger.warn("Tracker stopped with users still being tracked");
+        }
+        running = false;
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+}
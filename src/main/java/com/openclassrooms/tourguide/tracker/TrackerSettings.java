@@ -0,0 +1,41 @@
+package com.openclassrooms.tourguide.tracker;
+
+import java.time.Duration;
+
+/**
+ * Démarrage et arrêt du Tracker.
+ *
+ * @param startDelay délai entre le démarrage de l'application et le premier suivi.
+ * @param warmUp durée de la montée en charge : la concurrence passe progressivement de {@code warmUpConcurrency}
+ *               à {@code maxConcurrency}, le temps que le JIT et les caches se stabilisent ({@code ZERO} : aucune).
+ * @param warmUpConcurrency nombre de suivis simultanés autorisés au début de la montée en charge.
+ * @param maxConcurrency nombre maximal de suivis simultanés.
+ * @param drainTimeout attente maximale des suivis en cours à l'arrêt.
+ */
+public record TrackerSettings(Duration startDelay, Duration warmUp, int warmUpConcurrency, int maxConcurrency,
+                              Duration drainTimeout) {
+
+    // Démarrage immédiat à pleine concurrence : comportement historique, utilisé hors Spring (tests, benchmarks).
+    public static final TrackerSettings DEFAULT = new TrackerSettings(Duration.ZERO, Duration.ZERO, 1000, 1000,
+            Duration.ofSeconds(30));
+
+    public TrackerSettings {
+        if (startDelay.isNegative() || warmUp.isNegative() || drainTimeout.isNegative()) {
+            throw new IllegalArgumentException("Tracker durations must not be negative");
+        }
+        if (warmUpConcurrency <= 0 || maxConcurrency < warmUpConcurrency) {
+            throw new IllegalArgumentException("Tracker concurrency must satisfy 0 < warm-up concurrency <= max concurrency");
+        }
+    }
+
+    /**
+     * Concurrence autorisée après {@code elapsedNanos} de suivi : rampe linéaire pendant la montée en charge.
+     */
+    public int concurrencyAfter(long elapsedNanos) {
+        long warmUpNanos = warmUp.toNanos();
+        if (elapsedNanos >= warmUpNanos) {
+            return maxConcurrency;
+        }
+        return warmUpConcurrency + (int) ((maxConcurrency - warmUpConcurrency) * (double) elapsedNanos / warmUpNanos);
+    }
+}
@@ -0,0 +1,231 @@
+package com.openclassrooms.tourguide.tracker;
+
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Phaser;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import gpsUtil.location.VisitedLocation;
+
+import com.openclassrooms.tourguide.metrics.TourGuideMetrics;
+import com.openclassrooms.tourguide.service.TourGuideService;
+import com.openclassrooms.tourguide.user.User;
+
+/**
+ * Pipeline de suivi des utilisateurs : au plus {@code maxInFlight} suivis (position puis récompenses) sont en cours
+ * simultanément. Chaque utilisateur libère sa place dès qu'il est terminé, en succès, en erreur ou après expiration
+ * de son délai, si bien qu'un utilisateur lent ne bloque pas les autres.
+ * <p>
+ * Les utilisateurs sont soumis un par un ({@link #submit}), par l'ordonnanceur du Tracker, ou en flux depuis un
+ * itérateur ({@link #run}) pour un passage complet sans copie de la liste.
+ */
+public class TrackingPipeline {
+    private final Logger logger = LoggerFactory.getLogger(TrackingPipeline.class);
+
+    private final TourGuideService tourGuideService;
+    private final Semaphore window;
+    // Taille actuelle de la fenêtre : ne fait que croître (montée en charge du Tracker).
+    private int limit;
+    private final Duration userTimeout;
+    private final Duration progressInterval;
+    // Suivis réellement en cours : un suivi expiré libère sa place dans la fenêtre, mais reste compté ici
+    // jusqu'à la fin de ses appels à gpsUtil et RewardCentral.
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final Object idle = new Object();
+    private final LongAdder completed = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    // Durée du suivi d'un utilisateur, de l'entrée dans la fenêtre à la fin du calcul des récompenses.
+    private final Timer userSuccess = userTimer("success");
+    private final Timer userFailure = userTimer("error");
+
+    public TrackingPipeline(TourGuideService tourGuideService, int maxInFlight, Duration userTimeout,
+                            Duration progressInterval) {
+        this.tourGuideService = tourGuideService;
+        this.window = new Semaphore(maxInFlight);
+        this.limit = maxInFlight;
+        this.userTimeout = userTimeout;
+        this.progressInterval = progressInterval;
+    }
+
+    /**
+     * Lance le suivi d'un utilisateur dès qu'une place se libère dans la fenêtre.
+     *
+     * @return un futur terminé à la fin du suivi, valant {@code true} en cas de succès ; il n'échoue jamais,
+     * les erreurs étant journalisées et comptées.
+     * @throws InterruptedException si le thread appelant est interrompu en attendant une place.
+     */
+    public CompletableFuture<Boolean> submit(User user) throws InterruptedException {
+        window.acquire();
+        long start = System.nanoTime();
+        return track(user).handle((ignored, error) -> {
+            (error == null ? userSuccess : userFailure).record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            if (error != null) {
+                failed.increment();
+                TourGuideMetrics.recordError("tracker", error);
+                logger.error("Error tracking user {}", user.getUserName(), error);
+            }
+            completed.increment();
+            window.release();
+            return error == null;
+        });
+    }
+
+    /**
+     * Suit tous les utilisateurs fournis par l'itérateur, puis attend la fin des suivis encore en cours.
+     *
+     * @param users utilisateurs à suivre, consommés au fur et à mesure.
+     * @param expectedUsers nombre d'utilisateurs attendu, utilisé uniquement pour le journal de progression.
+     * @return le bilan du passage.
+     * @throws InterruptedException si le thread appelant est interrompu (arrêt du Tracker).
+     */
+    public CycleReport run(Iterator<User> users, int expectedUsers) throws InterruptedException {
+        // Un participant par suivi en cours, plus l'appelant : permet d'attendre la fin du passage sans garder de futurs.
+        Phaser pending = new Phaser(1);
+        AtomicInteger done = new AtomicInteger();
+        AtomicInteger failedUsers = new AtomicInteger();
+        long start = System.nanoTime();
+        long nextProgress = start + progressInterval.toNanos();
+        int submitted = 0;
+
+        while (users.hasNext()) {
+            User user = users.next();
+            pending.register();
+            submit(user).thenAccept(success -> {
+                if (!success) {
+                    failedUsers.incrementAndGet();
+                }
+                done.incrementAndGet();
+                pending.arriveAndDeregister();
+            });
+            submitted++;
+            nextProgress = logProgressIfDue(nextProgress, start, done.get(), expectedUsers);
+        }
+
+        // Fin du flux : on attend les suivis encore en cours, en journalisant la progression pendant l'attente.
+        int phase = pending.arrive();
+        while (true) {
+            try {
+                pending.awaitAdvanceInterruptibly(phase, 1, TimeUnit.SECONDS);
+                break;
+            } catch (TimeoutException e) {
+                nextProgress = logProgressIfDue(nextProgress, start, done.get(), expectedUsers);
+            }
+        }
+
+        Duration duration = Duration.ofNanos(System.nanoTime() - start);
+        Timer.builder(TourGuideMetrics.TRACKER_CYCLE_DURATION)
+                .description("Duration of a full tracking pass over all users")
+                .register(TourGuideMetrics.registry())
+                .record(duration);
+        return new CycleReport(submitted, failedUsers.get(), duration);
+    }
+
+    /**
+     * Agrandit la fenêtre jusqu'à {@code newLimit} suivis simultanés ; sans effet si elle est déjà plus grande.
+     */
+    public synchronized void raiseLimit(int newLimit) {
+        if (newLimit > limit) {
+            window.release(newLimit - limit);
+            limit = newLimit;
+        }
+    }
+
+    public synchronized int getLimit() {
+        return limit;
+    }
+
+    /**
+     * Attend la fin de tous les suivis en cours, une fois les soumissions arrêtées. Les suivis dont le délai
+     * a expiré sont attendus eux aussi, tant que leurs appels ne sont pas terminés.
+     *
+     * @return {@code false} si des suivis étaient encore en cours à l'expiration du délai.
+     */
+    public boolean awaitIdle(Duration timeout) throws InterruptedException {
+        long deadline = System.nanoTime() + timeout.toNanos();
+        synchronized (idle) {
+            while (inFlight.get() > 0) {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    return false;
+                }
+                TimeUnit.NANOSECONDS.timedWait(idle, remaining);
+            }
+        }
+        return true;
+    }
+
+    public int getInFlightCount() {
+        return inFlight.get();
+    }
+
+    public long getCompletedCount() {
+        return completed.sum();
+    }
+
+    public long getFailedCount() {
+        return failed.sum();
+    }
+
+    private CompletableFuture<Void> track(User user) {
+        inFlight.incrementAndGet();
+        CompletableFuture<VisitedLocation> location;
+        try {
+            location = tourGuideService.trackUserLocation(user);
+        } catch (RuntimeException e) {
+            // Soumission refusée (ex. exécuteur arrêté) : l'échec est traité comme les autres pour libérer la place.
+            finished();
+            return CompletableFuture.failedFuture(e);
+        }
+        CompletableFuture<Void> tracking = location
+                .thenCompose(visitedLocation -> tourGuideService.getRewardsService().requestEvaluation(user));
+        tracking.whenComplete((ignored, error) -> finished());
+        // Copie : l'expiration ne termine que le futur de la fenêtre, pas celui qui suit les appels réels.
+        return tracking.copy().orTimeout(userTimeout.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    private void finished() {
+        if (inFlight.decrementAndGet() == 0) {
+            synchronized (idle) {
+                idle.notifyAll();
+            }
+        }
+    }
+
+    private static Timer userTimer(String outcome) {
+        return Timer.builder(TourGuideMetrics.TRACKER_USER_DURATION)
+                .description("Time to track one user: location, then rewards")
+                .tag("outcome", outcome)
+                .publishPercentileHistogram()
+                .register(TourGuideMetrics.registry());
+    }
+
+    private long logProgressIfDue(long nextProgress, long start, int done, int expectedUsers) {
+        long now = System.nanoTime();
+        if (now < nextProgress) {
+            return nextProgress;
+        }
+        double seconds = (now - start) / 1e9;
+        logger.debug("Tracker progress: {}/{} users ({} users/s).", done, expectedUsers, Math.round(done / seconds));
+        return now + progressInterval.toNanos();
+    }
+
+    /**
+     * Bilan d'un passage complet.
+     */
+    public record CycleReport(int trackedUsers, int failedUsers, Duration duration) {
+
+        public double usersPerSecond() {
+            double seconds = duration.toNanos() / 1e9;
+            return seconds == 0 ? trackedUsers : trackedUsers / seconds;
+        }
+    }
+}
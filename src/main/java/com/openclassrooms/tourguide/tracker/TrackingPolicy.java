@@ -0,0 +1,26 @@
+package com.openclassrooms.tourguide.tracker;
+
+import java.time.Duration;
+
+import com.openclassrooms.tourguide.user.User;
+
+/**
+ * Décide du délai avant le prochain suivi d'un utilisateur, une fois son suivi courant terminé.
+ */
+public interface TrackingPolicy {
+
+    /**
+     * @param user utilisateur venant d'être suivi (historique de positions à jour).
+     * @param previousIntervalMillis délai utilisé pour le suivi qui vient de se terminer.
+     * @return le délai, en millisecondes, avant le prochain suivi.
+     */
+    long nextIntervalMillis(User user, long previousIntervalMillis);
+
+    /**
+     * Politique historique : le même intervalle pour tous les utilisateurs.
+     */
+    static TrackingPolicy fixed(Duration interval) {
+        long intervalMillis = interval.toMillis();
+        return (user, previousIntervalMillis) -> intervalMillis;
+    }
+}
@@ -0,0 +1,99 @@
+package com.openclassrooms.tourguide.tracker;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Roue temporelle hachée (hashed timing wheel) des prochains suivis.
+ * <p>
+ * Le temps est découpé en tops de {@code tickMillis} ; chaque utilisateur est rangé dans l'alvéole correspondant
+ * à l'échéance de son prochain suivi (modulo la taille de la roue). À chaque top, seule l'alvéole courante est
+ * parcourue : le coût d'un top est proportionnel au nombre d'utilisateurs à suivre, pas au nombre total d'utilisateurs.
+ * <p>
+ * Les utilisateurs y sont désignés par leur nom : la roue ne retient pas en mémoire ceux d'un stockage sur disque,
+ * qui ne sont chargés qu'à leur échéance.
+ */
+public class TrackingWheel {
+    private final long tickMillis;
+    private final ConcurrentLinkedQueue<Entry>[] slots;
+    private final AtomicInteger scheduledUsers = new AtomicInteger();
+    // Dernier top vidé : une échéance déjà passée est rangée au top suivant plutôt qu'un tour de roue plus tard.
+    private volatile long lastDrainedTick;
+
+    @SuppressWarnings("unchecked")
+    public TrackingWheel(long tickMillis, int wheelSize, long startMillis) {
+        this.tickMillis = tickMillis;
+        this.slots = (ConcurrentLinkedQueue<Entry>[]) new ConcurrentLinkedQueue<?>[wheelSize];
+        for (int i = 0; i < wheelSize; i++) {
+            slots[i] = new ConcurrentLinkedQueue<>();
+        }
+        this.lastDrainedTick = tickOf(startMillis) - 1;
+    }
+
+    public long tickOf(long timeMillis) {
+        return Math.floorDiv(timeMillis, tickMillis);
+    }
+
+    /**
+     * Programme le prochain suivi de l'utilisateur à l'échéance donnée (millisecondes epoch).
+     *
+     * @param intervalMillis délai ayant conduit à cette échéance, conservé pour la politique de suivi.
+     */
+    public void schedule(String userName, long deadlineMillis, long intervalMillis) {
+        Entry entry = new Entry(userName, deadlineMillis, intervalMillis);
+        scheduledUsers.incrementAndGet();
+        long tick = Math.max(tickOf(deadlineMillis), lastDrainedTick + 1);
+        while (true) {
+            ConcurrentLinkedQueue<Entry> slot = slots[slotOf(tick)];
+            slot.add(entry);
+            long drained = lastDrainedTick;
+            // Un drain de ce top a pu commencer entre la lecture de lastDrainedTick et l'ajout, et compter l'alvéole
+            // sans l'entrée : elle est alors déplacée au top suivant, sauf si le drain l'a déjà prise.
+            if (tick > drained || !slot.remove(entry)) {
+                return;
+            }
+            tick = drained + 1;
+        }
+    }
+
+    /**
+     * Retire de la roue les utilisateurs dont l'échéance tombe au plus tard dans le top donné.
+     * Les entrées de la même alvéole prévues pour un tour ultérieur y restent.
+     */
+    public List<Entry> drain(long tick) {
+        lastDrainedTick = tick;
+        ConcurrentLinkedQueue<Entry> slot = slots[slotOf(tick)];
+        List<Entry> due = new ArrayList<>();
+        // Seules les entrées présentes au départ sont examinées : celles remises en file pour un tour suivant
+        // (et les nouvelles, rangées au top suivant) ne sont pas revues.
+        for (int remaining = slot.size(); remaining > 0; remaining--) {
+            Entry entry = slot.poll();
+            if (entry == null) {
+                break;
+            }
+            if (tickOf(entry.deadlineMillis()) <= tick) {
+                due.add(entry);
+                scheduledUsers.decrementAndGet();
+            } else {
+                slot.add(entry);
+            }
+        }
+        return due;
+    }
+
+    /**
+     * Nombre d'utilisateurs actuellement en attente dans la roue (hors suivis en cours).
+     */
+    public int getScheduledUsers() {
+        return scheduledUsers.get();
+    }
+
+    private int slotOf(long tick) {
+        return (int) Math.floorMod(tick, (long) slots.length);
+    }
+
+    public record Entry(String userName, long deadlineMillis, long intervalMillis) {
+    }
+}
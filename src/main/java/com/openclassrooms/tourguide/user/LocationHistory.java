@@ -0,0 +1,160 @@
+package com.openclassrooms.tourguide.user;
+
+import java.lang.invoke.VarHandle;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.RandomAccess;
+import java.util.UUID;
+
+import gpsUtil.location.Location;
+import gpsUtil.location.VisitedLocation;
+
+/**
+ * Historique borné des positions d'un utilisateur, stocké dans un tampon circulaire de tableaux primitifs
+ * (latitude, longitude, horodatage en millisecondes) plutôt que dans une liste de {@link VisitedLocation}.
+ * <p>
+ * Un ajout n'alloue rien et ne recopie aucun tableau : il écrase simplement la plus ancienne position.
+ * Les écritures sont sérialisées par un verrou, non contesté dans le cas normal d'un seul écrivain (le Tracker).
+ * Les lectures sont sans verrou : elles copient la zone utile puis vérifient, grâce au numéro de séquence,
+ * qu'aucune position copiée n'a été écrasée entre-temps (principe du seqlock).
+ */
+public class LocationHistory {
+    private final int capacity;
+    private final double[] latitudes;
+    private final double[] longitudes;
+    private final long[] timesMillis;
+    private final Object writeLock = new Object();
+    // Nombre total de positions ajoutées depuis la création ; l'écriture volatile publie la position ajoutée.
+    private volatile long sequence;
+    // Séquence à partir de laquelle les positions sont visibles (avance lors d'un effacement).
+    private volatile long clearedSequence;
+
+    public LocationHistory(int capacity) {
+        this.capacity = capacity;
+        // Une alvéole de réserve : l'écriture en cours ne touche jamais une des "capacity" positions lisibles.
+        this.latitudes = new double[capacity + 1];
+        this.longitudes = new double[capacity + 1];
+        this.timesMillis = new long[capacity + 1];
+    }
+
+    /**
+     * @return la séquence attribuée à la position ajoutée.
+     */
+    public long add(double latitude, double longitude, long timeMillis) {
+        synchronized (writeLock) {
+            long next = sequence;
+            int slot = (int) (next % latitudes.length);
+            latitudes[slot] = latitude;
+            longitudes[slot] = longitude;
+            timesMillis[slot] = timeMillis;
+            sequence = next + 1;
+            return next;
+        }
+    }
+
+    /**
+     * @return la séquence à partir de laquelle les positions restent visibles.
+     */
+    public long clear() {
+        synchronized (writeLock) {
+            long cleared = sequence;
+            clearedSequence = cleared;
+            return cleared;
+        }
+    }
+
+    /**
+     * Nombre total de positions ajoutées depuis la création (ne décroît jamais).
+     */
+    public long sequence() {
+        return sequence;
+    }
+
+    /**
+     * Copie cohérente des positions encore présentes dont la séquence est au moins {@code fromSequence},
+     * de la plus ancienne à la plus récente.
+     */
+    public Snapshot snapshotSince(long fromSequence, UUID userId) {
+        int slots = latitudes.length;
+        long end = sequence;
+        long start = Math.max(Math.max(fromSequence, clearedSequence), end - capacity);
+        if (start >= end) {
+            return new Snapshot(userId, end, new double[0], new double[0], new long[0]);
+        }
+        int count = (int) (end - start);
+        double[] lat = new double[count];
+        double[] lon = new double[count];
+        long[] times = new long[count];
+        for (int i = 0; i < count; i++) {
+            int slot = (int) ((start + i) % slots);
+            lat[i] = latitudes[slot];
+            lon[i] = longitudes[slot];
+            times[i] = timesMillis[slot];
+        }
+
+        // Les lectures des tableaux doivent être terminées avant de relire la séquence.
+        VarHandle.loadLoadFence();
+        // Un écrivain ayant publié jusqu'à "current" peut être en train d'écraser la position current - slots :
+        // seules les positions strictement plus récentes sont garanties intactes.
+        long firstIntact = sequence - slots + 1;
+        int skipped = (int) Math.max(0, Math.min(count, firstIntact - start));
+        if (skipped > 0) {
+            return new Snapshot(userId, end,
+                    Arrays.copyOfRange(lat, skipped, count),
+                    Arrays.copyOfRange(lon, skipped, count),
+                    Arrays.copyOfRange(times, skipped, count));
+        }
+        return new Snapshot(userId, end, lat, lon, times);
+    }
+
+    /**
+     * Vue figée d'une partie de l'historique. Les {@link VisitedLocation} ne sont créés qu'à la lecture,
+     * pour la couche REST et le code existant ; le code interne peut lire directement les valeurs primitives.
+     */
+    public static final class Snapshot extends AbstractList<VisitedLocation> implements RandomAccess {
+        private final UUID userId;
+        private final long endSequence;
+        private final double[] latitudes;
+        private final double[] longitudes;
+        private final long[] timesMillis;
+
+        private Snapshot(UUID userId, long endSequence, double[] latitudes, double[] longitudes, long[] timesMillis) {
+            this.userId = userId;
+            this.endSequence = endSequence;
+            this.latitudes = latitudes;
+            this.longitudes = longitudes;
+            this.timesMillis = timesMillis;
+        }
+
+        /**
+         * Séquence suivant la dernière position de la copie : point de reprise pour une lecture incrémentale.
+         */
+        public long endSequence() {
+            return endSequence;
+        }
+
+        public double latitude(int index) {
+            return latitudes[index];
+        }
+
+        public double longitude(int index) {
+            return longitudes[index];
+        }
+
+        public long timeMillis(int index) {
+            return timesMillis[index];
+        }
+
+        @Override
+        public VisitedLocation get(int index) {
+            return new VisitedLocation(userId, new Location(latitudes[index], longitudes[index]),
+                    new Date(timesMillis[index]));
+        }
+
+        @Override
+        public int size() {
+            return latitudes.length;
+        }
+    }
+}
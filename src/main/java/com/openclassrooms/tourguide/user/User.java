@@ -1,7 +1,9 @@
 package com.openclassrooms.tourguide.user;
 
 import java.util.*;
-import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import gpsUtil.location.VisitedLocation;
 import tripPricer.Provider;
@@ -13,18 +15,32 @@ public class User {
     private String emailAddress;
     private Date latestLocationTimestamp;
 
-    private final List<VisitedLocation> visitedLocations = new CopyOnWriteArrayList<>();
-    private final List<UserReward> userRewards = new CopyOnWriteArrayList<>();
-    // Ajout d'un verrou dédié pour les opérations critiques sur les récompenses
-    private final Object rewardLock = new Object();
+    // Limite à 30 positions pour éviter l'explosion mémoire
+    public static final int VISITED_LOCATIONS_CAPACITY = 30;
+
+    private final LocationHistory visitedLocations = new LocationHistory(VISITED_LOCATIONS_CAPACITY);
+    // Récompenses indexées par nom d'attraction (dédoublonnage en O(1), sans verrou), et dans leur ordre d'obtention.
+    private final Map<String, UserReward> rewardsByAttraction = new ConcurrentHashMap<>();
+    private final Queue<UserReward> userRewards = new ConcurrentLinkedQueue<>();
+    // Total des points, tenu à jour à chaque nouvelle récompense plutôt que recalculé à la demande.
+    private final AtomicInteger rewardPointsTotal = new AtomicInteger();
+    // Verrou du watermark des récompenses ; l'historique gère lui-même sa cohérence.
+    private final Object rewardsWatermarkLock = new Object();
+    // Séquence jusqu'à laquelle les récompenses ont déjà été évaluées, et génération des règles utilisées.
+    private long rewardsWatermark;
+    private int rewardsGeneration;
 
     private UserPreferences userPreferences = new UserPreferences();
-    private List<Provider> tripDeals = new ArrayList<>();
+    // Écrites par le thread du shard de l'utilisateur, lues par les requêtes.
+    private volatile List<Provider> tripDeals = new ArrayList<>();
+    // Stockage à tenir informé des modifications (aucun pour un utilisateur purement en mémoire).
+    private volatile UserChangeListener changeListener = UserChangeListener.NONE;
     public User(UUID userId, String userName, String phoneNumber, String emailAddress) {
         this.userId = userId;
         this.userName = userName;
         this.phoneNumber = phoneNumber;
         this.emailAddress = emailAddress;
+        userPreferences.setOwner(this);
     }
     
     public UUID getUserId() {
@@ -37,6 +53,7 @@ public class User {
     
     public void setPhoneNumber(String phoneNumber) {
         this.phoneNumber = phoneNumber;
+        changeListener.profileChanged(this);
     }
     
     public String getPhoneNumber() {
@@ -45,6 +62,7 @@ public class User {
 
     public void setEmailAddress(String emailAddress) {
         this.emailAddress = emailAddress;
+        changeListener.profileChanged(this);
     }
     
     public String getEmailAddress() {
@@ -53,6 +71,7 @@ public class User {
     
     public void setLatestLocationTimestamp(Date latestLocationTimestamp) {
         this.latestLocationTimestamp = latestLocationTimestamp;
+        changeListener.profileChanged(this);
     }
     
     public Date getLatestLocationTimestamp() {
@@ -60,48 +79,137 @@ public class User {
     }
 
     public void addToVisitedLocations(VisitedLocation v) {
-        visitedLocations.add(v);
-        // Limite à 30 éléments pour éviter l'explosion mémoire
-        if (visitedLocations.size() > 30) {
-            visitedLocations.remove(0); // On retire le plus ancien emplacement visité
+        // Au-delà de la capacité, la plus ancienne position est écrasée
+        long sequence = visitedLocations.add(v.location.latitude, v.location.longitude, v.timeVisited.getTime());
+        changeListener.locationAdded(this, sequence, v.location.latitude, v.location.longitude,
+                v.timeVisited.getTime());
+    }
+
+    /**
+     * Retourne les positions ajoutées depuis la dernière évaluation des récompenses et avance le watermark.
+     * Si la génération fournie diffère de celle de la dernière évaluation (règles de proximité modifiées),
+     * tout l'historique est renvoyé pour être réévalué.
+     *
+     * @param generation génération des règles de récompense de l'appelant.
+     * @return les positions à évaluer, de la plus ancienne à la plus récente (liste vide si rien de nouveau).
+     */
+    public List<VisitedLocation> pollLocationsToReward(int generation) {
+        synchronized (rewardsWatermarkLock) {
+            if (generation != rewardsGeneration) {
+                rewardsGeneration = generation;
+                rewardsWatermark = 0;
+            }
+            // Les positions évincées de l'historique borné ne sont plus disponibles : la copie se limite à ce qui reste.
+            LocationHistory.Snapshot pending = visitedLocations.snapshotSince(rewardsWatermark, userId);
+            rewardsWatermark = pending.endSequence();
+            return pending;
+        }
+    }
+
+    /**
+     * Force une réévaluation complète de l'historique au prochain calcul (ex. après un échec partiel).
+     */
+    public void resetRewardsWatermark() {
+        synchronized (rewardsWatermarkLock) {
+            rewardsWatermark = 0;
         }
     }
 
+    /**
+     * Copie figée de l'historique, de la plus ancienne à la plus récente position (lecture sans verrou).
+     */
     public List<VisitedLocation> getVisitedLocations() {
-        return visitedLocations;
+        return visitedLocations.snapshotSince(0, userId);
     }
     
+    /**
+     * Copie figée de l'historique avec sa séquence de fin : une position de séquence inférieure y figure
+     * (ou en a été évincée), une position de séquence supérieure ou égale a été ajoutée après la copie.
+     */
+    public LocationHistory.Snapshot getVisitedLocationsSnapshot() {
+        return visitedLocations.snapshotSince(0, userId);
+    }
+
+    /**
+     * Copie figée des {@code count} dernières positions au plus, sans recopier le reste de l'historique.
+     */
+    public LocationHistory.Snapshot getLatestVisitedLocations(int count) {
+        return visitedLocations.snapshotSince(visitedLocations.sequence() - count, userId);
+    }
+
     public void clearVisitedLocations() {
-        visitedLocations.clear();
+        long clearedSequence = visitedLocations.clear();
+        changeListener.locationsCleared(this, clearedSequence);
     }
     
-    public void addUserReward(UserReward userReward) {
-        // Synchronisation pour garantir qu'on ne crée pas de doublon en concurrence
-        synchronized(rewardLock) {
-            // Vérification défensive pour s'assurer qu'une récompense pour cette attraction n'existe pas déjà,
-            // garantissant l'idempotence de l'ajout de récompense au niveau de l'objet User.
-            if(userRewards.stream().noneMatch(r -> r.attraction.attractionName.equals(userReward.attraction.attractionName))) {
-                userRewards.add(userReward);
-            }
+    /**
+     * @return {@code true} si la récompense a été ajoutée, {@code false} si l'attraction était déjà récompensée.
+     * @throws IllegalStateException si le stockage refuse la récompense : elle est alors retirée de la mémoire.
+     */
+    public boolean addUserReward(UserReward userReward) {
+        // putIfAbsent garantit l'idempotence de l'ajout, même en concurrence : une seule récompense par attraction.
+        // La clé est le nom, stable, car gpsUtil attribue un nouvel identifiant aux attractions à chaque appel.
+        if (rewardsByAttraction.putIfAbsent(userReward.attraction.attractionName, userReward) != null) {
+            return false;
+        }
+        userRewards.add(userReward);
+        rewardPointsTotal.addAndGet(userReward.getRewardPoints());
+        try {
+            changeListener.rewardAdded(this, userReward);
+        } catch (RuntimeException e) {
+            // Une récompense gardée seulement en mémoire serait perdue au redémarrage : l'ajout est annulé.
+            rewardPointsTotal.addAndGet(-userReward.getRewardPoints());
+            userRewards.remove(userReward);
+            rewardsByAttraction.remove(userReward.attraction.attractionName, userReward);
+            throw e;
         }
+        return true;
+    }
+
+    public boolean hasRewardFor(String attractionName) {
+        return rewardsByAttraction.containsKey(attractionName);
+    }
+
+    public int getRewardCount() {
+        return rewardsByAttraction.size();
+    }
+
+    /**
+     * Nombre maximal de récompenses que le stockage de l'utilisateur peut conserver (sans limite en mémoire).
+     */
+    public int getRewardCapacity() {
+        return changeListener.rewardCapacity();
+    }
+
+    /**
+     * Somme des points des récompenses obtenues, telle qu'enregistrée lors de leur ajout.
+     */
+    public int getRewardPointsTotal() {
+        return rewardPointsTotal.get();
     }
     
     public List<UserReward> getUserRewards() {
-        return userRewards;
+        return new ArrayList<>(userRewards);
     }
     
     public UserPreferences getUserPreferences() {
         return userPreferences;
     }
     
+    /**
+     * Les modifications ultérieures des préférences fournies sont elles aussi transmises au stockage.
+     */
     public void setUserPreferences(UserPreferences userPreferences) {
         this.userPreferences = userPreferences;
+        userPreferences.setOwner(this);
+        changeListener.profileChanged(this);
     }
 
     public VisitedLocation getLastVisitedLocation() {
-        // Attention : cette méthode suppose que la liste n'est jamais vide.
-        // Elle lèvera une exception si visitedLocations est vide.
-        return visitedLocations.get(visitedLocations.size() - 1);
+        // Attention : cette méthode suppose que l'historique n'est jamais vide.
+        // Elle lèvera une exception si aucune position n'est disponible.
+        List<VisitedLocation> lastVisitedLocation = visitedLocations.snapshotSince(visitedLocations.sequence() - 1, userId);
+        return lastVisitedLocation.get(lastVisitedLocation.size() - 1);
     }
     
     public void setTripDeals(List<Provider> tripDeals) {
@@ -112,4 +220,21 @@ public class User {
         return tripDeals;
     }
 
+    /**
+     * Préférences modifiées en place par l'un de leurs setters.
+     */
+    void preferencesChanged(UserPreferences userPreferences) {
+        // Préférences remplacées entre-temps : leur modification ne concerne plus cet utilisateur.
+        if (userPreferences == this.userPreferences) {
+            changeListener.profileChanged(this);
+        }
+    }
+
+    /**
+     * Branche le stockage à notifier des modifications suivantes ; celles déjà faites ne sont pas rejouées.
+     */
+    public void setChangeListener(UserChangeListener changeListener) {
+        this.changeListener = changeListener;
+    }
+
 }
\ No newline at end of file
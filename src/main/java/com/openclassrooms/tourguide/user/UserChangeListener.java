@@ -0,0 +1,46 @@
+package com.openclassrooms.tourguide.user;
+
+/**
+ * Notifié de chaque modification d'un {@link User}, après qu'elle a été appliquée en mémoire.
+ * Permet à un stockage de suivre les écritures au fil de l'eau, sans relire l'utilisateur entier.
+ * <p>
+ * Les appels ont lieu sur le thread de l'écrivain (Tracker, calcul des récompenses, requête) :
+ * une implémentation doit être rapide et thread-safe.
+ */
+public interface UserChangeListener {
+
+    UserChangeListener NONE = new UserChangeListener() {
+    };
+
+    /**
+     * @param sequence séquence de la position dans l'historique de l'utilisateur (voir {@link LocationHistory}).
+     */
+    default void locationAdded(User user, long sequence, double latitude, double longitude, long timeMillis) {
+    }
+
+    /**
+     * @param sequence séquence à partir de laquelle les positions restent visibles.
+     */
+    default void locationsCleared(User user, long sequence) {
+    }
+
+    /**
+     * Appelé uniquement pour une récompense réellement ajoutée (pas pour un doublon).
+     */
+    default void rewardAdded(User user, UserReward userReward) {
+    }
+
+    /**
+     * Nombre maximal de récompenses que le stockage conserve pour l'utilisateur : au-delà, il refuse
+     * {@link #rewardAdded}.
+     */
+    default int rewardCapacity() {
+        return Integer.MAX_VALUE;
+    }
+
+    /**
+     * Coordonnées, préférences ou horodatage de dernière position modifiés.
+     */
+    default void profileChanged(User user) {
+    }
+}
@@ -7,12 +7,15 @@ public class UserPreferences {
 	private int ticketQuantity = 1;
 	private int numberOfAdults = 1;
 	private int numberOfChildren = 0;
+	// Utilisateur à notifier de chaque modification, pour que son stockage la recopie.
+	private volatile User owner;
 	
 	public UserPreferences() {
 	}
 	
 	public void setAttractionProximity(int attractionProximity) {
 		this.attractionProximity = attractionProximity;
+		changed();
 	}
 	
 	public int getAttractionProximity() {
@@ -25,6 +28,7 @@ public class UserPreferences {
 
 	public void setTripDuration(int tripDuration) {
 		this.tripDuration = tripDuration;
+		changed();
 	}
 
 	public int getTicketQuantity() {
@@ -33,6 +37,7 @@ public class UserPreferences {
 
 	public void setTicketQuantity(int ticketQuantity) {
 		this.ticketQuantity = ticketQuantity;
+		changed();
 	}
 	
 	public int getNumberOfAdults() {
@@ -41,6 +46,7 @@ public class UserPreferences {
 
 	public void setNumberOfAdults(int numberOfAdults) {
 		this.numberOfAdults = numberOfAdults;
+		changed();
 	}
 
 	public int getNumberOfChildren() {
@@ -49,6 +55,18 @@ public class UserPreferences {
 
 	public void setNumberOfChildren(int numberOfChildren) {
 		this.numberOfChildren = numberOfChildren;
+		changed();
+	}
+
+	void setOwner(User owner) {
+		this.owner = owner;
+	}
+
+	private void changed() {
+		User user = owner;
+		if (user != null) {
+			user.preferencesChanged(this);
+		}
 	}
 
 }
@@ -0,0 +1,189 @@
+package com.openclassrooms.tourguide;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.UUID;
+
+import org.junit.jupiter.api.Test;
+
+import gpsUtil.GpsUtil;
+import gpsUtil.location.Attraction;
+import gpsUtil.location.Location;
+import gpsUtil.location.VisitedLocation;
+import rewardCentral.RewardCentral;
+import com.openclassrooms.tourguide.geo.AttractionIndex;
+import com.openclassrooms.tourguide.geo.NearbyAttraction;
+import com.openclassrooms.tourguide.service.RewardsService;
+import com.openclassrooms.tourguide.user.User;
+
+public class TestAttractionIndex {
+
+	private final Random random = new Random(7);
+
+	@Test
+	public void candidatesContainEveryAttractionWithinRadius() {
+		List<Attraction> attractions = randomAttractions(5_000);
+		AttractionIndex index = new AttractionIndex(attractions);
+		RewardsService rewardsService = new RewardsService(new GpsUtil(), new RewardCentral());
+
+		try {
+			for (double radius : new double[] { 0, 10, 200, 3_000 }) {
+				for (int i = 0; i < 200; i++) {
+					Location location = randomLocation();
+					Set<Attraction> candidates = new HashSet<>();
+					index.forEachCandidate(location, radius, candidates::add);
+
+					// L'index peut renvoyer un peu plus de candidats, mais jamais en oublier un.
+					Set<Attraction> expected = new HashSet<>();
+					for (Attraction attraction : attractions) {
+						if (rewardsService.getDistance(attraction, location) <= radius) {
+							expected.add(attraction);
+						}
+					}
+					expected.removeAll(candidates);
+					assertEquals(Set.of(), expected);
+				}
+			}
+		} finally {
+			rewardsService.stop();
+		}
+	}
+
+	@Test
+	public void withinMatchesCurrentDistanceFormula() {
+		List<Attraction> attractions = randomAttractions(5_000);
+		AttractionIndex index = new AttractionIndex(attractions);
+		RewardsService rewardsService = new RewardsService(new GpsUtil(), new RewardCentral());
+
+		try {
+			for (double radius : new double[] { 10, 200, 3_000 }) {
+				for (int i = 0; i < 200; i++) {
+					Location location = randomLocation();
+					Set<Attraction> within = new HashSet<>();
+					index.forEachWithin(location, radius, within::add);
+
+					Set<Attraction> expected = new HashSet<>();
+					for (Attraction attraction : attractions) {
+						if (rewardsService.getDistance(attraction, location) <= radius) {
+							expected.add(attraction);
+						}
+					}
+					assertEquals(expected, within);
+				}
+			}
+		} finally {
+			rewardsService.stop();
+		}
+	}
+
+	@Test
+	public void distancesFromMatchCurrentDistanceFormula() {
+		AttractionIndex index = new AttractionIndex(randomAttractions(2_000));
+		RewardsService rewardsService = new RewardsService(new GpsUtil(), new RewardCentral());
+		double[] distances = new double[index.size()];
+
+		try {
+			for (int i = 0; i < 50; i++) {
+				Location location = randomLocation();
+				index.distancesFrom(location, distances);
+				for (int j = 0; j < index.size(); j++) {
+					assertEquals(rewardsService.getDistance(index.attraction(j), location), distances[j], 1e-6);
+				}
+			}
+		} finally {
+			rewardsService.stop();
+		}
+	}
+
+	@Test
+	public void unboundedRadiusReturnsWholeCatalogue() {
+		List<Attraction> attractions = randomAttractions(100);
+		AttractionIndex index = new AttractionIndex(attractions);
+
+		List<Attraction> candidates = new ArrayList<>();
+		index.forEachCandidate(randomLocation(), Integer.MAX_VALUE, candidates::add);
+
+		assertEquals(attractions.size(), candidates.size());
+	}
+
+	@Test
+	public void negativeRadiusMatchesNothing() {
+		List<Attraction> attractions = randomAttractions(100);
+		AttractionIndex index = new AttractionIndex(attractions);
+		Location onAttraction = new Location(attractions.get(0).latitude, attractions.get(0).longitude);
+
+		List<Attraction> found = new ArrayList<>();
+		assertEquals(0, index.forEachCandidate(onAttraction, -1, found::add));
+		assertEquals(0, index.forEachWithin(onAttraction, -1, found::add));
+		assertEquals(List.of(), found);
+
+		// Même règle que le parcours complet : un buffer négatif ne récompense aucune attraction, même visitée.
+		RewardsService rewardsService = new RewardsService(new GpsUtil(), new RewardCentral());
+		try {
+			rewardsService.setProximityBuffer(-1);
+			User user = new User(UUID.randomUUID(), "jon", "000", "jon@tourGuide.com");
+			user.addToVisitedLocations(new VisitedLocation(user.getUserId(), rewardsService.getAttractions().get(0),
+					new Date()));
+			rewardsService.calculateRewards(user).join();
+			assertEquals(List.of(), user.getUserRewards());
+		} finally {
+			rewardsService.stop();
+		}
+	}
+
+	@Test
+	public void nearestMatchesFullSort() {
+		List<Attraction> attractions = randomAttractions(2_000);
+		AttractionIndex index = new AttractionIndex(attractions);
+		RewardsService rewardsService = new RewardsService(new GpsUtil(), new RewardCentral());
+
+		try {
+			for (int i = 0; i < 200; i++) {
+				Location location = randomLocation();
+				List<NearbyAttraction> nearest = index.nearest(location, 5);
+
+				List<Attraction> expected = attractions.stream()
+						.sorted(Comparator.comparingDouble(a -> rewardsService.getDistance(a, location)))
+						.limit(5)
+						.toList();
+				assertEquals(expected, nearest.stream().map(NearbyAttraction::attraction).toList());
+				for (NearbyAttraction nearbyAttraction : nearest) {
+					assertEquals(rewardsService.getDistance(nearbyAttraction.attraction(), location),
+							nearbyAttraction.distanceInMiles(), 1e-3);
+				}
+			}
+		} finally {
+			rewardsService.stop();
+		}
+	}
+
+	@Test
+	public void nearestIsBoundedByCatalogueSize() {
+		AttractionIndex index = new AttractionIndex(randomAttractions(3));
+
+		assertEquals(3, index.nearest(randomLocation(), 5).size());
+		assertEquals(0, index.nearest(randomLocation(), 0).size());
+	}
+
+	private List<Attraction> randomAttractions(int count) {
+		List<Attraction> attractions = new ArrayList<>(count);
+		for (int i = 0; i < count; i++) {
+			Location location = randomLocation();
+			attractions.add(new Attraction("attraction" + i, "city", "state", location.latitude, location.longitude));
+		}
+		return attractions;
+	}
+
+	private Location randomLocation() {
+		// Inclut volontairement les pôles et l'antiméridien, cas limites d'un découpage en latitude/longitude.
+		return new Location(-90 + random.nextDouble() * 180, -180 + random.nextDouble() * 360);
+	}
+
+}
@@ -0,0 +1,172 @@
+package com.openclassrooms.tourguide;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+import org.awaitility.Awaitility;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import gpsUtil.GpsUtil;
+import gpsUtil.location.Location;
+import gpsUtil.location.VisitedLocation;
+import rewardCentral.RewardCentral;
+import com.openclassrooms.tourguide.cluster.FileMembership;
+import com.openclassrooms.tourguide.cluster.InProcessMembership;
+import com.openclassrooms.tourguide.cluster.UserPartition;
+import com.openclassrooms.tourguide.helper.InternalTestHelper;
+import com.openclassrooms.tourguide.service.RewardsService;
+import com.openclassrooms.tourguide.service.TourGuideService;
+import com.openclassrooms.tourguide.tracker.Tracker;
+import com.openclassrooms.tourguide.tracker.TrackerSettings;
+import com.openclassrooms.tourguide.tracker.TrackingPolicy;
+import com.openclassrooms.tourguide.user.User;
+
+public class TestCluster {
+
+	@Test
+	public void usersAreSpreadAcrossNodesAndFewMoveWhenOneLeaves() {
+		InProcessMembership.Group group = new InProcessMembership.Group();
+		List<String> nodes = List.of("a", "b", "c");
+		Map<String, UserPartition> partitions = new HashMap<>();
+		Map<String, InProcessMembership> memberships = new HashMap<>();
+		for (String node : nodes) {
+			memberships.put(node, group.join(node));
+		}
+		nodes.forEach(node -> partitions.put(node, new UserPartition(memberships.get(node))));
+		Random random = new Random(1);
+		List<UUID> userIds = IntStream.range(0, 10_000).mapToObj(i -> new UUID(random.nextLong(), random.nextLong())).toList();
+
+		// Chaque utilisateur appartient à un seul nœud, et chaque nœud en a environ un tiers.
+		Map<UUID, String> owners = owners(userIds, partitions);
+		for (String node : nodes) {
+			long owned = owners.values().stream().filter(node::equals).count();
+			assertTrue(owned > 2_500 && owned < 4_200, node + " owns " + owned + " users");
+		}
+
+		// Départ de c : seuls ses utilisateurs changent de nœud.
+		memberships.get("c").close();
+		partitions.remove("c");
+		Map<UUID, String> rebalanced = owners(userIds, partitions);
+		for (UUID userId : userIds) {
+			if (!owners.get(userId).equals("c")) {
+				assertEquals(owners.get(userId), rebalanced.get(userId));
+			}
+		}
+	}
+
+	@Test
+	public void fileMembershipSeesNodesJoinLeaveAndTimeOut(@TempDir Path directory) throws Exception {
+		Duration heartbeat = Duration.ofMillis(50);
+		Duration timeout = Duration.ofMillis(300);
+		try (FileMembership first = new FileMembership(directory, "first", heartbeat, timeout)) {
+			FileMembership second = new FileMembership(directory, "second", heartbeat, timeout);
+			Awaitility.await().atMost(5, TimeUnit.SECONDS).until(() -> first.members().equals(Set.of("first", "second")));
+
+			// Arrêt normal : le fichier est retiré.
+			second.close();
+			Awaitility.await().atMost(5, TimeUnit.SECONDS).until(() -> first.members().equals(Set.of("first")));
+
+			// Nœud arrêté brutalement : son fichier n'est plus touché et il disparaît après le délai.
+			Files.write(directory.resolve("crashed.node"), new byte[0]);
+			Awaitility.await().atMost(5, TimeUnit.SECONDS).until(() -> first.members().contains("crashed"));
+			Awaitility.await().atMost(5, TimeUnit.SECONDS).until(() -> first.members().equals(Set.of("first")));
+		}
+	}
+
+	@Test
+	public void trackersShareUsersThenTakeOverWhenANodeLeaves() throws Exception {
+		// Un service par nœud, qui compte ses propres suivis ; les utilisateurs sont partagés comme par un stockage commun.
+		Map<UUID, Integer> trackedByA = new ConcurrentHashMap<>();
+		Map<UUID, Integer> trackedByB = new ConcurrentHashMap<>();
+		InternalTestHelper.setInternalUserNumber(0);
+		TourGuideService nodeA = node(trackedByA);
+		TourGuideService nodeB = node(trackedByB);
+		InProcessMembership.Group group = new InProcessMembership.Group();
+		InProcessMembership leaving = group.join("b");
+		Duration interval = Duration.ofMillis(200);
+		Tracker first = new Tracker(nodeA, interval, Duration.ofMillis(20), TrackingPolicy.fixed(interval),
+				TrackerSettings.DEFAULT, new UserPartition(group.join("a")));
+		Tracker second = new Tracker(nodeB, interval, Duration.ofMillis(20), TrackingPolicy.fixed(interval),
+				TrackerSettings.DEFAULT, new UserPartition(leaving));
+
+		try {
+			List<User> users = new ArrayList<>();
+			for (int i = 0; i < 40; i++) {
+				User user = new User(UUID.randomUUID(), "user" + i, "000", "user" + i + "@tourGuide.com");
+				nodeA.addUser(user);
+				nodeB.addUser(user);
+				users.add(user);
+			}
+			first.start();
+			second.start();
+			Awaitility.await().atMost(5, TimeUnit.SECONDS).until(() -> users.stream().allMatch(user ->
+					trackedByA.getOrDefault(user.getUserId(), 0) + trackedByB.getOrDefault(user.getUserId(), 0) >= 2));
+
+			// Chaque utilisateur n'est suivi que par un nœud, et chaque nœud en suit une part.
+			for (User user : users) {
+				assertFalse(trackedByA.containsKey(user.getUserId()) && trackedByB.containsKey(user.getUserId()),
+						user.getUserName() + " tracked by both nodes");
+			}
+			assertFalse(trackedByA.isEmpty());
+			assertFalse(trackedByB.isEmpty());
+
+			// Départ de b : a reprend ses utilisateurs dès leur échéance suivante, et b ne suit plus personne.
+			assertTrue(second.drain());
+			leaving.close();
+			Map<UUID, Integer> leftByB = new HashMap<>(trackedByB);
+			Map<UUID, Integer> before = new HashMap<>(trackedByA);
+			Awaitility.await().atMost(5, TimeUnit.SECONDS).until(() -> users.stream().allMatch(user ->
+					trackedByA.getOrDefault(user.getUserId(), 0) - before.getOrDefault(user.getUserId(), 0) >= 2));
+			assertEquals(leftByB, trackedByB);
+		} finally {
+			first.stopTracking();
+			second.stopTracking();
+			nodeA.stop();
+			nodeB.stop();
+		}
+	}
+
+	private static TourGuideService node(Map<UUID, Integer> trackings) {
+		GpsUtil gpsUtil = new GpsUtil() {
+			@Override
+			public VisitedLocation getUserLocation(UUID userId) {
+				trackings.merge(userId, 1, Integer::sum);
+				return new VisitedLocation(userId, new Location(0, 0), new Date());
+			}
+		};
+		TourGuideService tourGuideService = new TourGuideService(gpsUtil, new RewardsService(gpsUtil, new RewardCentral()));
+		tourGuideService.tracker.stopTracking();
+		return tourGuideService;
+	}
+
+	private static Map<UUID, String> owners(List<UUID> userIds, Map<String, UserPartition> partitions) {
+		Map<UUID, String> owners = new HashMap<>();
+		for (UUID userId : userIds) {
+			List<String> local = partitions.entrySet().stream()
+					.filter(partition -> partition.getValue().isLocal(userId))
+					.map(Map.Entry::getKey)
+					.toList();
+			assertEquals(1, local.size(), userId + " owned by " + local);
+			owners.put(userId, local.get(0));
+		}
+		return owners;
+	}
+
+}
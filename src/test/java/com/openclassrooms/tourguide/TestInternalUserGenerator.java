@@ -0,0 +1,90 @@
+package com.openclassrooms.tourguide;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.openclassrooms.tourguide.helper.InternalUserGenerator;
+import com.openclassrooms.tourguide.helper.InternalUserSettings;
+import com.openclassrooms.tourguide.store.InMemoryUserRepository;
+import com.openclassrooms.tourguide.store.UserSnapshotFile;
+import com.openclassrooms.tourguide.user.User;
+
+public class TestInternalUserGenerator {
+
+	@TempDir
+	Path directory;
+
+	@Test
+	public void sameSeedGeneratesSameUsers() {
+		// Plus d'un lot, pour que la génération soit réellement parallèle.
+		List<User> first = InternalUserGenerator.generate(10_000, 7);
+		List<User> second = InternalUserGenerator.generate(10_000, 7);
+
+		assertEquals(10_000, first.size());
+		assertEquals("internalUser9999", first.get(9_999).getUserName());
+		assertEquals(3, first.get(0).getVisitedLocations().size());
+		// Les dates dépendent de l'heure de génération : seules identités et coordonnées sont comparées.
+		assertEquals(first.stream().map(user -> describe(user, false)).toList(),
+				second.stream().map(user -> describe(user, false)).toList());
+		assertNotEquals(describe(first.get(0), false), describe(InternalUserGenerator.generate(1, 8).get(0), false));
+		assertEquals(4, first.get(0).getUserId().version());
+	}
+
+	@Test
+	public void usersAreAddedInTheOrderOfTheirNumber() {
+		InMemoryUserRepository repository = new InMemoryUserRepository(10_000);
+		InternalUserGenerator.populate(repository, 10_000, new InternalUserSettings(7, null));
+
+		List<User> users = repository.page(0, 10_000);
+		for (int i = 0; i < users.size(); i++) {
+			assertEquals("internalUser" + i, users.get(i).getUserName());
+		}
+	}
+
+	@Test
+	public void fixtureIsReloadedOnlyForTheSameSeedAndCount() throws Exception {
+		Path fixture = directory.resolve("users.bin");
+		InternalUserGenerator.populate(new InMemoryUserRepository(100), 100, new InternalUserSettings(7, fixture));
+		assertEquals(new UserSnapshotFile.Header(100, 7), UserSnapshotFile.readHeader(fixture));
+
+		// Utilisateurs marqués : un rechargement les retrouve, une régénération non.
+		List<User> marked = InternalUserGenerator.generate(100, 7);
+		marked.forEach(user -> user.setPhoneNumber("fixture"));
+		UserSnapshotFile.write(fixture, marked.iterator(), 7);
+
+		InMemoryUserRepository reloaded = new InMemoryUserRepository(100);
+		InternalUserGenerator.populate(reloaded, 100, new InternalUserSettings(7, fixture));
+		assertEquals(marked.stream().map(user -> describe(user, true)).toList(),
+				reloaded.page(0, 100).stream().map(user -> describe(user, true)).toList());
+		assertTrue(reloaded.findAll().stream().allMatch(user -> user.getPhoneNumber().equals("fixture")));
+
+		// Autre graine : le fichier n'est plus relu, il est régénéré pour la nouvelle graine.
+		InMemoryUserRepository reseeded = new InMemoryUserRepository(100);
+		InternalUserGenerator.populate(reseeded, 100, new InternalUserSettings(8, fixture));
+		assertTrue(reseeded.findAll().stream().noneMatch(user -> user.getPhoneNumber().equals("fixture")));
+		assertNotEquals(describe(marked.get(0), false), describe(reseeded.get("internalUser0"), false));
+		assertEquals(new UserSnapshotFile.Header(100, 8), UserSnapshotFile.readHeader(fixture));
+
+		// Autre nombre d'utilisateurs : de même.
+		InMemoryUserRepository resized = new InMemoryUserRepository(50);
+		InternalUserGenerator.populate(resized, 50, new InternalUserSettings(8, fixture));
+		assertEquals(50, resized.size());
+		assertEquals(new UserSnapshotFile.Header(50, 8), UserSnapshotFile.readHeader(fixture));
+	}
+
+	private String describe(User user, boolean withTimes) {
+		return user.getUserName() + user.getUserId() + user.getEmailAddress() + user.getVisitedLocations().stream()
+				.map(visitedLocation -> visitedLocation.location.latitude + "," + visitedLocation.location.longitude
+						+ (withTimes ? "@" + visitedLocation.timeVisited.getTime() : ""))
+				.toList();
+	}
+
+}
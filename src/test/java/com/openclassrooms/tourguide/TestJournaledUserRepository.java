@@ -0,0 +1,186 @@
+package com.openclassrooms.tourguide;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import gpsUtil.location.Attraction;
+import gpsUtil.location.Location;
+import gpsUtil.location.VisitedLocation;
+import com.openclassrooms.tourguide.store.JournaledUserRepository;
+import com.openclassrooms.tourguide.user.User;
+import com.openclassrooms.tourguide.user.UserPreferences;
+import com.openclassrooms.tourguide.user.UserReward;
+
+public class TestJournaledUserRepository {
+
+	@TempDir
+	Path directory;
+
+	private final Attraction disneyland = new Attraction("Disneyland", "Anaheim", "CA", 33.817595, -117.922008);
+	private final Map<String, Attraction> catalog = Map.of(disneyland.attractionName, disneyland);
+
+	@Test
+	public void journalRestoresUpdatesAfterCrash() throws Exception {
+		JournaledUserRepository crashed = open();
+		User user = new User(UUID.randomUUID(), "jon", "000", "jon@tourGuide.com");
+		user.addToVisitedLocations(visitedLocation(user, 1));
+		crashed.add(user);
+		assertFalse(crashed.add(new User(UUID.randomUUID(), "jon", "111", "other@tourGuide.com")));
+		for (int i = 2; i <= 40; i++) {
+			user.addToVisitedLocations(visitedLocation(user, i));
+		}
+		user.addUserReward(new UserReward(visitedLocation(user, 40), disneyland, 250));
+		user.addUserReward(new UserReward(visitedLocation(user, 40), disneyland, 250));
+		UserPreferences preferences = new UserPreferences();
+		preferences.setNumberOfChildren(3);
+		user.setUserPreferences(preferences);
+		// Attend la validation du dernier lot, puis abandonne le journal sans le fermer (arrêt brutal).
+		crashed.sync();
+
+		try (JournaledUserRepository repository = open()) {
+			assertEquals(1, repository.size());
+			assertNull(repository.get("jane"));
+			User restored = repository.get("jon");
+			assertEquals(user.getUserId(), restored.getUserId());
+			assertEquals(3, restored.getUserPreferences().getNumberOfChildren());
+			assertEquals(latitudes(user), latitudes(restored));
+			assertEquals(1, restored.getUserRewards().size());
+			assertSame(disneyland, restored.getUserRewards().get(0).attraction);
+			assertEquals(250, restored.getRewardPointsTotal());
+
+			restored.clearVisitedLocations();
+			restored.addToVisitedLocations(visitedLocation(restored, 99));
+		} finally {
+			crashed.close();
+		}
+
+		try (JournaledUserRepository repository = open()) {
+			assertEquals(List.of(99.0), latitudes(repository.get("jon")));
+		}
+	}
+
+	@Test
+	public void snapshotsTakenDuringUpdatesDoNotDuplicateLocations() throws Exception {
+		int userCount = 8;
+		List<User> users = new ArrayList<>();
+		ExecutorService executor = Executors.newFixedThreadPool(userCount);
+		try (JournaledUserRepository repository = open()) {
+			for (int i = 0; i < userCount; i++) {
+				User user = new User(UUID.randomUUID(), "internalUser" + i, "000", "internalUser" + i + "@tourGuide.com");
+				repository.add(user);
+				users.add(user);
+			}
+			List<Future<?>> futures = new ArrayList<>();
+			for (User user : users) {
+				futures.add(executor.submit(() -> {
+					for (int i = 0; i < 20_000; i++) {
+						user.addToVisitedLocations(visitedLocation(user, i));
+					}
+				}));
+			}
+			// Instantanés pris pendant les écritures : chacun peut contenir une partie du segment suivant.
+			while (!futures.stream().allMatch(Future::isDone)) {
+				repository.snapshot();
+			}
+			for (Future<?> future : futures) {
+				future.get();
+			}
+			repository.sync();
+		} finally {
+			executor.shutdownNow();
+		}
+
+		try (Stream<Path> files = Files.list(directory)) {
+			assertEquals(2, files.count());
+		}
+		try (JournaledUserRepository repository = open()) {
+			for (User user : users) {
+				assertEquals(latitudes(user), latitudes(repository.get(user.getUserName())));
+			}
+		}
+	}
+
+	@Test
+	public void updatesRacingWithAddAreReplayed() throws Exception {
+		List<User> users = new ArrayList<>();
+		for (int i = 0; i < 2_000; i++) {
+			users.add(new User(UUID.randomUUID(), "internalUser" + i, "000", "internalUser" + i + "@tourGuide.com"));
+		}
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+		try (JournaledUserRepository repository = open()) {
+			// Chaque utilisateur est modifié dès qu'il devient visible, pendant que add() le journalise encore.
+			Future<?> writer = executor.submit(() -> {
+				for (User user : users) {
+					while (repository.get(user.getUserName()) == null) {
+						Thread.onSpinWait();
+					}
+					for (int i = 1; i <= 3; i++) {
+						user.addToVisitedLocations(visitedLocation(user, i));
+					}
+				}
+			});
+			users.forEach(repository::add);
+			writer.get();
+			repository.sync();
+		} finally {
+			executor.shutdownNow();
+		}
+
+		try (JournaledUserRepository repository = open()) {
+			for (User user : users) {
+				assertEquals(List.of(1.0, 2.0, 3.0), latitudes(repository.get(user.getUserName())), user.getUserName());
+			}
+		}
+	}
+
+	@Test
+	public void truncatedLastRecordIsIgnored() throws Exception {
+		try (JournaledUserRepository repository = open()) {
+			User user = new User(UUID.randomUUID(), "jon", "000", "jon@tourGuide.com");
+			repository.add(user);
+			user.addToVisitedLocations(visitedLocation(user, 1));
+		}
+		Path segment;
+		try (Stream<Path> files = Files.list(directory)) {
+			segment = files.filter(file -> file.getFileName().toString().startsWith("journal-")).findFirst().orElseThrow();
+		}
+		// Début d'enregistrement dont l'écriture a été interrompue.
+		Files.write(segment, new byte[] { 0, 0, 0, 40, 1, 2, 3 }, StandardOpenOption.APPEND);
+
+		try (JournaledUserRepository repository = open()) {
+			assertEquals(List.of(1.0), latitudes(repository.get("jon")));
+		}
+	}
+
+	private JournaledUserRepository open() throws Exception {
+		return JournaledUserRepository.open(directory, Duration.ofMillis(5), Duration.ZERO, catalog::get);
+	}
+
+	private List<Double> latitudes(User user) {
+		return user.getVisitedLocations().stream().map(visitedLocation -> visitedLocation.location.latitude).toList();
+	}
+
+	private VisitedLocation visitedLocation(User user, int i) {
+		return new VisitedLocation(user.getUserId(), new Location(i, i), new Date(i));
+	}
+
+}
@@ -0,0 +1,148 @@
+package com.openclassrooms.tourguide;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import gpsUtil.location.Attraction;
+import com.openclassrooms.tourguide.client.LocationSource;
+import com.openclassrooms.tourguide.client.PricingSource;
+import com.openclassrooms.tourguide.client.RewardSource;
+import com.openclassrooms.tourguide.execution.ExecutionSettings;
+import com.openclassrooms.tourguide.helper.InternalTestHelper;
+import com.openclassrooms.tourguide.ingest.LocationFixReader;
+import com.openclassrooms.tourguide.ingest.LocationIngestionService;
+import com.openclassrooms.tourguide.ingest.LocationIngestionService.IngestionReport;
+import com.openclassrooms.tourguide.service.RewardsService;
+import com.openclassrooms.tourguide.service.TourGuideService;
+import com.openclassrooms.tourguide.simulation.CallProfile;
+import com.openclassrooms.tourguide.simulation.LocationSimulator;
+import com.openclassrooms.tourguide.simulation.PricingSimulator;
+import com.openclassrooms.tourguide.simulation.RewardSimulator;
+import com.openclassrooms.tourguide.user.User;
+
+public class TestLocationIngestion {
+
+	private final List<Attraction> attractions = LocationSimulator.syntheticAttractions(26, 1);
+	private TourGuideService tourGuideService;
+	private LocationIngestionService ingestionService;
+
+	@BeforeEach
+	public void createServices() {
+		LocationSource locationSource = new LocationSimulator(1, CallProfile.INSTANT, attractions);
+		RewardSource rewardSource = new RewardSimulator(1, CallProfile.INSTANT, attractions);
+		PricingSource pricingSource = new PricingSimulator(1, CallProfile.INSTANT);
+		RewardsService rewardsService = new RewardsService(locationSource, rewardSource, ExecutionSettings.DEFAULT);
+		InternalTestHelper.setInternalUserNumber(0);
+		tourGuideService = new TourGuideService(locationSource, rewardsService, pricingSource, ExecutionSettings.DEFAULT);
+		ingestionService = new LocationIngestionService(tourGuideService, rewardsService);
+	}
+
+	@AfterEach
+	public void stopServices() {
+		tourGuideService.stop();
+	}
+
+	@Test
+	public void jsonLocationsAreAddedAndRewarded() throws Exception {
+		User jon = addUser("jon");
+		User jane = addUser("jane");
+		Attraction attraction = attractions.get(0);
+		String json = "[" +
+				"{\"userName\": \"jon\", \"latitude\": 1.5, \"longitude\": 2.5, \"timeVisited\": 1000}," +
+				"{\"userName\": \"jon\", \"latitude\": " + attraction.latitude + ", \"longitude\": " + attraction.longitude
+				+ ", \"timeVisited\": 2000}," +
+				"{\"userName\": \"jane\", \"latitude\": 3, \"longitude\": 4, \"device\": {\"os\": \"android\"}}," +
+				"{\"userName\": \"bob\", \"latitude\": 5, \"longitude\": 6}," +
+				"{\"userName\": \"jane\", \"latitude\": 95, \"longitude\": 6}" +
+				"]";
+
+		IngestionReport report = ingestionService.ingest(
+				LocationFixReader.json(new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8))));
+
+		assertEquals(new IngestionReport(3, 1, 1), report);
+		assertEquals(List.of(1.5, attraction.latitude), latitudes(jon));
+		assertEquals(2000, jon.getLastVisitedLocation().timeVisited.getTime());
+		assertEquals(2000, jon.getLatestLocationTimestamp().getTime());
+		assertEquals(List.of(3.0), latitudes(jane));
+		// L'évaluation des récompenses est demandée sans être attendue.
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+		while (jon.getUserRewards().isEmpty() && System.nanoTime() < deadline) {
+			TimeUnit.MILLISECONDS.sleep(10);
+		}
+		assertEquals(attraction.attractionName, jon.getUserRewards().get(0).attraction.attractionName);
+	}
+
+	@Test
+	public void binaryLocationsKeepTheirOrderPerUser() throws Exception {
+		int userCount = 100;
+		int fixesPerUser = 50;
+		for (int i = 0; i < userCount; i++) {
+			addUser("user" + i);
+		}
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream output = new DataOutputStream(bytes);
+		for (int fix = 0; fix < fixesPerUser; fix++) {
+			for (int i = 0; i < userCount; i++) {
+				output.writeUTF("user" + i);
+				output.writeDouble(fix);
+				output.writeDouble(i);
+				output.writeLong(fix);
+			}
+		}
+		byte[] payload = bytes.toByteArray();
+
+		IngestionReport report = ingestionService.ingest(LocationFixReader.binary(new ByteArrayInputStream(payload)));
+
+		assertEquals(new IngestionReport(userCount * fixesPerUser, 0, 0), report);
+		for (int i = 0; i < userCount; i++) {
+			// Historique borné : les 30 dernières positions, dans l'ordre d'envoi.
+			List<Double> latitudes = latitudes(tourGuideService.getUser("user" + i));
+			assertEquals(User.VISITED_LOCATIONS_CAPACITY, latitudes.size());
+			assertEquals(fixesPerUser - 1, latitudes.get(latitudes.size() - 1));
+		}
+
+		// Enregistrement tronqué : erreur, mais les positions qui le précèdent sont ajoutées.
+		User late = addUser("late");
+		bytes.reset();
+		output.writeUTF("late");
+		output.writeDouble(7);
+		output.writeDouble(8);
+		output.writeLong(9);
+		output.writeUTF("late");
+		output.writeDouble(7);
+		byte[] truncated = bytes.toByteArray();
+		assertThrows(IllegalArgumentException.class,
+				() -> ingestionService.ingest(LocationFixReader.binary(new ByteArrayInputStream(truncated))));
+		assertEquals(List.of(7.0), latitudes(late));
+	}
+
+	@Test
+	public void malformedJsonIsRejectedAsInvalidInput() {
+		byte[] payload = "not json".getBytes(StandardCharsets.UTF_8);
+		assertThrows(IllegalArgumentException.class,
+				() -> ingestionService.ingest(LocationFixReader.json(new ByteArrayInputStream(payload))));
+	}
+
+	private User addUser(String userName) {
+		User user = new User(UUID.randomUUID(), userName, "000", userName + "@tourGuide.com");
+		tourGuideService.addUser(user);
+		return user;
+	}
+
+	private List<Double> latitudes(User user) {
+		return user.getVisitedLocations().stream().map(visitedLocation -> visitedLocation.location.latitude).toList();
+	}
+
+}
@@ -0,0 +1,318 @@
+package com.openclassrooms.tourguide;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import gpsUtil.location.Attraction;
+import gpsUtil.location.VisitedLocation;
+import com.openclassrooms.tourguide.client.LocationSource;
+import com.openclassrooms.tourguide.client.PricingSource;
+import com.openclassrooms.tourguide.client.RewardSource;
+import com.openclassrooms.tourguide.execution.ExecutionMode;
+import com.openclassrooms.tourguide.execution.ExecutionSettings;
+import com.openclassrooms.tourguide.execution.ExternalCallExecutor;
+import com.openclassrooms.tourguide.execution.UserShards;
+import com.openclassrooms.tourguide.helper.InternalTestHelper;
+import com.openclassrooms.tourguide.metrics.MeteredSources;
+import com.openclassrooms.tourguide.metrics.TourGuideMetrics;
+import com.openclassrooms.tourguide.service.RewardQueueSettings;
+import com.openclassrooms.tourguide.service.RewardsService;
+import com.openclassrooms.tourguide.service.TourGuideService;
+import com.openclassrooms.tourguide.simulation.CallProfile;
+import com.openclassrooms.tourguide.simulation.LatencyProfile;
+import com.openclassrooms.tourguide.simulation.LocationSimulator;
+import com.openclassrooms.tourguide.simulation.PricingSimulator;
+import com.openclassrooms.tourguide.simulation.RewardSimulator;
+import com.openclassrooms.tourguide.simulation.SimulatedFailureException;
+import com.openclassrooms.tourguide.tracker.TrackingPipeline;
+import com.openclassrooms.tourguide.user.User;
+
+public class TestMetrics {
+
+	private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+	@BeforeEach
+	public void addRegistry() {
+		Metrics.globalRegistry.add(registry);
+	}
+
+	@AfterEach
+	public void removeRegistry() {
+		Metrics.globalRegistry.remove(registry);
+	}
+
+	@Test
+	public void trackingRecordsExternalCallsRewardsAndUserDurations() throws Exception {
+		List<Attraction> attractions = LocationSimulator.syntheticAttractions(26, 1);
+		LocationSource locationSource = MeteredSources.locationSource(
+				new LocationSimulator(1, CallProfile.INSTANT, attractions));
+		RewardSource rewardSource = MeteredSources.rewardSource(
+				new RewardSimulator(1, CallProfile.INSTANT, attractions));
+		PricingSource pricingSource = MeteredSources.pricingSource(new PricingSimulator(1, CallProfile.INSTANT));
+		RewardsService rewardsService = new RewardsService(locationSource, rewardSource, ExecutionSettings.DEFAULT);
+		InternalTestHelper.setInternalUserNumber(0);
+		TourGuideService tourGuideService = new TourGuideService(locationSource, rewardsService, pricingSource,
+				ExecutionSettings.DEFAULT);
+		tourGuideService.tracker.stopTracking();
+
+		try {
+			User user = new User(UUID.randomUUID(), "jon", "000", "jon@tourGuide.com");
+			user.addToVisitedLocations(new VisitedLocation(user.getUserId(), attractions.get(0), new Date()));
+			tourGuideService.addUser(user);
+
+			new TrackingPipeline(tourGuideService, 10, Duration.ofSeconds(10), Duration.ofSeconds(10))
+					.run(tourGuideService.userIterator(), 1);
+			tourGuideService.getTripDeals(user);
+
+			assertEquals(1, registry.get(TourGuideMetrics.EXTERNAL_CALLS)
+					.tags("source", "gpsUtil", "operation", "getUserLocation", "outcome", "success").timer().count());
+			assertEquals(1, registry.get(TourGuideMetrics.EXTERNAL_CALLS)
+					.tags("source", "rewardCentral", "outcome", "success").timer().count());
+			assertEquals(1, registry.get(TourGuideMetrics.EXTERNAL_CALLS)
+					.tags("source", "tripPricer", "outcome", "success").timer().count());
+			assertEquals(1, registry.get(TourGuideMetrics.REWARDS_GRANTED).counter().count());
+			assertEquals(1, registry.get(TourGuideMetrics.TRACKER_USER_DURATION)
+					.tag("outcome", "success").timer().count());
+			assertEquals(1, registry.get(TourGuideMetrics.TRACKER_CYCLE_DURATION).timer().count());
+		} finally {
+			tourGuideService.stop();
+		}
+	}
+
+	@Test
+	public void failedExternalCallsAreTimedAndCounted() {
+		LocationSource locationSource = MeteredSources.locationSource(new LocationSimulator(1,
+				new CallProfile(LatencyProfile.none(), 1, 0), LocationSimulator.syntheticAttractions(1, 1)));
+
+		assertThrows(SimulatedFailureException.class, () -> locationSource.getUserLocation(UUID.randomUUID()));
+
+		assertEquals(1, registry.get(TourGuideMetrics.EXTERNAL_CALLS)
+				.tags("source", "gpsUtil", "operation", "getUserLocation", "outcome", "error").timer().count());
+		assertEquals(1, registry.get(TourGuideMetrics.ERRORS)
+				.tags("component", "gpsUtil", "exception", "SimulatedFailureException").counter().count());
+	}
+
+	@Test
+	public void executorGaugesReportSaturation() throws Exception {
+		for (ExecutionMode mode : ExecutionMode.values()) {
+			String name = "test-" + mode.name().toLowerCase();
+			ExternalCallExecutor executor = ExternalCallExecutor.create(mode, name, 1);
+			CountDownLatch release = new CountDownLatch(1);
+			try {
+				executor.execute(() -> {
+					try {
+						release.await();
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+					}
+				});
+				executor.execute(() -> {
+				});
+				// La première tâche occupe l'unique place, la seconde attend.
+				long deadline = System.currentTimeMillis() + 5_000;
+				while ((executor.getActiveCount() < 1 || executor.getQueuedTaskCount() < 1)
+						&& System.currentTimeMillis() < deadline) {
+					Thread.sleep(10);
+				}
+				assertEquals(1, registry.get(TourGuideMetrics.EXECUTOR_ACTIVE).tag("executor", name).gauge().value());
+				assertEquals(1, registry.get(TourGuideMetrics.EXECUTOR_QUEUED).tag("executor", name).gauge().value());
+				assertEquals(1, registry.get(TourGuideMetrics.EXECUTOR_LIMIT).tag("executor", name).gauge().value());
+			} finally {
+				release.countDown();
+				executor.shutdownNow();
+			}
+		}
+	}
+
+	@Test
+	public void ungatedTasksDoNotWaitForAPermit() throws Exception {
+		ExternalCallExecutor executor = ExternalCallExecutor.create(ExecutionMode.VIRTUAL, "test-ungated", 1);
+		CountDownLatch release = new CountDownLatch(1);
+		try {
+			executor.execute(() -> {
+				try {
+					release.await();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			});
+			// L'unique permis est pris par l'appel bloqué : le calcul qui n'appelle pas la bibliothèque passe quand même.
+			CompletableFuture<Void> computation = CompletableFuture.runAsync(() -> {
+			}, executor.ungated());
+			computation.get(5, TimeUnit.SECONDS);
+			assertEquals(0, executor.getQueuedTaskCount());
+		} finally {
+			release.countDown();
+			executor.shutdownNow();
+		}
+	}
+
+	@Test
+	public void gaugesOfAStoppedComponentAreReplacedByTheNextInstance() throws Exception {
+		UserShards first = new UserShards(1);
+		CountDownLatch release = new CountDownLatch(1);
+		User user = new User(UUID.randomUUID(), "jon", "000", "jon@tourGuide.com");
+		try {
+			first.run(user, () -> {
+				try {
+					release.await();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			});
+			first.run(user, () -> {
+			});
+			assertEquals(1, registry.get(TourGuideMetrics.USER_SHARD_QUEUED).tag("shard", "0").gauge().value());
+		} finally {
+			release.countDown();
+			first.shutdown();
+		}
+		assertTrue(registry.find(TourGuideMetrics.USER_SHARD_QUEUED).gauges().isEmpty());
+
+		// La nouvelle instance publie sa propre jauge, pas celle de l'instance arrêtée.
+		UserShards second = new UserShards(1);
+		try {
+			assertEquals(0, registry.get(TourGuideMetrics.USER_SHARD_QUEUED).tag("shard", "0").gauge().value());
+		} finally {
+			second.shutdown();
+		}
+	}
+
+	@Test
+	public void rewardQueueCoalescesRequestsAndAdmitsThemAsRoomFrees() throws Exception {
+		List<Attraction> attractions = LocationSimulator.syntheticAttractions(26, 1);
+		CountDownLatch evaluating = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		RewardsService rewardsService = new RewardsService(new LocationSimulator(1, CallProfile.INSTANT, attractions),
+				blockingRewardSource(evaluating, release), ExecutionSettings.DEFAULT,
+				new RewardQueueSettings(1, 1, Duration.ZERO));
+		try {
+			User busy = userAt("busy", attractions.get(2));
+			User jon = userAt("jon", attractions.get(0));
+			User jane = userAt("jane", attractions.get(1));
+
+			// Le seul worker est occupé par busy : la demande de jon occupe la seule place de la file.
+			CompletableFuture<Void> busyEvaluation = rewardsService.requestEvaluation(busy);
+			assertTrue(evaluating.await(5, TimeUnit.SECONDS));
+			CompletableFuture<Void> jonEvaluation = rewardsService.requestEvaluation(jon);
+			for (int i = 0; i < 4; i++) {
+				assertSame(jonEvaluation, rewardsService.requestEvaluation(jon));
+			}
+			assertEquals(4, registry.get(TourGuideMetrics.REWARD_QUEUE_COALESCED).counter().count());
+
+			// File pleine : la demande pour jane est acceptée sans bloquer, et attend une place.
+			CompletableFuture<Void> janeEvaluation = rewardsService.requestEvaluation(jane);
+			assertFalse(janeEvaluation.isDone());
+			assertFalse(jonEvaluation.isDone());
+
+			release.countDown();
+			CompletableFuture.allOf(busyEvaluation, jonEvaluation, janeEvaluation).get(5, TimeUnit.SECONDS);
+			assertEquals(1, jon.getUserRewards().size());
+			assertEquals(1, jane.getUserRewards().size());
+			assertEquals(3, registry.get(TourGuideMetrics.REWARD_LATENCY).timer().count());
+		} finally {
+			release.countDown();
+			rewardsService.stop();
+		}
+	}
+
+	@Test
+	public void stoppingTheRewardQueueCancelsEveryWaitingRequest() throws Exception {
+		List<Attraction> attractions = LocationSimulator.syntheticAttractions(26, 1);
+		CountDownLatch evaluating = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		RewardsService rewardsService = new RewardsService(new LocationSimulator(1, CallProfile.INSTANT, attractions),
+				blockingRewardSource(evaluating, release), ExecutionSettings.DEFAULT,
+				new RewardQueueSettings(1, 1, Duration.ZERO));
+		try {
+			// Une évaluation en cours, une en file et une en attente de place.
+			CompletableFuture<Void> busyEvaluation = rewardsService.requestEvaluation(userAt("busy", attractions.get(2)));
+			assertTrue(evaluating.await(5, TimeUnit.SECONDS));
+			CompletableFuture<Void> jonEvaluation = rewardsService.requestEvaluation(userAt("jon", attractions.get(0)));
+			CompletableFuture<Void> janeEvaluation = rewardsService.requestEvaluation(userAt("jane", attractions.get(1)));
+
+			rewardsService.stop();
+
+			for (CompletableFuture<Void> evaluation : List.of(busyEvaluation, jonEvaluation, janeEvaluation)) {
+				assertThrows(CancellationException.class, () -> evaluation.get(5, TimeUnit.SECONDS));
+			}
+			CompletableFuture<Void> late = rewardsService.requestEvaluation(userAt("late", attractions.get(3)));
+			assertThrows(CancellationException.class, () -> late.get(5, TimeUnit.SECONDS));
+		} finally {
+			release.countDown();
+			rewardsService.stop();
+		}
+	}
+
+	@Test
+	public void aRewardWorkerSurvivesAnEvaluationThatFailsBeforeStarting() throws Exception {
+		List<Attraction> attractions = LocationSimulator.syntheticAttractions(26, 1);
+		AtomicInteger calls = new AtomicInteger();
+		RewardsService rewardsService = new RewardsService(new LocationSimulator(1, CallProfile.INSTANT, attractions),
+				(attractionId, userId) -> 100, ExecutionSettings.DEFAULT, new RewardQueueSettings(1, 1, Duration.ZERO)) {
+			@Override
+			public CompletableFuture<Void> calculateRewards(User user) {
+				// Premier appel refusé comme par un exécuteur arrêté : exception levée, pas de futur en échec.
+				if (calls.getAndIncrement() == 0) {
+					throw new RejectedExecutionException("executor stopped");
+				}
+				return super.calculateRewards(user);
+			}
+		};
+		try {
+			User jon = userAt("jon", attractions.get(0));
+			ExecutionException failure = assertThrows(ExecutionException.class,
+					() -> rewardsService.requestEvaluation(jon).get(5, TimeUnit.SECONDS));
+			assertInstanceOf(RejectedExecutionException.class, failure.getCause());
+
+			// Le seul worker est toujours là pour la demande suivante.
+			rewardsService.requestEvaluation(jon).get(5, TimeUnit.SECONDS);
+			assertEquals(1, jon.getUserRewards().size());
+		} finally {
+			rewardsService.stop();
+		}
+	}
+
+	private static User userAt(String userName, Attraction attraction) {
+		User user = new User(UUID.randomUUID(), userName, "000", userName + "@tourGuide.com");
+		user.addToVisitedLocations(new VisitedLocation(user.getUserId(), attraction, new Date()));
+		return user;
+	}
+
+	// Source de points qui signale chaque appel puis attend d'être libérée.
+	private static RewardSource blockingRewardSource(CountDownLatch evaluating, CountDownLatch release) {
+		return (attractionId, userId) -> {
+			evaluating.countDown();
+			try {
+				release.await();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			return 100;
+		};
+	}
+
+}
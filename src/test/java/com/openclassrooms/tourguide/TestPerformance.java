@@ -2,8 +2,11 @@ package com.openclassrooms.tourguide;
 
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
+import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
+import java.util.Random;
+import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.TimeUnit;
 
@@ -12,8 +15,12 @@ import org.junit.jupiter.api.Test;
 
 import gpsUtil.GpsUtil;
 import gpsUtil.location.Attraction;
+import gpsUtil.location.Location;
 import gpsUtil.location.VisitedLocation;
 import rewardCentral.RewardCentral;
+import com.openclassrooms.tourguide.execution.ExecutionMode;
+import com.openclassrooms.tourguide.execution.ExecutionSettings;
+import com.openclassrooms.tourguide.geo.AttractionIndex;
 import com.openclassrooms.tourguide.helper.InternalTestHelper;
 import com.openclassrooms.tourguide.service.RewardsService;
 import com.openclassrooms.tourguide.service.TourGuideService;
@@ -77,6 +84,39 @@ public class TestPerformance {
         assertTrue(TimeUnit.MINUTES.toSeconds(15) >= stopWatch.getDuration().toSeconds());
 	}
 
+	@Test
+	public void highVolumeTrackLocationExecutionModes() {
+		// Même scénario que highVolumeTrackLocation, exécuté avec les pools fixes historiques puis avec
+		// les threads virtuels (concurrence bornée par sémaphore) pour comparer les deux modèles.
+		InternalTestHelper.setInternalUserNumber(1000);
+		ExecutionSettings[] modes = {
+				new ExecutionSettings(ExecutionMode.PLATFORM, 100, 100),
+				new ExecutionSettings(ExecutionMode.VIRTUAL, 1000, 1000) };
+
+		for (ExecutionSettings settings : modes) {
+			GpsUtil gpsUtil = new GpsUtil();
+			RewardsService rewardsService = new RewardsService(gpsUtil, new RewardCentral(), settings);
+			TourGuideService tourGuideService = new TourGuideService(gpsUtil, rewardsService, settings);
+			tourGuideService.tracker.stopTracking();
+			try {
+				List<User> allUsers = tourGuideService.getAllUsers();
+
+				StopWatch stopWatch = new StopWatch();
+				stopWatch.start();
+				CompletableFuture.allOf(allUsers.stream()
+						.map(tourGuideService::trackUserLocation)
+						.toArray(CompletableFuture[]::new)).join();
+				stopWatch.stop();
+
+				System.out.println("highVolumeTrackLocationExecutionModes: " + settings.mode() + " mode, "
+						+ allUsers.size() + " users: Time Elapsed: " + stopWatch.getDuration().toMillis() + " ms.");
+				assertTrue(TimeUnit.MINUTES.toSeconds(15) >= stopWatch.getDuration().toSeconds());
+			} finally {
+				tourGuideService.stop();
+			}
+		}
+	}
+
 	@Test
 	public void highVolumeGetRewards() {
 		GpsUtil gpsUtil = new GpsUtil();
@@ -114,4 +154,113 @@ public class TestPerformance {
         assertTrue(TimeUnit.MINUTES.toSeconds(20) >= stopWatch.getDuration().toSeconds());
 	}
 
+	@Test
+	public void rewardPassScalesWithAttractionCatalogue() {
+		// Catalogues synthétiques de tailles croissantes : avec l'index spatial, le nombre d'attractions examinées
+		// par position ne doit plus être proportionnel à la taille du catalogue (contrairement au balayage complet).
+		// Les temps sont affichés pour information ; les mesures fiables relèvent du module benchmarks (JMH).
+		int[] catalogueSizes = { 1_000, 10_000, 100_000 };
+		int userCount = 200;
+		Random random = new Random(42);
+
+		double[] examinedPerLocation = new double[catalogueSizes.length];
+		for (int i = 0; i < catalogueSizes.length; i++) {
+			List<Attraction> catalogue = syntheticAttractions(catalogueSizes[i], random);
+			List<User> users = syntheticUsers(userCount, random);
+			AttractionIndex index = new AttractionIndex(catalogue);
+			long examined = 0;
+			int locationCount = 0;
+			for (User user : users) {
+				for (VisitedLocation visitedLocation : user.getVisitedLocations()) {
+					examined += index.forEachWithin(visitedLocation.location, 10, attraction -> {
+					});
+					locationCount++;
+				}
+			}
+			examinedPerLocation[i] = (double) examined / locationCount;
+			long nanos = runRewardPass(catalogue, users);
+
+			System.out.println("rewardPassScalesWithAttractionCatalogue: " + catalogueSizes[i] + " attractions -> "
+					+ String.format("%.1f", examinedPerLocation[i]) + " examined/location, reward pass "
+					+ TimeUnit.NANOSECONDS.toMillis(nanos) + " ms.");
+		}
+
+		// Catalogue x100 : un balayage linéaire examinerait 100 fois plus d'attractions, l'index reste logarithmique.
+		assertTrue(examinedPerLocation[2] < examinedPerLocation[0] * 5);
+		assertTrue(examinedPerLocation[2] < catalogueSizes[2] / 1_000.0);
+	}
+
+	@Test
+	public void nearestAttractionsQueryExaminesAFractionOfTheCatalogue() {
+		int catalogueSize = 50_000;
+		Random random = new Random(42);
+		AttractionIndex index = new AttractionIndex(syntheticAttractions(catalogueSize, random));
+		long examined = 0;
+		int queries = 20_000;
+		for (int i = 0; i < queries; i++) {
+			examined += index.nearestCost(new Location(randomLatitude(random), randomLongitude(random)), 5);
+		}
+		double examinedPerQuery = (double) examined / queries;
+
+		System.out.println("nearestAttractionsQueryExaminesAFractionOfTheCatalogue: " + catalogueSize
+				+ " attractions -> " + String.format("%.1f", examinedPerQuery) + " examined/query.");
+		// Élagage du k-d tree : quelques dizaines d'attractions examinées, au lieu du tri complet du catalogue.
+		assertTrue(examinedPerQuery < catalogueSize / 100.0);
+	}
+
+	private long runRewardPass(List<Attraction> catalogue, List<User> users) {
+		GpsUtil gpsUtil = new GpsUtil() {
+			@Override
+			public List<Attraction> getAttractions() {
+				return catalogue;
+			}
+		};
+		RewardCentral rewardCentral = new RewardCentral() {
+			@Override
+			public int getAttractionRewardPoints(UUID attractionId, UUID userId) {
+				return 1;
+			}
+		};
+		RewardsService rewardsService = new RewardsService(gpsUtil, rewardCentral);
+		try {
+			long start = System.nanoTime();
+			CompletableFuture.allOf(users.stream()
+					.map(rewardsService::calculateRewards)
+					.toArray(CompletableFuture[]::new)).join();
+			return System.nanoTime() - start;
+		} finally {
+			rewardsService.stop();
+		}
+	}
+
+	private List<Attraction> syntheticAttractions(int count, Random random) {
+		List<Attraction> attractions = new ArrayList<>(count);
+		for (int i = 0; i < count; i++) {
+			attractions.add(new Attraction("attraction" + i, "city", "state",
+					randomLatitude(random), randomLongitude(random)));
+		}
+		return attractions;
+	}
+
+	private List<User> syntheticUsers(int count, Random random) {
+		List<User> users = new ArrayList<>(count);
+		for (int i = 0; i < count; i++) {
+			User user = new User(UUID.randomUUID(), "benchUser" + i, "000", "benchUser" + i + "@tourGuide.com");
+			for (int j = 0; j < 30; j++) {
+				user.addToVisitedLocations(new VisitedLocation(user.getUserId(),
+						new Location(randomLatitude(random), randomLongitude(random)), new Date()));
+			}
+			users.add(user);
+		}
+		return users;
+	}
+
+	private double randomLatitude(Random random) {
+		return -85.05112878 + random.nextDouble() * 2 * 85.05112878;
+	}
+
+	private double randomLongitude(Random random) {
+		return -180 + random.nextDouble() * 360;
+	}
+
 }
@@ -1,12 +1,21 @@
 package com.openclassrooms.tourguide;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
+import java.time.Duration;
 import java.util.Date;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
 
 import org.awaitility.Awaitility;
 import org.junit.jupiter.api.Test;
@@ -16,10 +25,13 @@ import gpsUtil.GpsUtil;
 import gpsUtil.location.Attraction;
 import gpsUtil.location.VisitedLocation;
 import rewardCentral.RewardCentral;
+import com.openclassrooms.tourguide.client.RewardPointsClient;
+import com.openclassrooms.tourguide.client.RewardSource;
 import com.openclassrooms.tourguide.helper.InternalTestHelper;
 import com.openclassrooms.tourguide.service.RewardsService;
 import com.openclassrooms.tourguide.service.TourGuideService;
 import com.openclassrooms.tourguide.user.User;
+import com.openclassrooms.tourguide.user.UserChangeListener;
 import com.openclassrooms.tourguide.user.UserReward;
 
 public class TestRewardsService {
@@ -88,4 +100,135 @@ public class TestRewardsService {
         }
     }
 
+    @Test
+    public void calculateRewardsOnlyEvaluatesNewLocations() {
+        GpsUtil gpsUtil = new GpsUtil();
+        AtomicInteger rewardCentralCalls = new AtomicInteger();
+        RewardsService rewardsService = new RewardsService(gpsUtil, new RewardCentral() {
+            @Override
+            public int getAttractionRewardPoints(UUID attractionId, UUID userId) {
+                rewardCentralCalls.incrementAndGet();
+                return 1;
+            }
+        });
+
+        try {
+            List<Attraction> attractions = rewardsService.getAttractions();
+            User user = new User(UUID.randomUUID(), "jon", "000", "jon@tourGuide.com");
+
+            user.addToVisitedLocations(new VisitedLocation(user.getUserId(), attractions.get(0), new Date()));
+            rewardsService.calculateRewards(user).join();
+            assertEquals(1, user.getUserRewards().size());
+
+            // Nouvelle position près d'une autre attraction : seule celle-ci doit être évaluée.
+            user.addToVisitedLocations(new VisitedLocation(user.getUserId(), attractions.get(1), new Date()));
+            rewardsService.calculateRewards(user).join();
+            assertEquals(2, user.getUserRewards().size());
+            assertEquals(2, rewardCentralCalls.get());
+
+            // Aucune nouvelle position : la passe ne fait rien.
+            rewardsService.calculateRewards(user).join();
+            assertEquals(2, rewardCentralCalls.get());
+
+            // Changer le buffer invalide le watermark : tout l'historique est réévalué avec la nouvelle règle.
+            rewardsService.setProximityBuffer(Integer.MAX_VALUE);
+            rewardsService.calculateRewards(user).join();
+            assertEquals(attractions.size(), user.getUserRewards().size());
+        } finally {
+            rewardsService.stop();
+        }
+    }
+
+    @Test
+    public void userWithAFullRewardStoreIsNoLongerEvaluated() {
+        GpsUtil gpsUtil = new GpsUtil();
+        AtomicInteger rewardCentralCalls = new AtomicInteger();
+        RewardsService rewardsService = new RewardsService(gpsUtil, new RewardCentral() {
+            @Override
+            public int getAttractionRewardPoints(UUID attractionId, UUID userId) {
+                rewardCentralCalls.incrementAndGet();
+                return 1;
+            }
+        });
+        rewardsService.setProximityBuffer(Integer.MAX_VALUE);
+
+        try {
+            User user = new User(UUID.randomUUID(), "jon", "000", "jon@tourGuide.com");
+            // Stockage de deux récompenses au plus, qui refuse les suivantes comme un enregistrement plein.
+            user.setChangeListener(new UserChangeListener() {
+                @Override
+                public void rewardAdded(User rewarded, UserReward userReward) {
+                    if (rewarded.getRewardCount() > 2) {
+                        throw new IllegalStateException("User record is full");
+                    }
+                }
+
+                @Override
+                public int rewardCapacity() {
+                    return 2;
+                }
+            });
+            Attraction attraction = rewardsService.getAttractions().get(0);
+            user.addToVisitedLocations(new VisitedLocation(user.getUserId(), attraction, new Date()));
+            assertThrows(CompletionException.class, () -> rewardsService.calculateRewards(user).join());
+            assertEquals(2, user.getUserRewards().size());
+            int callsBeforeFull = rewardCentralCalls.get();
+
+            // Stockage plein : ni nouvel échec, ni réévaluation de l'historique, ni appel à RewardCentral.
+            user.addToVisitedLocations(new VisitedLocation(user.getUserId(), attraction, new Date()));
+            rewardsService.calculateRewards(user).join();
+            rewardsService.calculateRewards(user).join();
+            assertEquals(2, user.getUserRewards().size());
+            assertEquals(callsBeforeFull, rewardCentralCalls.get());
+        } finally {
+            rewardsService.stop();
+        }
+    }
+
+    @Test
+    public void rewardPointsAreCoalescedCachedAndBatched() throws Exception {
+        AtomicInteger rewardCentralCalls = new AtomicInteger();
+        RewardCentral slowRewardCentral = new RewardCentral() {
+            @Override
+            public int getAttractionRewardPoints(UUID attractionId, UUID userId) {
+                rewardCentralCalls.incrementAndGet();
+                try {
+                    TimeUnit.MILLISECONDS.sleep(200);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return 42;
+            }
+        };
+        ExecutorService executor = Executors.newFixedThreadPool(10);
+        try {
+            RewardPointsClient client = new RewardPointsClient(RewardSource.from(slowRewardCentral), executor, Duration.ofMinutes(1), 100);
+            UUID userId = UUID.randomUUID();
+            UUID attractionId = UUID.randomUUID();
+
+            // Demandes concurrentes pour le même couple : un seul appel à RewardCentral.
+            List<CompletableFuture<Integer>> concurrent = IntStream.range(0, 10)
+                    .mapToObj(i -> client.getRewardPoints(attractionId, userId))
+                    .toList();
+            CompletableFuture.allOf(concurrent.toArray(CompletableFuture[]::new)).get(5, TimeUnit.SECONDS);
+            assertEquals(1, rewardCentralCalls.get());
+
+            // Résultat en cache : pas de nouvel appel.
+            assertEquals(42, client.getRewardPoints(attractionId, userId).get(5, TimeUnit.SECONDS));
+            assertEquals(1, rewardCentralCalls.get());
+
+            // Lot de cinq attractions : appels lancés en parallèle, donc environ une seule latence au total.
+            List<UUID> attractionIds = IntStream.range(0, 5).mapToObj(i -> UUID.randomUUID()).toList();
+            long start = System.nanoTime();
+            Map<UUID, Integer> points = client.getRewardPoints(attractionIds, userId).get(5, TimeUnit.SECONDS);
+            long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+            assertEquals(5, points.size());
+            assertEquals(6, rewardCentralCalls.get());
+            assertTrue(elapsedMillis < 5 * 200, "batch took " + elapsedMillis + " ms");
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
 }
@@ -0,0 +1,178 @@
+package com.openclassrooms.tourguide;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.Test;
+
+import gpsUtil.location.Attraction;
+import gpsUtil.location.Location;
+import tripPricer.Provider;
+import com.openclassrooms.tourguide.simulation.CallProfile;
+import com.openclassrooms.tourguide.simulation.LatencyProfile;
+import com.openclassrooms.tourguide.simulation.LocationSimulator;
+import com.openclassrooms.tourguide.simulation.PricingSimulator;
+import com.openclassrooms.tourguide.simulation.RewardSimulator;
+import com.openclassrooms.tourguide.simulation.SimulatedFailureException;
+
+public class TestSimulation {
+
+	@Test
+	public void sameSeedReproducesLocationsPointsAndPrices() {
+		UUID userId = UUID.randomUUID();
+
+		// Chaque passage recrée le catalogue (nouveaux identifiants), comme à chaque démarrage avec gpsUtil.
+		List<Location> firstRun = simulatedLocations(7, userId);
+		List<Location> secondRun = simulatedLocations(7, userId);
+		for (int i = 0; i < firstRun.size(); i++) {
+			assertEquals(firstRun.get(i).latitude, secondRun.get(i).latitude);
+			assertEquals(firstRun.get(i).longitude, secondRun.get(i).longitude);
+		}
+		assertNotEquals(firstRun.get(0).latitude, firstRun.get(1).latitude);
+
+		List<Integer> firstPoints = simulatedPoints(7, userId);
+		assertEquals(firstPoints, simulatedPoints(7, userId));
+		assertTrue(firstPoints.stream().allMatch(points -> points >= 1 && points < 1000));
+
+		List<Provider> firstPrices = new PricingSimulator(7, CallProfile.INSTANT).getPrice("key", userId, 2, 1, 3, 100);
+		List<Provider> secondPrices = new PricingSimulator(7, CallProfile.INSTANT).getPrice("key", userId, 2, 1, 3, 100);
+		assertEquals(5, firstPrices.size());
+		assertEquals(5, firstPrices.stream().map(provider -> provider.name).distinct().count());
+		for (int i = 0; i < firstPrices.size(); i++) {
+			assertEquals(firstPrices.get(i).name, secondPrices.get(i).name);
+			assertEquals(firstPrices.get(i).price, secondPrices.get(i).price);
+			assertEquals(firstPrices.get(i).tripId, secondPrices.get(i).tripId);
+		}
+	}
+
+	@Test
+	public void latencyProfilesFollowTheirDistribution() {
+		SplittableRandom random = new SplittableRandom(1);
+		long millis = TimeUnit.MILLISECONDS.toNanos(1);
+
+		assertEquals(0, LatencyProfile.parse("none").nextDelayNanos(random));
+		assertEquals(50 * millis, LatencyProfile.parse("fixed:50ms").nextDelayNanos(random));
+
+		LatencyProfile uniform = LatencyProfile.parse("uniform:30ms..100ms");
+		for (int i = 0; i < 10_000; i++) {
+			long delay = uniform.nextDelayNanos(random);
+			assertTrue(delay >= 30 * millis && delay <= 100 * millis);
+		}
+
+		LatencyProfile longTail = LatencyProfile.longTail(Duration.ofMillis(20), Duration.ofMillis(500));
+		long[] delays = new long[100_000];
+		for (int i = 0; i < delays.length; i++) {
+			delays[i] = longTail.nextDelayNanos(random);
+		}
+		Arrays.sort(delays);
+		assertEquals(20 * millis, delays[delays.length / 2], 2 * millis);
+		assertEquals(500 * millis, delays[delays.length * 99 / 100], 50 * millis);
+		assertTrue(delays[delays.length - 1] <= 5_000 * millis);
+
+		assertThrows(IllegalArgumentException.class, () -> LatencyProfile.parse("uniform:100ms"));
+		assertThrows(IllegalArgumentException.class, () -> LatencyProfile.parse("gaussian:10ms..20ms"));
+	}
+
+	@Test
+	public void errorInjectionFailsRequestedShareOfCalls() {
+		LocationSimulator simulator = new LocationSimulator(3,
+				new CallProfile(LatencyProfile.none(), 0.2, 0), LocationSimulator.syntheticAttractions(1, 3));
+		UUID userId = UUID.randomUUID();
+		int calls = 10_000;
+		int failures = 0;
+		for (int i = 0; i < calls; i++) {
+			try {
+				simulator.getUserLocation(userId);
+			} catch (SimulatedFailureException e) {
+				failures++;
+			}
+		}
+
+		assertEquals(0.2, failures / (double) calls, 0.02);
+		// Le catalogue échappe au profil d'appel.
+		for (int i = 0; i < 100; i++) {
+			assertEquals(1, simulator.getAttractions().size());
+		}
+	}
+
+	@Test
+	public void injectedErrorsDoNotDependOnTheCallingThread() {
+		List<UUID> userIds = new ArrayList<>();
+		for (int i = 0; i < 50; i++) {
+			userIds.add(new UUID(i, i));
+		}
+		CallProfile halfFailing = new CallProfile(LatencyProfile.none(), 0.5, 0);
+
+		// Mêmes requêtes, une fois en séquence, une fois réparties sur les threads du pool commun.
+		LocationSimulator sequential = new LocationSimulator(5, halfFailing, LocationSimulator.syntheticAttractions(1, 5));
+		LocationSimulator parallel = new LocationSimulator(5, halfFailing, LocationSimulator.syntheticAttractions(1, 5));
+		Map<UUID, String> sequentialOutcomes = userIds.stream()
+				.collect(Collectors.toMap(userId -> userId, userId -> outcomes(sequential, userId)));
+		Map<UUID, String> parallelOutcomes = userIds.parallelStream()
+				.collect(Collectors.toConcurrentMap(userId -> userId, userId -> outcomes(parallel, userId)));
+
+		assertEquals(sequentialOutcomes, parallelOutcomes);
+		assertTrue(sequentialOutcomes.values().stream().anyMatch(outcome -> outcome.contains("x")));
+	}
+
+	@Test
+	public void throughputCapLimitsCallRate() {
+		LocationSimulator simulator = new LocationSimulator(3,
+				new CallProfile(LatencyProfile.none(), 0, 200), LocationSimulator.syntheticAttractions(1, 3));
+		UUID userId = UUID.randomUUID();
+
+		long start = System.nanoTime();
+		for (int i = 0; i < 101; i++) {
+			simulator.getUserLocation(userId);
+		}
+		long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+		// 100 intervalles de 5 ms après le premier appel.
+		assertTrue(elapsedMillis >= 450, "Elapsed " + elapsedMillis + " ms");
+	}
+
+	// Suite des résultats de vingt appels pour l'utilisateur : '.' réussi, 'x' en échec.
+	private String outcomes(LocationSimulator simulator, UUID userId) {
+		StringBuilder outcomes = new StringBuilder();
+		for (int i = 0; i < 20; i++) {
+			try {
+				simulator.getUserLocation(userId);
+				outcomes.append('.');
+			} catch (SimulatedFailureException e) {
+				outcomes.append('x');
+			}
+		}
+		return outcomes.toString();
+	}
+
+	private List<Location> simulatedLocations(long seed, UUID userId) {
+		LocationSimulator simulator = new LocationSimulator(seed, CallProfile.INSTANT,
+				LocationSimulator.syntheticAttractions(26, seed));
+		List<Location> locations = new ArrayList<>();
+		for (int i = 0; i < 10; i++) {
+			locations.add(simulator.getUserLocation(userId).location);
+		}
+		return locations;
+	}
+
+	private List<Integer> simulatedPoints(long seed, UUID userId) {
+		List<Attraction> attractions = LocationSimulator.syntheticAttractions(26, seed);
+		RewardSimulator simulator = new RewardSimulator(seed, CallProfile.INSTANT, attractions);
+		return attractions.stream()
+				.map(attraction -> simulator.getAttractionRewardPoints(attraction.attractionId, userId))
+				.toList();
+	}
+
+}
@@ -1,22 +1,50 @@
 package com.openclassrooms.tourguide;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Date;
 import java.util.List;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.junit.jupiter.api.Test;
 
 import gpsUtil.GpsUtil;
+import gpsUtil.location.Attraction;
+import gpsUtil.location.Location;
 import gpsUtil.location.VisitedLocation;
 import rewardCentral.RewardCentral;
 
+import com.openclassrooms.tourguide.client.LocationSource;
+import com.openclassrooms.tourguide.client.PricingSource;
+import com.openclassrooms.tourguide.client.RewardSource;
 import com.openclassrooms.tourguide.dto.NearByAttractionDto;
+import com.openclassrooms.tourguide.execution.ExecutionMode;
+import com.openclassrooms.tourguide.execution.ExecutionSettings;
+import com.openclassrooms.tourguide.execution.RequestDeadlines;
 import com.openclassrooms.tourguide.helper.InternalTestHelper;
+import com.openclassrooms.tourguide.helper.InternalUserSettings;
 import com.openclassrooms.tourguide.service.RewardsService;
 import com.openclassrooms.tourguide.service.TourGuideService;
+import com.openclassrooms.tourguide.store.InMemoryUserRepository;
+import com.openclassrooms.tourguide.tracker.TrackerSettings;
 import com.openclassrooms.tourguide.user.User;
+import com.openclassrooms.tourguide.user.UserChangeListener;
+import com.openclassrooms.tourguide.user.UserPreferences;
+import com.openclassrooms.tourguide.user.UserReward;
 import tripPricer.Provider;
 
 public class TestTourGuideService {
@@ -85,6 +113,41 @@ public class TestTourGuideService {
 		assertTrue(allUsers.contains(user2));
 	}
 
+	@Test
+	public void usersArePagedWithAContinuationCursor() {
+		GpsUtil gpsUtil = new GpsUtil();
+		RewardsService rewardsService = new RewardsService(gpsUtil, new RewardCentral());
+		InternalTestHelper.setInternalUserNumber(0);
+		TourGuideService tourGuideService = new TourGuideService(gpsUtil, rewardsService);
+
+		try {
+			for (int i = 0; i < 25; i++) {
+				tourGuideService.addUser(new User(UUID.randomUUID(), "user" + i, "000", "user" + i + "@tourGuide.com"));
+			}
+
+			TourGuideService.UserPage first = tourGuideService.getUsers(null, 10);
+			assertEquals(10, first.users().size());
+			// Utilisateur ajouté pendant le parcours : il apparaît en fin de parcours, sans décaler les pages.
+			tourGuideService.addUser(new User(UUID.randomUUID(), "late", "000", "late@tourGuide.com"));
+			TourGuideService.UserPage second = tourGuideService.getUsers(first.nextCursor(), 10);
+			TourGuideService.UserPage last = tourGuideService.getUsers(second.nextCursor(), 10);
+
+			List<String> userNames = new ArrayList<>();
+			for (TourGuideService.UserPage page : List.of(first, second, last)) {
+				page.users().forEach(user -> userNames.add(user.getUserName()));
+			}
+			assertEquals(26, userNames.size());
+			assertEquals("user0", userNames.get(0));
+			assertEquals("late", userNames.get(25));
+			assertNull(last.nextCursor());
+
+			assertThrows(IllegalArgumentException.class, () -> tourGuideService.getUsers("not a cursor", 10));
+			assertThrows(IllegalArgumentException.class, () -> tourGuideService.getUsers(null, 0));
+		} finally {
+			tourGuideService.stop();
+		}
+	}
+
 	@Test
 	public void trackUser() {
 		GpsUtil gpsUtil = new GpsUtil();
@@ -135,4 +198,156 @@ public class TestTourGuideService {
 		assertEquals(5, providers.size());
 	}
 
+	@Test
+	public void tripDealsAreCachedUntilPreferencesOrRewardPointsChange() throws Exception {
+		AtomicInteger pricingCalls = new AtomicInteger();
+		PricingSource pricingSource = (apiKey, userId, adults, children, nightsStay, rewardsPoints) -> {
+			pricingCalls.incrementAndGet();
+			try {
+				TimeUnit.MILLISECONDS.sleep(50);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			return List.of(new Provider(UUID.randomUUID(), "provider" + children, rewardsPoints));
+		};
+		GpsUtil gpsUtil = new GpsUtil();
+		RewardsService rewardsService = new RewardsService(gpsUtil, new RewardCentral());
+		InternalTestHelper.setInternalUserNumber(0);
+		TourGuideService tourGuideService = new TourGuideService(LocationSource.from(gpsUtil), rewardsService,
+				pricingSource, ExecutionSettings.DEFAULT);
+		ExecutorService requests = Executors.newFixedThreadPool(8);
+
+		try {
+			User user = new User(UUID.randomUUID(), "jon", "000", "jon@tourGuide.com");
+			// Requêtes simultanées pour les mêmes valeurs : un seul appel à la source.
+			List<Future<List<Provider>>> concurrent = new ArrayList<>();
+			for (int i = 0; i < 8; i++) {
+				concurrent.add(requests.submit(() -> tourGuideService.getTripDeals(user)));
+			}
+			for (Future<List<Provider>> future : concurrent) {
+				assertEquals("provider0", future.get().get(0).name);
+			}
+			tourGuideService.getTripDeals(user);
+			assertEquals(1, pricingCalls.get());
+
+			UserPreferences preferences = new UserPreferences();
+			preferences.setNumberOfChildren(2);
+			user.setUserPreferences(preferences);
+			assertEquals("provider2", tourGuideService.getTripDeals(user).get(0).name);
+			assertEquals(2, pricingCalls.get());
+
+			user.addUserReward(new UserReward(new VisitedLocation(user.getUserId(), new Location(0, 0), new Date()),
+					new Attraction("Disneyland", "Anaheim", "CA", 33.817595, -117.922008), 100));
+			assertEquals(100.0, tourGuideService.getTripDeals(user).get(0).price);
+			assertEquals(3, pricingCalls.get());
+		} finally {
+			requests.shutdownNow();
+			tourGuideService.stop();
+		}
+	}
+
+	@Test
+	public void slowTripDealsAreHedgedThenFallBackToPreviousDeals() throws Exception {
+		AtomicInteger pricingCalls = new AtomicInteger();
+		AtomicBoolean allSlow = new AtomicBoolean();
+		PricingSource pricingSource = (apiKey, userId, adults, children, nightsStay, rewardsPoints) -> {
+			// Premier appel lent (traîne de latence), puis appels rapides, sauf si toutes les réponses sont lentes.
+			if (pricingCalls.incrementAndGet() == 1 || allSlow.get()) {
+				try {
+					TimeUnit.SECONDS.sleep(5);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+			return List.of(new Provider(UUID.randomUUID(), "provider" + pricingCalls.get(), 100));
+		};
+		GpsUtil gpsUtil = new GpsUtil();
+		RewardsService rewardsService = new RewardsService(gpsUtil, new RewardCentral());
+		InternalTestHelper.setInternalUserNumber(0);
+		TourGuideService tourGuideService = new TourGuideService(LocationSource.from(gpsUtil), rewardsService,
+				pricingSource, new InMemoryUserRepository(), ExecutionSettings.DEFAULT, InternalUserSettings.DEFAULT,
+				TrackerSettings.DEFAULT, new RequestDeadlines(Duration.ofMillis(500), Duration.ofMillis(50),
+						Duration.ofMillis(500)));
+
+		try {
+			User user = new User(UUID.randomUUID(), "jon", "000", "jon@tourGuide.com");
+			// Le premier appel traîne : le second, lancé après 50 ms, répond avant le délai.
+			List<Provider> hedged = tourGuideService.getTripDealsAsync(user).get(1, TimeUnit.SECONDS);
+			assertEquals("provider2", hedged.get(0).name);
+
+			// Nouvelles préférences et source saturée : passé le délai, les offres précédentes sont servies.
+			allSlow.set(true);
+			UserPreferences preferences = new UserPreferences();
+			preferences.setNumberOfAdults(2);
+			user.setUserPreferences(preferences);
+			assertEquals(hedged, tourGuideService.getTripDealsAsync(user).get(2, TimeUnit.SECONDS));
+		} finally {
+			tourGuideService.stop();
+		}
+	}
+
+	@Test
+	public void rewardsAreReadWithoutTriggeringAnEvaluation() throws Exception {
+		GpsUtil gpsUtil = new GpsUtil();
+		RewardSource rewardSource = (attractionId, userId) -> 100;
+		RewardsService rewardsService = new RewardsService(LocationSource.from(gpsUtil), rewardSource,
+				ExecutionSettings.DEFAULT);
+		InternalTestHelper.setInternalUserNumber(0);
+		TourGuideService tourGuideService = new TourGuideService(gpsUtil, rewardsService);
+
+		try {
+			User user = new User(UUID.randomUUID(), "jon", "000", "jon@tourGuide.com");
+			user.addToVisitedLocations(new VisitedLocation(user.getUserId(), gpsUtil.getAttractions().get(0), new Date()));
+
+			// Aucune évaluation en cours : la lecture renvoie les récompenses du moment, sans en demander.
+			assertTrue(tourGuideService.getUserRewardsAsync(user).get(1, TimeUnit.SECONDS).isEmpty());
+			assertTrue(rewardsService.pendingEvaluation(user).isDone());
+
+			// Évaluation demandée par une nouvelle position : la lecture l'attend.
+			rewardsService.requestEvaluation(user);
+			assertEquals(1, tourGuideService.getUserRewardsAsync(user).get(5, TimeUnit.SECONDS).size());
+		} finally {
+			tourGuideService.stop();
+		}
+	}
+
+	@Test
+	public void userWritesRunOnTheThreadOfTheirShard() throws Exception {
+		GpsUtil gpsUtil = new GpsUtil();
+		RewardsService rewardsService = new RewardsService(LocationSource.from(gpsUtil), RewardSource.from(new RewardCentral()),
+				new ExecutionSettings(ExecutionMode.PLATFORM, 10, 10, 10, 4));
+		InternalTestHelper.setInternalUserNumber(0);
+		TourGuideService tourGuideService = new TourGuideService(gpsUtil, rewardsService);
+		ExecutorService writers = Executors.newFixedThreadPool(8);
+
+		try {
+			User user = new User(UUID.randomUUID(), "jon", "000", "jon@tourGuide.com");
+			Set<String> writingThreads = ConcurrentHashMap.newKeySet();
+			user.setChangeListener(new UserChangeListener() {
+				@Override
+				public void locationAdded(User changed, long sequence, double latitude, double longitude, long timeMillis) {
+					writingThreads.add(Thread.currentThread().getName());
+				}
+			});
+
+			// Écritures concurrentes depuis plusieurs threads, suivi compris : toutes passent par le même shard.
+			List<CompletableFuture<?>> writes = new ArrayList<>();
+			for (int i = 0; i < 20; i++) {
+				VisitedLocation location = new VisitedLocation(user.getUserId(), new Location(i, i), new Date());
+				writes.add(CompletableFuture.supplyAsync(
+						() -> tourGuideService.addVisitedLocations(user, List.of(location)), writers)
+						.thenCompose(write -> write));
+			}
+			writes.add(tourGuideService.trackUserLocation(user));
+			CompletableFuture.allOf(writes.toArray(CompletableFuture[]::new)).get(10, TimeUnit.SECONDS);
+
+			int shard = rewardsService.getUserShards().shardOf(user.getUserId());
+			assertEquals(Set.of("user-shard-" + shard), writingThreads);
+			assertEquals(21, user.getVisitedLocationsSnapshot().endSequence());
+		} finally {
+			writers.shutdownNow();
+			tourGuideService.stop();
+		}
+	}
+
 }
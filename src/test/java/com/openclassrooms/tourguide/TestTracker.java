@@ -0,0 +1,352 @@
+package com.openclassrooms.tourguide;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.awaitility.Awaitility;
+import org.junit.jupiter.api.Test;
+
+import gpsUtil.GpsUtil;
+import gpsUtil.location.Attraction;
+import gpsUtil.location.Location;
+import gpsUtil.location.VisitedLocation;
+import rewardCentral.RewardCentral;
+import com.openclassrooms.tourguide.geo.NearbyAttraction;
+import com.openclassrooms.tourguide.helper.InternalTestHelper;
+import com.openclassrooms.tourguide.service.RewardsService;
+import com.openclassrooms.tourguide.service.TourGuideService;
+import com.openclassrooms.tourguide.tracker.AdaptiveTrackingPolicy;
+import com.openclassrooms.tourguide.tracker.Tracker;
+import com.openclassrooms.tourguide.tracker.TrackerLifecycle;
+import com.openclassrooms.tourguide.tracker.TrackerSettings;
+import com.openclassrooms.tourguide.tracker.TrackingPipeline;
+import com.openclassrooms.tourguide.tracker.TrackingPolicy;
+import com.openclassrooms.tourguide.tracker.TrackingWheel;
+import com.openclassrooms.tourguide.user.User;
+import com.openclassrooms.tourguide.user.UserReward;
+
+public class TestTracker {
+
+	@Test
+	public void pipelineTracksEveryUserWithinInFlightWindow() throws Exception {
+		AtomicInteger inFlight = new AtomicInteger();
+		AtomicInteger maxInFlight = new AtomicInteger();
+		GpsUtil gpsUtil = new GpsUtil() {
+			@Override
+			public VisitedLocation getUserLocation(UUID userId) {
+				maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+				try {
+					TimeUnit.MILLISECONDS.sleep(5);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				} finally {
+					inFlight.decrementAndGet();
+				}
+				return new VisitedLocation(userId, new Location(0, 0), new Date());
+			}
+		};
+		RewardsService rewardsService = new RewardsService(gpsUtil, new RewardCentral());
+		InternalTestHelper.setInternalUserNumber(0);
+		TourGuideService tourGuideService = new TourGuideService(gpsUtil, rewardsService);
+		tourGuideService.tracker.stopTracking();
+
+		try {
+			for (int i = 0; i < 200; i++) {
+				tourGuideService.addUser(new User(UUID.randomUUID(), "user" + i, "000", "user" + i + "@tourGuide.com"));
+			}
+
+			TrackingPipeline pipeline = new TrackingPipeline(tourGuideService, 8, Duration.ofSeconds(30),
+					Duration.ofSeconds(1));
+			TrackingPipeline.CycleReport report = pipeline.run(tourGuideService.userIterator(),
+					tourGuideService.getUserCount());
+
+			assertEquals(200, report.trackedUsers());
+			assertEquals(0, report.failedUsers());
+			assertTrue(maxInFlight.get() <= 8, "max in flight: " + maxInFlight.get());
+			// Chaque utilisateur porte la trace de la fin de son suivi.
+			tourGuideService.userIterator().forEachRemaining(user -> {
+				assertEquals(1, user.getVisitedLocations().size());
+				assertTrue(user.getLatestLocationTimestamp() != null);
+			});
+		} finally {
+			tourGuideService.stop();
+		}
+	}
+
+	@Test
+	public void wheelReturnsUsersOnlyOnTheirTick() {
+		TrackingWheel wheel = new TrackingWheel(100, 10, 0);
+		wheel.schedule("soon", 250, 100);
+		// Même alvéole (top 12 modulo 10), mais un tour de roue plus tard.
+		wheel.schedule("nextRound", 1_250, 100);
+
+		assertEquals(List.of(), wheel.drain(1));
+		assertEquals(List.of("soon"), wheel.drain(2).stream().map(TrackingWheel.Entry::userName).toList());
+		assertEquals(1, wheel.getScheduledUsers());
+		assertEquals(List.of("nextRound"), wheel.drain(12).stream().map(TrackingWheel.Entry::userName).toList());
+
+		// Une échéance déjà passée est rangée au top suivant, pas un tour plus tard.
+		wheel.schedule("soon", 0, 100);
+		assertEquals(List.of("soon"), wheel.drain(13).stream().map(TrackingWheel.Entry::userName).toList());
+	}
+
+	@Test
+	public void entriesScheduledDuringADrainAreNotDelayedByARevolution() throws Exception {
+		ExecutorService scheduler = Executors.newSingleThreadExecutor();
+		try {
+			for (int round = 0; round < 20_000; round++) {
+				TrackingWheel wheel = new TrackingWheel(100, 10, 0);
+				CountDownLatch start = new CountDownLatch(1);
+				// Échéance "maintenant" (top 0), programmée pendant que le top 0 est vidé, comme addUser().
+				Future<?> scheduled = scheduler.submit(() -> {
+					start.await();
+					wheel.schedule("jon", 0, 100);
+					return null;
+				});
+				start.countDown();
+				List<TrackingWheel.Entry> due = new ArrayList<>(wheel.drain(0));
+				scheduled.get();
+				due.addAll(wheel.drain(1));
+
+				assertEquals(1, due.size(), "round " + round);
+				assertEquals(0, wheel.getScheduledUsers());
+			}
+		} finally {
+			scheduler.shutdownNow();
+		}
+	}
+
+	@Test
+	public void trackerRefreshesEveryUserOncePerInterval() throws Exception {
+		GpsUtil gpsUtil = new GpsUtil() {
+			@Override
+			public VisitedLocation getUserLocation(UUID userId) {
+				return new VisitedLocation(userId, new Location(0, 0), new Date());
+			}
+		};
+		RewardsService rewardsService = new RewardsService(gpsUtil, new RewardCentral());
+		InternalTestHelper.setInternalUserNumber(0);
+		TourGuideService tourGuideService = new TourGuideService(gpsUtil, rewardsService);
+		tourGuideService.tracker.stopTracking();
+
+		try {
+			for (int i = 0; i < 40; i++) {
+				tourGuideService.addUser(new User(UUID.randomUUID(), "user" + i, "000", "user" + i + "@tourGuide.com"));
+			}
+			Tracker tracker = new Tracker(tourGuideService, Duration.ofMillis(400), Duration.ofMillis(20));
+			tracker.start();
+			TimeUnit.MILLISECONDS.sleep(1_300);
+			tracker.stopTracking();
+			tracker.join();
+
+			// En 1,3 s avec un intervalle de 400 ms, chaque utilisateur est suivi environ trois fois,
+			// quel que soit son décalage initial dans l'intervalle.
+			tourGuideService.userIterator().forEachRemaining(user -> {
+				int tracked = user.getVisitedLocations().size();
+				assertTrue(tracked >= 2 && tracked <= 4, user.getUserName() + " tracked " + tracked + " times");
+			});
+			assertEquals(0, tracker.getOverdueUserCount());
+		} finally {
+			tourGuideService.stop();
+		}
+	}
+
+	@Test
+	public void lifecycleDelaysStartRampsUpAndDrainsInFlightUsers() throws Exception {
+		AtomicInteger calls = new AtomicInteger();
+		AtomicInteger inFlight = new AtomicInteger();
+		AtomicInteger maxInFlight = new AtomicInteger();
+		AtomicLong firstCallNanos = new AtomicLong();
+		CountDownLatch release = new CountDownLatch(1);
+		GpsUtil gpsUtil = new GpsUtil() {
+			@Override
+			public VisitedLocation getUserLocation(UUID userId) {
+				firstCallNanos.compareAndSet(0, System.nanoTime());
+				calls.incrementAndGet();
+				maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+				try {
+					// Chaque appel reste en cours jusqu'à ce que le test le libère.
+					release.await();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				} finally {
+					inFlight.decrementAndGet();
+				}
+				return new VisitedLocation(userId, new Location(0, 0), new Date());
+			}
+		};
+		RewardsService rewardsService = new RewardsService(gpsUtil, new RewardCentral());
+		InternalTestHelper.setInternalUserNumber(0);
+		TourGuideService tourGuideService = new TourGuideService(gpsUtil, rewardsService);
+
+		try {
+			for (int i = 0; i < 30; i++) {
+				tourGuideService.addUser(new User(UUID.randomUUID(), "user" + i, "000", "user" + i + "@tourGuide.com"));
+			}
+			// Montée en charge sur cinq minutes : la concurrence reste proche de 2 pendant le test.
+			Duration startDelay = Duration.ofMillis(300);
+			TrackerSettings settings = new TrackerSettings(startDelay, Duration.ofMinutes(5), 2, 1000,
+					Duration.ofSeconds(10));
+			Tracker tracker = new Tracker(tourGuideService, Duration.ofMillis(200), Duration.ofMillis(10),
+					TrackingPolicy.fixed(Duration.ofMillis(200)), settings);
+			TrackerLifecycle lifecycle = new TrackerLifecycle(tracker);
+
+			long start = System.nanoTime();
+			lifecycle.start();
+			// Les appels bloqués remplissent la fenêtre de montée en charge.
+			Awaitility.await().atMost(5, TimeUnit.SECONDS).until(() -> calls.get() >= 2);
+			assertTrue(firstCallNanos.get() - start >= startDelay.toNanos());
+			assertTrue(tracker.getConcurrencyLimit() < 20, "concurrency limit: " + tracker.getConcurrencyLimit());
+			assertTrue(maxInFlight.get() <= tracker.getConcurrencyLimit(), "max in flight: " + maxInFlight.get());
+
+			// L'arrêt attend les suivis en cours : il ne rend la main qu'une fois les appels libérés.
+			CompletableFuture<Void> stopping = CompletableFuture.runAsync(lifecycle::stop);
+			Awaitility.await().during(200, TimeUnit.MILLISECONDS).atMost(1, TimeUnit.SECONDS)
+					.until(() -> !stopping.isDone());
+			release.countDown();
+			stopping.get(5, TimeUnit.SECONDS);
+			assertFalse(lifecycle.isRunning());
+			assertFalse(tracker.isAlive());
+			assertEquals(0, inFlight.get());
+		} finally {
+			release.countDown();
+			tourGuideService.stop();
+		}
+	}
+
+	@Test
+	public void drainWaitsForCallsThatOutlivedTheirTimeout() throws Exception {
+		CountDownLatch called = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		GpsUtil gpsUtil = new GpsUtil() {
+			@Override
+			public VisitedLocation getUserLocation(UUID userId) {
+				called.countDown();
+				try {
+					release.await();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+				return new VisitedLocation(userId, new Location(0, 0), new Date());
+			}
+		};
+		RewardsService rewardsService = new RewardsService(gpsUtil, new RewardCentral());
+		InternalTestHelper.setInternalUserNumber(0);
+		TourGuideService tourGuideService = new TourGuideService(gpsUtil, rewardsService);
+		tourGuideService.tracker.stopTracking();
+
+		try {
+			TrackingPipeline pipeline = new TrackingPipeline(tourGuideService, 1, Duration.ofMillis(50),
+					Duration.ofSeconds(1));
+			User user = new User(UUID.randomUUID(), "jon", "000", "jon@tourGuide.com");
+
+			// Délai expiré : la place est libérée et le suivi compté en échec, mais l'appel à gpsUtil continue.
+			assertFalse(pipeline.submit(user).get(5, TimeUnit.SECONDS));
+			assertTrue(called.await(5, TimeUnit.SECONDS));
+			assertFalse(pipeline.awaitIdle(Duration.ofMillis(50)));
+			assertEquals(1, pipeline.getInFlightCount());
+
+			release.countDown();
+			assertTrue(pipeline.awaitIdle(Duration.ofSeconds(5)));
+			assertEquals(1, user.getVisitedLocations().size());
+		} finally {
+			release.countDown();
+			tourGuideService.stop();
+		}
+	}
+
+	@Test
+	public void adaptivePolicyFollowsUserMovement() {
+		GpsUtil gpsUtil = new GpsUtil();
+		RewardsService rewardsService = new RewardsService(gpsUtil, new RewardCentral());
+		AdaptiveTrackingPolicy policy = new AdaptiveTrackingPolicy(rewardsService, Duration.ofMinutes(1),
+				Duration.ofMinutes(5), Duration.ofHours(2));
+		long base = Duration.ofMinutes(5).toMillis();
+
+		try {
+			// Immobile loin de toute attraction : backoff exponentiel borné.
+			User idle = userAt(new Location(-45, 100), new Location(-45, 100), 0);
+			assertEquals(2 * base, policy.nextIntervalMillis(idle, base));
+			assertEquals(4 * base, policy.nextIntervalMillis(idle, 2 * base));
+			assertEquals(Duration.ofHours(2).toMillis(), policy.nextIntervalMillis(idle, Duration.ofHours(2).toMillis()));
+
+			// 50 miles en une heure : déplacement rapide, suivi au plus près.
+			User driving = userAt(new Location(-45, 100), new Location(-44.3, 100), 3_600_000);
+			assertEquals(Duration.ofMinutes(1).toMillis(), policy.nextIntervalMillis(driving, 4 * base));
+
+			// Immobile, mais sur une attraction pas encore récompensée.
+			Attraction attraction = rewardsService.getAttractions().get(0);
+			User visiting = userAt(attraction, attraction, 0);
+			assertEquals(Duration.ofMinutes(1).toMillis(), policy.nextIntervalMillis(visiting, 4 * base));
+
+			// L'attraction la plus proche est déjà récompensée, mais une autre reste à portée.
+			NearbyAttraction other = rewardsService.getAttractionIndex().nearest(attraction, 2).get(1);
+			assertTrue(rewardsService.isWithinAttractionProximity(other.distanceInMiles()));
+			visiting.addUserReward(new UserReward(visiting.getLastVisitedLocation(), attraction, 10));
+			assertEquals(Duration.ofMinutes(1).toMillis(), policy.nextIntervalMillis(visiting, 4 * base));
+
+			// Toutes les attractions à portée récompensées : retour au backoff.
+			rewardsService.getAttractionIndex().forEachWithin(attraction, rewardsService.getAttractionProximityRange(),
+					nearby -> visiting.addUserReward(new UserReward(visiting.getLastVisitedLocation(), nearby, 10)));
+			assertEquals(8 * base, policy.nextIntervalMillis(visiting, 4 * base));
+		} finally {
+			rewardsService.stop();
+		}
+	}
+
+	@Test
+	public void adaptivePolicyCutsLocationCallsForIdleUsers() {
+		GpsUtil gpsUtil = new GpsUtil();
+		RewardsService rewardsService = new RewardsService(gpsUtil, new RewardCentral());
+		TrackingPolicy adaptive = new AdaptiveTrackingPolicy(rewardsService, Duration.ofMinutes(1),
+				Duration.ofMinutes(5), Duration.ofHours(2));
+		TrackingPolicy fixed = TrackingPolicy.fixed(Duration.ofMinutes(5));
+		User idle = userAt(new Location(-45, 100), new Location(-45, 100), 0);
+		long day = Duration.ofDays(1).toMillis();
+
+		try {
+			// Simulation d'une journée pour un utilisateur resté chez lui : nombre d'appels à getUserLocation.
+			long fixedCalls = countCalls(fixed, idle, day);
+			long adaptiveCalls = countCalls(adaptive, idle, day);
+
+			assertEquals(288, fixedCalls);
+			assertTrue(adaptiveCalls * 10 <= fixedCalls, "adaptive policy made " + adaptiveCalls + " calls");
+		} finally {
+			rewardsService.stop();
+		}
+	}
+
+	private long countCalls(TrackingPolicy policy, User user, long periodMillis) {
+		long calls = 0;
+		long interval = Duration.ofMinutes(5).toMillis();
+		for (long elapsed = 0; elapsed < periodMillis; elapsed += interval) {
+			calls++;
+			interval = policy.nextIntervalMillis(user, interval);
+		}
+		return calls;
+	}
+
+	private User userAt(Location previous, Location last, long elapsedMillis) {
+		User user = new User(UUID.randomUUID(), "jon", "000", "jon@tourGuide.com");
+		long now = System.currentTimeMillis();
+		user.addToVisitedLocations(new VisitedLocation(user.getUserId(), previous, new Date(now - elapsedMillis)));
+		user.addToVisitedLocations(new VisitedLocation(user.getUserId(), last, new Date(now)));
+		return user;
+	}
+
+}
@@ -0,0 +1,131 @@
+package com.openclassrooms.tourguide;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.IntStream;
+
+import org.junit.jupiter.api.Test;
+
+import gpsUtil.location.Attraction;
+import gpsUtil.location.Location;
+import gpsUtil.location.VisitedLocation;
+import com.openclassrooms.tourguide.user.User;
+import com.openclassrooms.tourguide.user.UserReward;
+
+public class TestUser {
+
+	@Test
+	public void visitedLocationsKeepOnlyTheMostRecentPositions() {
+		User user = new User(UUID.randomUUID(), "jon", "000", "jon@tourGuide.com");
+		for (int i = 0; i < 45; i++) {
+			user.addToVisitedLocations(visitedLocation(user, i));
+		}
+
+		List<VisitedLocation> visitedLocations = user.getVisitedLocations();
+		assertEquals(30, visitedLocations.size());
+		for (int i = 0; i < 30; i++) {
+			VisitedLocation visitedLocation = visitedLocations.get(i);
+			assertEquals(user.getUserId(), visitedLocation.userId);
+			assertEquals(15 + i, visitedLocation.location.latitude, 0);
+			assertEquals(15 + i, visitedLocation.timeVisited.getTime());
+		}
+		assertEquals(44, user.getLastVisitedLocation().location.latitude, 0);
+
+		user.clearVisitedLocations();
+		assertTrue(user.getVisitedLocations().isEmpty());
+		user.addToVisitedLocations(visitedLocation(user, 50));
+		assertEquals(1, user.getVisitedLocations().size());
+	}
+
+	@Test
+	public void pollLocationsToRewardOnlyReturnsNewPositions() {
+		User user = new User(UUID.randomUUID(), "jon", "000", "jon@tourGuide.com");
+		user.addToVisitedLocations(visitedLocation(user, 1));
+		user.addToVisitedLocations(visitedLocation(user, 2));
+
+		assertEquals(2, user.pollLocationsToReward(0).size());
+		assertEquals(0, user.pollLocationsToReward(0).size());
+
+		user.addToVisitedLocations(visitedLocation(user, 3));
+		List<VisitedLocation> pending = user.pollLocationsToReward(0);
+		assertEquals(1, pending.size());
+		assertEquals(3, pending.get(0).location.latitude, 0);
+
+		// Changement de génération : tout l'historique est réévalué.
+		assertEquals(3, user.pollLocationsToReward(1).size());
+	}
+
+	@Test
+	public void concurrentReadersNeverSeeOverwrittenPositions() throws InterruptedException {
+		User user = new User(UUID.randomUUID(), "jon", "000", "jon@tourGuide.com");
+		AtomicBoolean running = new AtomicBoolean(true);
+		AtomicReference<String> failure = new AtomicReference<>();
+
+		// Chaque position porte la même valeur en latitude, longitude et horodatage, et les valeurs se suivent :
+		// une copie incohérente se verrait immédiatement.
+		Thread writer = new Thread(() -> {
+			for (int i = 0; i < 2_000_000; i++) {
+				user.addToVisitedLocations(visitedLocation(user, i));
+			}
+			running.set(false);
+		});
+		Thread reader = new Thread(() -> {
+			while (running.get() && failure.get() == null) {
+				List<VisitedLocation> snapshot = user.getVisitedLocations();
+				for (int i = 0; i < snapshot.size(); i++) {
+					VisitedLocation visitedLocation = snapshot.get(i);
+					long expected = snapshot.get(0).timeVisited.getTime() + i;
+					if (visitedLocation.timeVisited.getTime() != expected
+							|| visitedLocation.location.latitude != expected
+							|| visitedLocation.location.longitude != expected) {
+						failure.set("Incoherent snapshot at index " + i + ": " + visitedLocation.timeVisited.getTime());
+					}
+				}
+			}
+		});
+		writer.start();
+		reader.start();
+		writer.join();
+		reader.join();
+
+		assertEquals(null, failure.get());
+	}
+
+	@Test
+	public void concurrentRewardsAreDeduplicatedByAttraction() throws InterruptedException {
+		User user = new User(UUID.randomUUID(), "jon", "000", "jon@tourGuide.com");
+		VisitedLocation visitedLocation = visitedLocation(user, 1);
+		List<Thread> threads = new ArrayList<>();
+		for (int t = 0; t < 8; t++) {
+			Thread thread = new Thread(() -> {
+				for (int i = 0; i < 100; i++) {
+					// Nouvelle instance à chaque fois : gpsUtil change l'identifiant des attractions d'un appel à l'autre.
+					Attraction attraction = new Attraction("attraction" + i, "city", "state", 0, 0);
+					user.addUserReward(new UserReward(visitedLocation, attraction, i));
+				}
+			});
+			threads.add(thread);
+			thread.start();
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+
+		assertEquals(100, user.getUserRewards().size());
+		assertEquals(100, user.getRewardCount());
+		assertEquals(IntStream.range(0, 100).sum(), user.getRewardPointsTotal());
+		assertTrue(user.hasRewardFor("attraction42"));
+	}
+
+	private VisitedLocation visitedLocation(User user, long value) {
+		return new VisitedLocation(user.getUserId(), new Location(value, value), new Date(value));
+	}
+
+}
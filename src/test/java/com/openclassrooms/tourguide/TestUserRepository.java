@@ -0,0 +1,213 @@
+package com.openclassrooms.tourguide;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import gpsUtil.location.Attraction;
+import gpsUtil.location.Location;
+import gpsUtil.location.VisitedLocation;
+import com.openclassrooms.tourguide.store.InMemoryUserRepository;
+import com.openclassrooms.tourguide.store.JournaledUserRepository;
+import com.openclassrooms.tourguide.store.MappedUserRepository;
+import com.openclassrooms.tourguide.store.UserRepository;
+import com.openclassrooms.tourguide.user.User;
+import com.openclassrooms.tourguide.user.UserPreferences;
+import com.openclassrooms.tourguide.user.UserReward;
+
+public class TestUserRepository {
+
+	@TempDir
+	Path directory;
+
+	private final Attraction disneyland = new Attraction("Disneyland", "Anaheim", "CA", 33.817595, -117.922008);
+	private final Map<String, Attraction> catalog = Map.of(disneyland.attractionName, disneyland);
+
+	@Test
+	public void storedUsersSurviveReopening() throws Exception {
+		User user = new User(UUID.randomUUID(), "jon", "000", "jon@tourGuide.com");
+		user.addToVisitedLocations(visitedLocation(user, 1));
+		user.addUserReward(new UserReward(visitedLocation(user, 1), disneyland, 250));
+
+		try (MappedUserRepository repository = MappedUserRepository.open(directory, 100, catalog::get)) {
+			assertTrue(repository.add(user));
+			assertFalse(repository.add(new User(UUID.randomUUID(), "jon", "111", "other@tourGuide.com")));
+			assertSame(user, repository.get("jon"));
+
+			// Modifications postérieures à l'ajout, recopiées au fil de l'eau dans l'enregistrement.
+			for (int i = 2; i <= 40; i++) {
+				user.addToVisitedLocations(visitedLocation(user, i));
+			}
+			user.addUserReward(new UserReward(visitedLocation(user, 40),
+					new Attraction("Closed Park", "Nowhere", "NV", 40, 40), 100));
+			user.setPhoneNumber("555");
+			UserPreferences preferences = new UserPreferences();
+			preferences.setNumberOfAdults(2);
+			preferences.setTripDuration(7);
+			user.setUserPreferences(preferences);
+		}
+
+		try (MappedUserRepository repository = MappedUserRepository.open(directory, 100, catalog::get)) {
+			assertEquals(1, repository.size());
+			assertNull(repository.get("jane"));
+			User stored = repository.get("jon");
+			assertEquals(user.getUserId(), stored.getUserId());
+			assertEquals("555", stored.getPhoneNumber());
+			assertEquals("jon@tourGuide.com", stored.getEmailAddress());
+			assertEquals(2, stored.getUserPreferences().getNumberOfAdults());
+			assertEquals(7, stored.getUserPreferences().getTripDuration());
+
+			List<VisitedLocation> visitedLocations = stored.getVisitedLocations();
+			assertEquals(30, visitedLocations.size());
+			assertEquals(11, visitedLocations.get(0).location.latitude, 0);
+			assertEquals(40, stored.getLastVisitedLocation().timeVisited.getTime());
+
+			List<UserReward> rewards = stored.getUserRewards();
+			assertEquals(2, rewards.size());
+			assertSame(disneyland, rewards.get(0).attraction);
+			// Attraction absente du catalogue : recréée à la position de la visite.
+			assertEquals("Closed Park", rewards.get(1).attraction.attractionName);
+			assertEquals(350, stored.getRewardPointsTotal());
+
+			// Un utilisateur relu reste suivi par le stockage.
+			stored.clearVisitedLocations();
+			stored.addToVisitedLocations(visitedLocation(stored, 99));
+			assertSame(stored, repository.iterator().next());
+		}
+
+		try (MappedUserRepository repository = MappedUserRepository.open(directory, 100, catalog::get)) {
+			List<VisitedLocation> visitedLocations = repository.get("jon").getVisitedLocations();
+			assertEquals(1, visitedLocations.size());
+			assertEquals(99, visitedLocations.get(0).location.latitude, 0);
+		}
+	}
+
+	@Test
+	public void inPlaceUpdatesArePersistedAndRewardsBeyondTheRecordAreRejected() throws Exception {
+		User user = new User(UUID.randomUUID(), "jon", "000", "jon@tourGuide.com");
+
+		try (MappedUserRepository repository = MappedUserRepository.open(directory, 100, catalog::get)) {
+			repository.add(user);
+			user.getUserPreferences().setNumberOfChildren(2);
+			user.setEmailAddress("jon@example.com");
+			for (int i = 0; i < 32; i++) {
+				assertTrue(user.addUserReward(reward(user, "Park " + i)));
+			}
+			// Récompense de trop : refusée et retirée de la mémoire, plutôt que perdue au redémarrage.
+			assertThrows(IllegalStateException.class, () -> user.addUserReward(reward(user, "Park 32")));
+			assertFalse(user.hasRewardFor("Park 32"));
+			assertEquals(32, user.getUserRewards().size());
+			assertEquals(320, user.getRewardPointsTotal());
+			assertEquals("jon", repository.userNames().next());
+		}
+
+		try (MappedUserRepository repository = MappedUserRepository.open(directory, 100, catalog::get)) {
+			User stored = repository.get("jon");
+			assertEquals(2, stored.getUserPreferences().getNumberOfChildren());
+			assertEquals("jon@example.com", stored.getEmailAddress());
+			assertEquals(32, stored.getUserRewards().size());
+			assertEquals(320, stored.getRewardPointsTotal());
+		}
+	}
+
+	@Test
+	public void concurrentAddsKeepOneRecordPerUserName() throws Exception {
+		int userCount = 5_000;
+		AtomicInteger added = new AtomicInteger();
+		ExecutorService executor = Executors.newFixedThreadPool(8);
+		try (MappedUserRepository repository = MappedUserRepository.open(directory, userCount, catalog::get)) {
+			List<Future<?>> futures = new ArrayList<>();
+			for (int thread = 0; thread < 8; thread++) {
+				futures.add(executor.submit(() -> {
+					for (int i = 0; i < userCount; i++) {
+						String userName = "internalUser" + i;
+						if (repository.add(new User(UUID.randomUUID(), userName, "000", userName + "@tourGuide.com"))) {
+							added.incrementAndGet();
+						}
+						assertEquals(userName, repository.get(userName).getUserName());
+					}
+				}));
+			}
+			for (Future<?> future : futures) {
+				future.get();
+			}
+
+			assertEquals(userCount, added.get());
+			assertEquals(userCount, repository.size());
+			assertEquals(userCount, repository.findAll().stream().map(User::getUserName).distinct().count());
+			assertThrows(IllegalStateException.class,
+					() -> repository.add(new User(UUID.randomUUID(), "oneTooMany", "000", "jon@tourGuide.com")));
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	@Test
+	public void pagesFollowInsertionOrderInEveryStore() throws Exception {
+		List<String> added = new ArrayList<>();
+		for (int i = 0; i < 25; i++) {
+			added.add("user" + i);
+		}
+		try (UserRepository mapped = openMapped(); UserRepository journaled = openJournaled()) {
+			for (UserRepository repository : List.of(new InMemoryUserRepository(), mapped, journaled)) {
+				for (String userName : added) {
+					repository.add(new User(UUID.randomUUID(), userName, "000", userName + "@tourGuide.com"));
+				}
+				assertEquals(added, pagedUserNames(repository));
+				assertEquals(List.of(), repository.page(25, 10));
+			}
+		}
+
+		// Après redémarrage : journal rejoué à la première réouverture, instantané relu à la seconde.
+		for (int reopening = 0; reopening < 2; reopening++) {
+			try (UserRepository mapped = openMapped(); UserRepository journaled = openJournaled()) {
+				assertEquals(added, pagedUserNames(mapped));
+				assertEquals(added, pagedUserNames(journaled));
+			}
+		}
+	}
+
+	private MappedUserRepository openMapped() throws Exception {
+		return MappedUserRepository.open(directory.resolve("mapped"), 100, catalog::get);
+	}
+
+	private JournaledUserRepository openJournaled() throws Exception {
+		return JournaledUserRepository.open(directory.resolve("journal"), Duration.ofMillis(5), Duration.ZERO,
+				catalog::get);
+	}
+
+	private List<String> pagedUserNames(UserRepository repository) {
+		List<String> paged = new ArrayList<>();
+		for (int from = 0; from < 30; from += 10) {
+			repository.page(from, 10).forEach(user -> paged.add(user.getUserName()));
+		}
+		return paged;
+	}
+
+	private UserReward reward(User user, String attractionName) {
+		return new UserReward(visitedLocation(user, 1), new Attraction(attractionName, "Anaheim", "CA", 1, 1), 10);
+	}
+
+	private VisitedLocation visitedLocation(User user, int i) {
+		return new VisitedLocation(user.getUserId(), new Location(i, i), new Date(i));
+	}
+
+}